@@ -0,0 +1,16 @@
+#!/bin/bash
+# Clones the primary on first start, then runs as a hot standby streaming from it.
+set -e
+
+if [ ! -s "$PGDATA/PG_VERSION" ]; then
+	mkdir -p "$PGDATA"
+	chown postgres "$PGDATA"
+	until gosu postgres pg_basebackup -h db -U "$POSTGRES_USER" -D "$PGDATA" -R -X stream; do
+		echo "Waiting for the primary..."
+		rm -rf "${PGDATA:?}"/*
+		sleep 2
+	done
+fi
+
+chmod 0700 "$PGDATA"
+exec gosu postgres postgres -D "$PGDATA" -c hot_standby=on
@@ -0,0 +1,94 @@
+package com.valloyd.customer;
+
+import com.valloyd.Main;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * An embedded Postgres and the application context running against it, without the web
+ * layer. Flyway migrates the schema on startup, so every benchmark trial starts from an
+ * empty, fully indexed table.
+ */
+final class BenchmarkEnvironment implements AutoCloseable {
+
+	private static final int SEED_BATCH_SIZE = 10_000;
+
+	private final EmbeddedPostgres postgres;
+	private final ConfigurableApplicationContext context;
+
+	private BenchmarkEnvironment(EmbeddedPostgres postgres, ConfigurableApplicationContext context) {
+		this.postgres = postgres;
+		this.context = context;
+	}
+
+	static BenchmarkEnvironment start(String... properties) {
+		EmbeddedPostgres postgres;
+		try {
+			postgres = EmbeddedPostgres.builder().start();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+
+		// Passed as arguments rather than default properties, which application.yml overrides
+		String[] defaults = {
+				"--spring.datasource.url=" + postgres.getJdbcUrl("postgres", "postgres"),
+				"--spring.datasource.username=postgres",
+				"--spring.datasource.password=postgres",
+				"--spring.jpa.show-sql=false",
+				"--logging.level.root=warn"
+		};
+		ConfigurableApplicationContext context = new SpringApplicationBuilder(Main.class)
+				.web(WebApplicationType.NONE)
+				.run(Stream.concat(Stream.of(defaults), Stream.of(properties).map(p -> "--" + p))
+						.toArray(String[]::new));
+		return new BenchmarkEnvironment(postgres, context);
+	}
+
+	<T> T getBean(String name, Class<T> type) {
+		return context.getBean(name, type);
+	}
+
+	JdbcTemplate jdbcTemplate() {
+		return context.getBean(JdbcTemplate.class);
+	}
+
+	/**
+	 * Fills the table, or the in-memory {@code customerDao}, with {@code rows} customers
+	 * named {@code customer<n>@example.com}.
+	 */
+	void seedCustomers(CustomerDao customerDao, boolean inMemory, int rows) {
+		if (!inMemory) {
+			jdbcTemplate().update("""
+					INSERT INTO customer(name, email, age)
+					SELECT 'Customer ' || n, 'customer' || n || '@example.com', 18 + n % 80
+					FROM generate_series(1, ?) AS n
+					""", rows);
+			jdbcTemplate().execute("ANALYZE customer");
+			return;
+		}
+
+		List<Customer> batch = new ArrayList<>(SEED_BATCH_SIZE);
+		for (int n = 1; n <= rows; n++) {
+			batch.add(new Customer("Customer " + n, "customer" + n + "@example.com", 18 + n % 80));
+			if (batch.size() == SEED_BATCH_SIZE || n == rows) {
+				customerDao.insertCustomersIfEmailsAvailable(batch);
+				batch.clear();
+			}
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		context.close();
+		postgres.close();
+	}
+}
@@ -0,0 +1,65 @@
+package com.valloyd.customer;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The {@link Customer} hot paths outside the database: the equals and hashCode used by
+ * every cache and set holding customers, and the JSON round trip of the API.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class CustomerBenchmark {
+
+	private final Customer customer = new Customer(1000, "Jamila Ahmed", "jamila.ahmed@example.com", 34, 2);
+	private final Customer same = new Customer(1000, "Jamila Ahmed", "jamila.ahmed@example.com", 34, 2);
+
+	private final ObjectWriter writer = new ObjectMapper().writerFor(Customer.class);
+	private final ObjectReader reader = new ObjectMapper().readerFor(Customer.class);
+	private final String json;
+
+	public CustomerBenchmark() {
+		try {
+			json = writer.writeValueAsString(customer);
+		} catch (JsonProcessingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	@Benchmark
+	public int hashCodeOf() {
+		return customer.hashCode();
+	}
+
+	@Benchmark
+	public boolean equalsSame() {
+		return customer.equals(same);
+	}
+
+	@Benchmark
+	public String serialize() throws JsonProcessingException {
+		return writer.writeValueAsString(customer);
+	}
+
+	@Benchmark
+	public Customer deserialize() throws JsonProcessingException {
+		return reader.readValue(json);
+	}
+}
@@ -0,0 +1,118 @@
+package com.valloyd.customer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Measures each {@link CustomerDao} operation per implementation and table size. Every
+ * trial starts a fresh embedded Postgres, so results do not depend on earlier trials.
+ * <p>
+ * Run all of them with {@code mvn -P jmh verify}; results are written to
+ * {@code target/jmh-result.json}. Pass JMH options through {@code -Djmh.args}, e.g.
+ * {@code -Djmh.args="CustomerDaoBenchmark.selectCustomerById -p dao=jdbc,cached -rf json"}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CustomerDaoBenchmark {
+
+	private static final Set<String> IN_MEMORY_DAOS = Set.of("list", "offheap");
+
+	@Param({"jdbc", "jpa", "list"})
+	public String dao;
+
+	@Param({"1000", "100000"})
+	public int rows;
+
+	private BenchmarkEnvironment environment;
+	private CustomerDao customerDao;
+	private int[] ids;
+	private String[] emails;
+	private AtomicIntegerArray ages;
+	private final AtomicInteger writes = new AtomicInteger();
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		environment = BenchmarkEnvironment.start();
+		customerDao = environment.getBean(dao, CustomerDao.class);
+		environment.seedCustomers(customerDao, IN_MEMORY_DAOS.contains(dao), rows);
+
+		List<Customer> customers = customerDao.selectAllCustomers();
+		ids = customers.stream().mapToInt(Customer::getId).toArray();
+		emails = customers.stream().map(Customer::getEmail).toArray(String[]::new);
+		ages = new AtomicIntegerArray(customers.stream().mapToInt(Customer::getAge).toArray());
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		environment.close();
+	}
+
+	@Benchmark
+	public Optional<Customer> selectCustomerById() {
+		return customerDao.selectCustomerById(randomId());
+	}
+
+	@Benchmark
+	public boolean existsCustomerWithId() {
+		return customerDao.existsCustomerWithId(randomId());
+	}
+
+	@Benchmark
+	public boolean existsCustomerWithEmail() {
+		return customerDao.existsCustomerWithEmail(emails[ThreadLocalRandom.current().nextInt(emails.length)]);
+	}
+
+	@Benchmark
+	public void insertCustomer() {
+		int n = writes.incrementAndGet();
+		customerDao.insertCustomer(new Customer("Benchmark " + n, "benchmark" + n + "@example.com", 30));
+	}
+
+	@Benchmark
+	public Optional<Customer> updateCustomerIfChanged() {
+		// Moving the row's own age on by one, within the seeded 18 to 97, guarantees every
+		// call writes a change.
+		int i = ThreadLocalRandom.current().nextInt(ids.length);
+		int age = ages.updateAndGet(i, current -> 18 + (current - 17) % 80);
+		return customerDao.updateCustomerIfChanged(new Customer(ids[i], null, null, age), null);
+	}
+
+	@Benchmark
+	public List<Customer> selectAllCustomers() {
+		return customerDao.selectAllCustomers();
+	}
+
+	@Benchmark
+	public void forEachCustomer(Blackhole blackhole) {
+		customerDao.forEachCustomer(blackhole::consume);
+	}
+
+	private int randomId() {
+		return ids[ThreadLocalRandom.current().nextInt(ids.length)];
+	}
+}
@@ -0,0 +1,84 @@
+package com.valloyd.customer;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.RowMapperResultSetExtractor;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares mapping a result set by column label, as {@link CustomerRowMapper} does, with
+ * {@link CustomerResultSetExtractor}, which resolves the column indexes once. The rows
+ * come from the real PostgreSQL driver but are buffered and rewound before each call, so
+ * only the mapping is measured.
+ * <p>
+ * Add {@code -prof gc} to the JMH arguments to see the allocation rate per operation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class CustomerRowMapperBenchmark {
+
+	@Param({"1", "1000"})
+	public int rows;
+
+	private final RowMapperResultSetExtractor<Customer> rowMapperExtractor =
+			new RowMapperResultSetExtractor<>(new CustomerRowMapper());
+	private final CustomerResultSetExtractor resultSetExtractor = new CustomerResultSetExtractor();
+
+	private EmbeddedPostgres postgres;
+	private Connection connection;
+	private ResultSet resultSet;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException, SQLException {
+		postgres = EmbeddedPostgres.builder().start();
+		connection = postgres.getPostgresDatabase().getConnection();
+		PreparedStatement statement = connection.prepareStatement("""
+				SELECT n AS id, 'Customer ' || n AS name, 'customer' || n || '@example.com' AS email,
+					18 + n % 80 AS age, 0 AS version
+				FROM generate_series(1, ?) AS n
+				""", ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY);
+		statement.setInt(1, rows);
+		resultSet = statement.executeQuery();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException, SQLException {
+		connection.close();
+		postgres.close();
+	}
+
+	@Benchmark
+	public List<Customer> mapByLabel() throws SQLException {
+		resultSet.beforeFirst();
+		return rowMapperExtractor.extractData(resultSet);
+	}
+
+	@Benchmark
+	public List<Customer> mapByResolvedIndex() throws SQLException {
+		resultSet.beforeFirst();
+		return resultSetExtractor.extractData(resultSet);
+	}
+}
@@ -0,0 +1,99 @@
+package com.valloyd.customer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * {@link CustomerJdbcDas} throughput with Hikari and pgjdbc defaults against the
+ * {@code tuned-datasource} profile, from several threads so pool sizing and statement
+ * preparation both show.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class DataSourceTuningBenchmark {
+
+	private static final int ROWS = 100_000;
+	private static final int BATCH_SIZE = 100;
+
+	@Param({"default", "tuned-datasource"})
+	public String profile;
+
+	private BenchmarkEnvironment environment;
+	private CustomerDao customerDao;
+	private int[] ids;
+	private AtomicIntegerArray ages;
+	private final AtomicInteger writes = new AtomicInteger();
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		environment = BenchmarkEnvironment.start("spring.profiles.active=" + profile);
+		customerDao = environment.getBean("jdbc", CustomerDao.class);
+		environment.seedCustomers(customerDao, false, ROWS);
+
+		List<Customer> customers = customerDao.selectAllCustomers();
+		ids = customers.stream().mapToInt(Customer::getId).toArray();
+		ages = new AtomicIntegerArray(customers.stream().mapToInt(Customer::getAge).toArray());
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		environment.close();
+	}
+
+	@Benchmark
+	public Optional<Customer> selectCustomerById() {
+		return customerDao.selectCustomerById(randomId());
+	}
+
+	@Benchmark
+	public Optional<Customer> updateCustomerIfChanged() {
+		// Moving the row's own age on by one, within the seeded 18 to 97, guarantees every
+		// call writes a change.
+		int i = ThreadLocalRandom.current().nextInt(ids.length);
+		int age = ages.updateAndGet(i, current -> 18 + (current - 17) % 80);
+		return customerDao.updateCustomerIfChanged(new Customer(ids[i], null, null, age), null);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BATCH_SIZE)
+	public Set<String> insertCustomersIfEmailsAvailable() {
+		List<Customer> customers = new ArrayList<>(BATCH_SIZE);
+		for (int i = 0; i < BATCH_SIZE; i++) {
+			int n = writes.incrementAndGet();
+			customers.add(new Customer("Benchmark " + n, "benchmark" + n + "@example.com", 30));
+		}
+		return customerDao.insertCustomersIfEmailsAvailable(customers);
+	}
+
+	private int randomId() {
+		return ids[ThreadLocalRandom.current().nextInt(ids.length)];
+	}
+}
@@ -0,0 +1,66 @@
+package com.valloyd;
+
+import com.valloyd.datasource.ReadReplicaConfig;
+import com.valloyd.datasource.ReplicaRoutingDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+
+/**
+ * Sizes the Hikari pool from the machine instead of Hikari's fixed default of ten:
+ * {@code cores * 2 + customer.datasource.effective-spindle-count}, the starting point
+ * HikariCP recommends. The pool is held at that size so requests never wait for a new
+ * connection to be opened. An explicit {@code spring.datasource.hikari.maximum-pool-size}
+ * still wins. Read replica pools are sized the same way, unless
+ * {@code customer.datasource.read-replicas.maximum-pool-size} is set.
+ * <p>
+ * Enable it with {@code customer.datasource.tuned=true}, or the {@code tuned-datasource}
+ * profile which also sets the driver and leak detection settings.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(prefix = "customer.datasource", name = "tuned", havingValue = "true")
+public class DataSourceTuningConfig {
+
+	static final String MAXIMUM_POOL_SIZE = "spring.datasource.hikari.maximum-pool-size";
+	static final String MINIMUM_IDLE = "spring.datasource.hikari.minimum-idle";
+
+	static int poolSize(int cores, int effectiveSpindleCount) {
+		return cores * 2 + effectiveSpindleCount;
+	}
+
+	@Bean
+	static BeanPostProcessor hikariPoolSizer(Environment environment) {
+		return new BeanPostProcessor() {
+			@Override
+			public Object postProcessBeforeInitialization(Object bean, String beanName) {
+				if (bean instanceof HikariDataSource dataSource) {
+					size(dataSource, environment.getProperty(MAXIMUM_POOL_SIZE, Integer.class), environment);
+				} else if (bean instanceof ReplicaRoutingDataSource routingDataSource) {
+					Integer replicaPoolSize = environment.getProperty(
+							ReadReplicaConfig.REPLICA_MAXIMUM_POOL_SIZE, Integer.class,
+							environment.getProperty(MAXIMUM_POOL_SIZE, Integer.class));
+					for (DataSource replica : routingDataSource.getReplicas()) {
+						if (replica instanceof HikariDataSource dataSource) {
+							size(dataSource, replicaPoolSize, environment);
+						}
+					}
+				}
+				return bean;
+			}
+		};
+	}
+
+	private static void size(HikariDataSource dataSource, Integer explicitPoolSize, Environment environment) {
+		int poolSize = explicitPoolSize != null ? explicitPoolSize : poolSize(
+				Runtime.getRuntime().availableProcessors(),
+				environment.getProperty("customer.datasource.effective-spindle-count", Integer.class, 1)
+		);
+		dataSource.setMaximumPoolSize(poolSize);
+		dataSource.setMinimumIdle(environment.getProperty(MINIMUM_IDLE, Integer.class, poolSize));
+	}
+}
@@ -0,0 +1,24 @@
+package com.valloyd;
+
+import org.springframework.boot.autoconfigure.flyway.FlywayConfigurationCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Map;
+
+/**
+ * Lets migrations build indexes with {@code CREATE INDEX CONCURRENTLY}. Flyway normally
+ * holds its Postgres lock in a transaction of its own for the whole run, and a concurrent
+ * index build waits for every open transaction, so such a migration would wait forever.
+ * A session lock still keeps two instances from migrating at once.
+ */
+@Configuration(proxyBeanMethods = false)
+public class FlywayConfig {
+
+	static final Map<String, String> SESSION_LOCK = Map.of("flyway.postgresql.transactional.lock", "false");
+
+	@Bean
+	FlywayConfigurationCustomizer sessionLockCustomizer() {
+		return configuration -> configuration.configuration(SESSION_LOCK);
+	}
+}
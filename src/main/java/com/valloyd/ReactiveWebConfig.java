@@ -0,0 +1,29 @@
+package com.valloyd;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Serves the reactive customer API from Netty's event loop. Tomcat is on the classpath
+ * for the servlet stack and would otherwise be picked for reactive mode as well.
+ * <p>
+ * R2DBC auto-configuration is excluded, so the {@code spring.r2dbc.*} properties are
+ * bound here for {@link com.valloyd.customer.CustomerR2dbcDas}.
+ * <p>
+ * Select reactive mode with the {@code reactive} profile, or
+ * {@code spring.main.web-application-type=reactive}.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@EnableConfigurationProperties(R2dbcProperties.class)
+public class ReactiveWebConfig {
+
+	@Bean
+	NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+		return new NettyReactiveWebServerFactory();
+	}
+}
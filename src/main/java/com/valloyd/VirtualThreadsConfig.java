@@ -0,0 +1,53 @@
+package com.valloyd;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs Tomcat request handling, and with it every {@code JdbcTemplate} call made by a
+ * controller, on a new virtual thread per request instead of the platform thread pool.
+ * Streaming responses such as the NDJSON export run on virtual threads too.
+ * <p>
+ * Enable it with {@code customer.virtual-threads.enabled=true}, or the
+ * {@code virtual-threads} profile which also sizes the connection pool for it. Virtual
+ * threads need Java 21; the application fails to start when they are enabled on an
+ * older runtime.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(prefix = "customer.virtual-threads", name = "enabled", havingValue = "true")
+public class VirtualThreadsConfig {
+
+	@Bean(destroyMethod = "shutdown")
+	ExecutorService virtualThreadExecutor() {
+		try {
+			return (ExecutorService) Executors.class
+					.getMethod("newVirtualThreadPerTaskExecutor")
+					.invoke(null);
+		} catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+			throw new IllegalStateException(
+					"customer.virtual-threads.enabled requires Java 21, but running on Java %s."
+							.formatted(Runtime.version().feature()),
+					e
+			);
+		}
+	}
+
+	@Bean
+	TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandlerCustomizer(ExecutorService virtualThreadExecutor) {
+		return protocolHandler -> protocolHandler.setExecutor(virtualThreadExecutor);
+	}
+
+	@Bean(TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME)
+	AsyncTaskExecutor applicationTaskExecutor(ExecutorService virtualThreadExecutor) {
+		return new TaskExecutorAdapter(virtualThreadExecutor);
+	}
+}
@@ -38,6 +38,11 @@ public class Customer {
 			nullable = false
 	)
 	private Integer age;
+	@Version
+	@Column(
+			nullable = false
+	)
+	private int version;
 
 	public Customer() {
 	}
@@ -55,6 +60,11 @@ public class Customer {
 		this.age = age;
 	}
 
+	public Customer(Integer id, String name, String email, Integer age, int version) {
+		this(id, name, email, age);
+		this.version = version;
+	}
+
 	public Integer getId() {
 		return id;
 	}
@@ -87,6 +97,40 @@ public class Customer {
 		this.age = age;
 	}
 
+	public int getVersion() {
+		return version;
+	}
+
+	public void setVersion(int version) {
+		this.version = version;
+	}
+
+	/**
+	 * Copies the non-null fields of {@code update} that differ from this customer.
+	 *
+	 * @return whether any field changed
+	 */
+	boolean applyChanges(Customer update) {
+		boolean changes = false;
+
+		if (update.getName() != null && !update.getName().equals(name)) {
+			name = update.getName();
+			changes = true;
+		}
+
+		if (update.getEmail() != null && !update.getEmail().equals(email)) {
+			email = update.getEmail();
+			changes = true;
+		}
+
+		if (update.getAge() != null && !update.getAge().equals(age)) {
+			age = update.getAge();
+			changes = true;
+		}
+
+		return changes;
+	}
+
 	@Override
 	public boolean equals(Object o) {
 		if (this == o) return true;
@@ -97,7 +141,13 @@ public class Customer {
 
 	@Override
 	public int hashCode() {
-		return Objects.hash(id, name, email, age);
+		// Same value as Objects.hash(id, name, email, age), without the varargs array
+		int result = 1;
+		result = 31 * result + Objects.hashCode(id);
+		result = 31 * result + Objects.hashCode(name);
+		result = 31 * result + Objects.hashCode(email);
+		result = 31 * result + Objects.hashCode(age);
+		return result;
 	}
 
 	@Override
@@ -107,6 +157,7 @@ public class Customer {
 				", name='" + name + '\'' +
 				", email='" + email + '\'' +
 				", age=" + age +
+				", version=" + version +
 				'}';
 	}
 }
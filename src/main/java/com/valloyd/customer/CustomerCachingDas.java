@@ -0,0 +1,195 @@
+package com.valloyd.customer;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.valloyd.datasource.ReplicaRoutingDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Repository;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Read-through cache of customers by id in front of the coalescing DAO, so concurrent
+ * misses on one id share a query. Select it by qualifying the {@link CustomerDao}
+ * dependency with {@code @Qualifier("cached")}.
+ * <p>
+ * Only found customers are cached, so inserts never need to invalidate anything. Writes
+ * invalidate rather than cache what they wrote, as a slower, older write could otherwise
+ * replace a newer one. Loads never put back a row that a write invalidated while it was
+ * being read. Writes made by other application instances are picked up at the latest
+ * once entries expire.
+ * <p>
+ * With read replicas, a miss right after a write could load the old row from a lagging
+ * replica and cache it until it expires. Misses on an id written by this instance within
+ * the read-your-writes window therefore load from the primary.
+ */
+@Repository("cached")
+public class CustomerCachingDas implements CustomerDao {
+
+	private final CustomerDao customerDao;
+	private final Cache<Integer, Customer> customersById;
+	// Ids this instance wrote recently, which replicas may not have caught up with yet.
+	private final Cache<Integer, Boolean> recentlyWritten;
+	// Bumped before every invalidation, so bulk loads can tell they may hold a stale row.
+	private final AtomicLong invalidations = new AtomicLong();
+
+	public CustomerCachingDas(
+			@Qualifier("coalescing") CustomerDao customerDao,
+			@Value("${customer.cache.maximum-size:10000}") long maximumSize,
+			@Value("${customer.cache.expire-after-write:5m}") Duration expireAfterWrite,
+			@Value("${customer.datasource.read-replicas.read-your-writes-window:5s}") Duration readYourWritesWindow,
+			MeterRegistry meterRegistry) {
+		this.customerDao = customerDao;
+		this.customersById = Caffeine.newBuilder()
+				.maximumSize(maximumSize)
+				.expireAfterWrite(expireAfterWrite)
+				.recordStats()
+				.build();
+		this.recentlyWritten = Caffeine.newBuilder()
+				.maximumSize(maximumSize)
+				.expireAfterWrite(readYourWritesWindow)
+				.build();
+		CaffeineCacheMetrics.monitor(meterRegistry, customersById, "customersById");
+	}
+
+	@Override
+	public List<Customer> selectAllCustomers() {
+		return customerDao.selectAllCustomers();
+	}
+
+	@Override
+	public List<Customer> selectCustomers(Integer afterId, int limit) {
+		return customerDao.selectCustomers(afterId, limit);
+	}
+
+	@Override
+	public List<Customer> selectCustomersMatching(CustomerQuery query, int limit) {
+		return customerDao.selectCustomersMatching(query, limit);
+	}
+
+	@Override
+	public void forEachCustomer(Consumer<Customer> action) {
+		customerDao.forEachCustomer(action);
+	}
+
+	@Override
+	public Optional<Customer> selectCustomerById(Integer id) {
+		// Invalidating an id blocks until its load completes, then drops what was loaded.
+		return Optional.ofNullable(customersById.get(id, k -> load(
+				recentlyWritten.getIfPresent(k) != null,
+				() -> customerDao.selectCustomerById(k).orElse(null)
+		)));
+	}
+
+	/**
+	 * Serves what it can from the cache and loads the rest with one call to the delegate.
+	 * The loaded rows are only cached when nothing was invalidated since the load began,
+	 * as any of them may predate that write.
+	 */
+	@Override
+	public List<Customer> selectCustomersByIds(Collection<Integer> ids) {
+		Map<Integer, Customer> cached = customersById.getAllPresent(ids);
+		if (cached.size() == ids.size()) {
+			return new ArrayList<>(cached.values());
+		}
+
+		List<Integer> missing = ids.stream()
+				.filter(id -> !cached.containsKey(id))
+				.toList();
+		List<Customer> customers = new ArrayList<>(cached.values());
+		long invalidationsBefore = invalidations.get();
+		boolean anyRecentlyWritten = !recentlyWritten.getAllPresent(missing).isEmpty();
+		for (Customer customer : load(anyRecentlyWritten, () -> customerDao.selectCustomersByIds(missing))) {
+			customersById.asMap().compute(customer.getId(), (id, current) -> {
+				if (current != null || invalidations.get() != invalidationsBefore) {
+					return current;
+				}
+				return customer;
+			});
+			customers.add(customer);
+		}
+		return customers;
+	}
+
+	@Override
+	public List<Customer> selectCustomersSimilarTo(String text, int limit) {
+		return customerDao.selectCustomersSimilarTo(text, limit);
+	}
+
+	@Override
+	public void insertCustomer(Customer customer) {
+		customerDao.insertCustomer(customer);
+	}
+
+	@Override
+	public Optional<Integer> insertCustomerIfEmailAvailable(Customer customer) {
+		return customerDao.insertCustomerIfEmailAvailable(customer);
+	}
+
+	@Override
+	public Set<String> insertCustomersIfEmailsAvailable(List<Customer> customers) {
+		return customerDao.insertCustomersIfEmailsAvailable(customers);
+	}
+
+	@Override
+	public boolean existsCustomerWithEmail(String email) {
+		return customerDao.existsCustomerWithEmail(email);
+	}
+
+	@Override
+	public Set<String> selectExistingEmails(Collection<String> emails) {
+		return customerDao.selectExistingEmails(emails);
+	}
+
+	@Override
+	public boolean existsCustomerWithId(Integer id) {
+		return customersById.getIfPresent(id) != null || customerDao.existsCustomerWithId(id);
+	}
+
+	@Override
+	public void deleteCustomerById(Integer id) {
+		customerDao.deleteCustomerById(id);
+		invalidate(id);
+	}
+
+	@Override
+	public void updateCustomer(Customer update) {
+		customerDao.updateCustomer(update);
+		invalidate(update.getId());
+	}
+
+	@Override
+	public Optional<Customer> updateCustomerIfChanged(Customer update, Integer expectedVersion) {
+		Optional<Customer> updated = customerDao.updateCustomerIfChanged(update, expectedVersion);
+		// An unchanged row may still mean the cached copy is behind, e.g. a stale version.
+		invalidate(update.getId());
+		return updated;
+	}
+
+	private static <T> T load(boolean fromPrimary, Supplier<T> load) {
+		if (!fromPrimary) {
+			return load.get();
+		}
+		try (var scope = ReplicaRoutingDataSource.primaryOnly()) {
+			return load.get();
+		}
+	}
+
+	private void invalidate(Integer id) {
+		recentlyWritten.put(id, Boolean.TRUE);
+		invalidations.incrementAndGet();
+		customersById.invalidate(id);
+	}
+}
@@ -0,0 +1,167 @@
+package com.valloyd.customer;
+
+import com.valloyd.datasource.ReplicaRoutingDataSource;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
+
+/**
+ * Coalesces concurrent {@link #selectCustomerById(Integer)} calls for the same id into
+ * one query against the JDBC DAO: the first caller runs it and everyone who asks while
+ * it is in flight waits for and shares its result. Nothing is kept once the query
+ * returns, so unlike {@link CustomerCachingDas} this never serves stale data, and it sits
+ * underneath the cache so concurrent cache misses coalesce too. Every other call goes
+ * straight through. Select it with {@code @Qualifier("coalescing")}.
+ * <p>
+ * Writes through this DAO drop the in-flight query for the id they changed, so a read
+ * that starts after the write returns never shares a query that started before it.
+ * Reads pinned to the primary by {@link ReplicaRoutingDataSource#primaryOnly()} are
+ * never coalesced, as the shared query may be running against a replica.
+ */
+@Repository("coalescing")
+public class CustomerCoalescingDas implements CustomerDao {
+
+	private final CustomerDao customerDao;
+	private final ConcurrentMap<Integer, CompletableFuture<Optional<Customer>>> inFlightById =
+			new ConcurrentHashMap<>();
+	private final Counter coalesced;
+
+	public CustomerCoalescingDas(@Qualifier("jdbc") CustomerDao customerDao, MeterRegistry meterRegistry) {
+		this.customerDao = customerDao;
+		this.coalesced = Counter.builder("customer.dao.coalesced")
+				.description("selectCustomerById calls answered by another call's in-flight query")
+				.register(meterRegistry);
+	}
+
+	@Override
+	public List<Customer> selectAllCustomers() {
+		return customerDao.selectAllCustomers();
+	}
+
+	@Override
+	public List<Customer> selectCustomers(Integer afterId, int limit) {
+		return customerDao.selectCustomers(afterId, limit);
+	}
+
+	@Override
+	public List<Customer> selectCustomersMatching(CustomerQuery query, int limit) {
+		return customerDao.selectCustomersMatching(query, limit);
+	}
+
+	@Override
+	public void forEachCustomer(Consumer<Customer> action) {
+		customerDao.forEachCustomer(action);
+	}
+
+	@Override
+	public Optional<Customer> selectCustomerById(Integer id) {
+		if (id == null || ReplicaRoutingDataSource.isPrimaryOnly()) {
+			return customerDao.selectCustomerById(id);
+		}
+
+		CompletableFuture<Optional<Customer>> query = new CompletableFuture<>();
+		CompletableFuture<Optional<Customer>> inFlight = inFlightById.putIfAbsent(id, query);
+		if (inFlight != null) {
+			coalesced.increment();
+			return await(inFlight);
+		}
+
+		try {
+			Optional<Customer> customer = customerDao.selectCustomerById(id);
+			query.complete(customer);
+			return customer;
+		} catch (Throwable e) {
+			query.completeExceptionally(e);
+			throw e;
+		} finally {
+			inFlightById.remove(id, query);
+		}
+	}
+
+	private static Optional<Customer> await(CompletableFuture<Optional<Customer>> inFlight) {
+		try {
+			return inFlight.join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException cause) {
+				throw cause;
+			}
+			throw e;
+		}
+	}
+
+	@Override
+	public List<Customer> selectCustomersByIds(Collection<Integer> ids) {
+		return customerDao.selectCustomersByIds(ids);
+	}
+
+	@Override
+	public List<Customer> selectCustomersSimilarTo(String text, int limit) {
+		return customerDao.selectCustomersSimilarTo(text, limit);
+	}
+
+	@Override
+	public void insertCustomer(Customer customer) {
+		customerDao.insertCustomer(customer);
+	}
+
+	@Override
+	public Optional<Integer> insertCustomerIfEmailAvailable(Customer customer) {
+		return customerDao.insertCustomerIfEmailAvailable(customer);
+	}
+
+	@Override
+	public Set<String> insertCustomersIfEmailsAvailable(List<Customer> customers) {
+		return customerDao.insertCustomersIfEmailsAvailable(customers);
+	}
+
+	@Override
+	public boolean existsCustomerWithEmail(String email) {
+		return customerDao.existsCustomerWithEmail(email);
+	}
+
+	@Override
+	public Set<String> selectExistingEmails(Collection<String> emails) {
+		return customerDao.selectExistingEmails(emails);
+	}
+
+	@Override
+	public boolean existsCustomerWithId(Integer id) {
+		return customerDao.existsCustomerWithId(id);
+	}
+
+	@Override
+	public void deleteCustomerById(Integer id) {
+		customerDao.deleteCustomerById(id);
+		forget(id);
+	}
+
+	@Override
+	public void updateCustomer(Customer update) {
+		customerDao.updateCustomer(update);
+		forget(update.getId());
+	}
+
+	@Override
+	public Optional<Customer> updateCustomerIfChanged(Customer update, Integer expectedVersion) {
+		Optional<Customer> updated = customerDao.updateCustomerIfChanged(update, expectedVersion);
+		forget(update.getId());
+		return updated;
+	}
+
+	private void forget(Integer id) {
+		if (id != null) {
+			inFlightById.remove(id);
+		}
+	}
+}
@@ -0,0 +1,31 @@
+package com.valloyd.customer;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Column indexes of a customer result set. Resolving them once per result set lets each
+ * row be read by index, where {@link CustomerRowMapper} looks every column up by label.
+ */
+record CustomerColumns(int id, int name, int email, int age, int version) {
+
+	static CustomerColumns of(ResultSet rs) throws SQLException {
+		return new CustomerColumns(
+				rs.findColumn("id"),
+				rs.findColumn("name"),
+				rs.findColumn("email"),
+				rs.findColumn("age"),
+				rs.findColumn("version")
+		);
+	}
+
+	Customer mapRow(ResultSet rs) throws SQLException {
+		return new Customer(
+				rs.getInt(id),
+				rs.getString(name),
+				rs.getString(email),
+				rs.getInt(age),
+				rs.getInt(version)
+		);
+	}
+}
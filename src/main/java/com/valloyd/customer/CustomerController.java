@@ -1,22 +1,89 @@
 package com.valloyd.customer;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.WebAsyncTask;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.util.List;
 
 @RestController
 @RequestMapping("api/v1/customers")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class CustomerController {
 
+	// A servlet async timeout of zero or less never expires.
+	private static final long EXPORT_TIMEOUT = -1;
+
 	private final CustomerService customerService;
+	private final ObjectWriter customerWriter;
 
-	public CustomerController(CustomerService customerService) {
+	public CustomerController(CustomerService customerService, ObjectMapper objectMapper) {
 		this.customerService = customerService;
+		this.customerWriter = objectMapper.writerFor(Customer.class);
 	}
 
 	@GetMapping
-	public List<Customer> getCustomers(){
-		return customerService.getAllCustomers();
+	public List<Customer> getCustomers(
+			@RequestParam(value = "after", required = false) Integer after,
+			@RequestParam(value = "limit", required = false) Integer limit,
+			@RequestParam(value = "minAge", required = false) Integer minAge,
+			@RequestParam(value = "maxAge", required = false) Integer maxAge,
+			@RequestParam(value = "name", required = false) String name,
+			@RequestParam(value = "email", required = false) String email,
+			@RequestParam(value = "sort", required = false) String sort,
+			@RequestParam(value = "afterAge", required = false) Integer afterAge,
+			@RequestParam(value = "afterName", required = false) String afterName){
+		if (minAge != null || maxAge != null || name != null || email != null
+				|| sort != null || afterAge != null || afterName != null){
+			return customerService.searchCustomers(
+					new CustomerQuery(minAge, maxAge, name, email, CustomerQuery.Sort.of(sort), after, afterAge, afterName),
+					limit
+			);
+		}
+		return customerService.getCustomers(after, limit);
+	}
+
+	@GetMapping(params = "ids")
+	public CustomerLookupResult getCustomersByIds(@RequestParam("ids") List<Integer> ids){
+		return customerService.getCustomersByIds(ids);
+	}
+
+	@GetMapping("search")
+	public List<Customer> searchCustomers(
+			@RequestParam("q") String q,
+			@RequestParam(value = "limit", required = false) Integer limit){
+		return customerService.searchCustomersByText(q, limit);
+	}
+
+	/**
+	 * Streams every customer from an async task that, unlike other async requests, has
+	 * no timeout, since a full export takes as long as the table is big.
+	 */
+	@GetMapping(value = "export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+	@ResponseStatus(HttpStatus.OK)
+	public WebAsyncTask<Void> exportCustomers(HttpServletResponse response){
+		response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+		return new WebAsyncTask<>(EXPORT_TIMEOUT, () -> {
+			OutputStream outputStream = response.getOutputStream();
+			customerService.exportCustomers(customer -> {
+				try {
+					outputStream.write(customerWriter.writeValueAsBytes(customer));
+					outputStream.write('\n');
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+			outputStream.flush();
+			return null;
+		});
 	}
 
 	@GetMapping("{customerId}")
@@ -29,6 +96,12 @@ public class CustomerController {
 		customerService.addCustomer(request);
 	}
 
+	@PostMapping("batch")
+	public List<CustomerRegistrationResult> registerCustomers(
+			@RequestBody List<CustomerRegistrationRequest> requests){
+		return customerService.addCustomers(requests);
+	}
+
 	@DeleteMapping("{customerId}")
 	public void deleteCustomer(
 			@PathVariable("customerId") Integer customerId) {
@@ -1,14 +1,26 @@
 package com.valloyd.customer;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
 
 public interface CustomerDao {
 	List<Customer> selectAllCustomers();
+	List<Customer> selectCustomers(Integer afterId, int limit);
+	List<Customer> selectCustomersMatching(CustomerQuery query, int limit);
+	void forEachCustomer(Consumer<Customer> action);
 	Optional<Customer> selectCustomerById(Integer id);
+	List<Customer> selectCustomersByIds(Collection<Integer> ids);
+	List<Customer> selectCustomersSimilarTo(String text, int limit);
 	void insertCustomer(Customer customer);
+	Optional<Integer> insertCustomerIfEmailAvailable(Customer customer);
+	Set<String> insertCustomersIfEmailsAvailable(List<Customer> customers);
 	boolean existsCustomerWithEmail(String email);
+	Set<String> selectExistingEmails(Collection<String> emails);
 	boolean existsCustomerWithId(Integer id);
 	void deleteCustomerById(Integer id);
 	void updateCustomer(Customer update);
+	Optional<Customer> updateCustomerIfChanged(Customer update, Integer expectedVersion);
 }
@@ -0,0 +1,101 @@
+package com.valloyd.customer;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread-safe Bloom filter over customer emails. {@link #mightContain(String)} never
+ * returns {@code false} for an email that was {@link #put(String) put}, but may return
+ * {@code true} for one that was not. Entries cannot be removed; rebuild the filter to
+ * drop deleted emails.
+ */
+public class CustomerEmailBloomFilter {
+
+	private final long bitCount;
+	private final int hashCount;
+	private final AtomicLongArray words;
+	private final LongAdder bitsSet = new LongAdder();
+
+	public CustomerEmailBloomFilter(long expectedInsertions, double falsePositiveProbability) {
+		if (expectedInsertions < 1 || falsePositiveProbability <= 0 || falsePositiveProbability >= 1) {
+			throw new IllegalArgumentException(
+					"Expected insertions must be positive and false positive probability in (0, 1)."
+			);
+		}
+
+		long bits = (long) Math.ceil(
+				-expectedInsertions * Math.log(falsePositiveProbability) / (Math.log(2) * Math.log(2))
+		);
+		this.words = new AtomicLongArray(Math.toIntExact((bits + Long.SIZE - 1) / Long.SIZE));
+		this.bitCount = (long) words.length() * Long.SIZE;
+		this.hashCount = Math.max(1, (int) Math.round((double) bitCount / expectedInsertions * Math.log(2)));
+	}
+
+	public void put(String email) {
+		long hash1 = hash(email);
+		long hash2 = mix(hash1 + 0x9E3779B97F4A7C15L) | 1;
+		for (int i = 0; i < hashCount; i++) {
+			setBit(Math.floorMod(hash1 + i * hash2, bitCount));
+		}
+	}
+
+	public boolean mightContain(String email) {
+		long hash1 = hash(email);
+		long hash2 = mix(hash1 + 0x9E3779B97F4A7C15L) | 1;
+		for (int i = 0; i < hashCount; i++) {
+			long bit = Math.floorMod(hash1 + i * hash2, bitCount);
+			if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * The probability that {@link #mightContain(String)} answers {@code true} for an
+	 * email that was never added, given how many bits are currently set.
+	 */
+	public double expectedFalsePositiveRate() {
+		return Math.pow((double) bitsSet.sum() / bitCount, hashCount);
+	}
+
+	public long bitCount() {
+		return bitCount;
+	}
+
+	public int hashCount() {
+		return hashCount;
+	}
+
+	private void setBit(long bit) {
+		int index = (int) (bit >>> 6);
+		long mask = 1L << bit;
+		long word;
+		do {
+			word = words.get(index);
+			if ((word & mask) != 0) {
+				return;
+			}
+		} while (!words.compareAndSet(index, word, word | mask));
+		bitsSet.increment();
+	}
+
+	/** 64-bit FNV-1a over the UTF-16 chars, finalised with the murmur3 mixer. */
+	private static long hash(String email) {
+		long hash = 0xCBF29CE484222325L;
+		for (int i = 0; i < email.length(); i++) {
+			hash ^= email.charAt(i);
+			hash *= 0x100000001B3L;
+		}
+		return mix(hash);
+	}
+
+	private static long mix(long hash) {
+		hash ^= hash >>> 33;
+		hash *= 0xFF51AFD7ED558CCDL;
+		hash ^= hash >>> 33;
+		hash *= 0xC4CEB9FE1A85EC53L;
+		hash ^= hash >>> 33;
+		return hash;
+	}
+}
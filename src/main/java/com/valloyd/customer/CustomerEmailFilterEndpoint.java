@@ -0,0 +1,43 @@
+package com.valloyd.customer;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+/**
+ * Exposes the email Bloom filter at {@code /actuator/emailfilter}. A POST rebuilds
+ * it from the table, e.g. after many deletes have raised the false positive rate.
+ */
+@Component
+@ConditionalOnProperty(prefix = "customer.email-filter", name = "enabled", havingValue = "true")
+@Endpoint(id = "emailfilter")
+public class CustomerEmailFilterEndpoint {
+
+	private final CustomerEmailFilteringDas customerEmailFilteringDas;
+
+	public CustomerEmailFilterEndpoint(CustomerEmailFilteringDas customerEmailFilteringDas) {
+		this.customerEmailFilteringDas = customerEmailFilteringDas;
+	}
+
+	@ReadOperation
+	public EmailFilterStatus status() {
+		return new EmailFilterStatus(
+				customerEmailFilteringDas.isBuilt(),
+				customerEmailFilteringDas.expectedFalsePositiveRate()
+		);
+	}
+
+	@WriteOperation
+	public EmailFilterStatus rebuild() {
+		customerEmailFilteringDas.rebuild();
+		return status();
+	}
+
+	public record EmailFilterStatus(
+			boolean built,
+			double expectedFalsePositiveRate
+	){
+	}
+}
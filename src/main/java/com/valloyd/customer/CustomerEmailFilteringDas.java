@@ -0,0 +1,256 @@
+package com.valloyd.customer;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Answers "email definitely not taken" from an in-memory {@link CustomerEmailBloomFilter}
+ * and only asks the coalescing DAO when the filter reports a possible match. Enable it
+ * with {@code customer.email-filter.enabled=true}; {@link CustomerService} then goes
+ * through it for everything, so that it sees every write.
+ * <p>
+ * Single registrations insert first and never look an email up, so the only check this
+ * saves is the {@link #selectExistingEmails(Collection)} query of a batch registration,
+ * which it skips entirely when every email in the batch is new.
+ * <p>
+ * The filter is built by streaming the table once the application is ready and until
+ * then every check falls through. Emails written through this DAO are added before the
+ * write, and a {@link #rebuild()} waits for writes in flight before it starts streaming,
+ * so the filter never misses them. Writes made around it, by the write-behind queue or
+ * other application instances, are only seen after a rebuild; that is harmless because
+ * the batch insert skips taken emails on the unique constraint.
+ */
+@Repository("bloom")
+@ConditionalOnProperty(prefix = "customer.email-filter", name = "enabled", havingValue = "true")
+public class CustomerEmailFilteringDas implements CustomerDao {
+
+	private final CustomerDao customerDao;
+	private final long expectedInsertions;
+	private final double falsePositiveProbability;
+	private final Counter definitelyAbsent;
+	private final Counter falsePositives;
+	private final Counter confirmedPresent;
+
+	private volatile CustomerEmailBloomFilter filter;
+	private volatile CustomerEmailBloomFilter rebuilding;
+	// Writers share it around adding their emails and writing; rebuild takes it alone to swap filters.
+	private final ReadWriteLock swapLock = new ReentrantReadWriteLock();
+
+	public CustomerEmailFilteringDas(
+			@Qualifier("coalescing") CustomerDao customerDao,
+			@Value("${customer.email-filter.expected-insertions:1000000}") long expectedInsertions,
+			@Value("${customer.email-filter.false-positive-probability:0.01}") double falsePositiveProbability,
+			MeterRegistry meterRegistry) {
+		this.customerDao = customerDao;
+		this.expectedInsertions = expectedInsertions;
+		this.falsePositiveProbability = falsePositiveProbability;
+		this.definitelyAbsent = lookupCounter(meterRegistry, "definitely_absent");
+		this.falsePositives = lookupCounter(meterRegistry, "false_positive");
+		this.confirmedPresent = lookupCounter(meterRegistry, "confirmed_present");
+		Gauge.builder("customer.email.filter.expected.fpp", this, CustomerEmailFilteringDas::expectedFalsePositiveRate)
+				.description("False positive rate implied by the bits currently set in the email filter")
+				.register(meterRegistry);
+	}
+
+	private static Counter lookupCounter(MeterRegistry meterRegistry, String result) {
+		return Counter.builder("customer.email.filter.lookups")
+				.tag("result", result)
+				.register(meterRegistry);
+	}
+
+	/**
+	 * Replaces the filter with one built from the current table. Writes already in flight
+	 * finish before the table is streamed, so the stream sees them, and writes made while
+	 * it is being streamed go to both filters, so none are lost in the swap.
+	 */
+	@EventListener(ApplicationReadyEvent.class)
+	public synchronized void rebuild() {
+		CustomerEmailBloomFilter next = new CustomerEmailBloomFilter(expectedInsertions, falsePositiveProbability);
+		exclusively(() -> rebuilding = next);
+		boolean built = false;
+		try {
+			customerDao.forEachCustomer(customer -> next.put(customer.getEmail()));
+			built = true;
+		} finally {
+			boolean swap = built;
+			exclusively(() -> {
+				if (swap) {
+					filter = next;
+				}
+				rebuilding = null;
+			});
+		}
+	}
+
+	private void exclusively(Runnable action) {
+		Lock lock = swapLock.writeLock();
+		lock.lock();
+		try {
+			action.run();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private <T> T remembering(Collection<String> emails, Supplier<T> write) {
+		Lock lock = swapLock.readLock();
+		lock.lock();
+		try {
+			emails.forEach(this::remember);
+			return write.get();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public double expectedFalsePositiveRate() {
+		CustomerEmailBloomFilter current = filter;
+		return current == null ? 1.0 : current.expectedFalsePositiveRate();
+	}
+
+	public boolean isBuilt() {
+		return filter != null;
+	}
+
+	private boolean mightBeTaken(String email) {
+		CustomerEmailBloomFilter current = filter;
+		if (current == null || current.mightContain(email)) {
+			return true;
+		}
+		definitelyAbsent.increment();
+		return false;
+	}
+
+	private void remember(String email) {
+		if (email == null) {
+			return;
+		}
+		CustomerEmailBloomFilter current = filter;
+		if (current != null) {
+			current.put(email);
+		}
+		CustomerEmailBloomFilter next = rebuilding;
+		if (next != null) {
+			next.put(email);
+		}
+	}
+
+	@Override
+	public boolean existsCustomerWithEmail(String email) {
+		if (!mightBeTaken(email)) {
+			return false;
+		}
+
+		boolean exists = customerDao.existsCustomerWithEmail(email);
+		(exists ? confirmedPresent : falsePositives).increment();
+		return exists;
+	}
+
+	@Override
+	public Set<String> selectExistingEmails(Collection<String> emails) {
+		List<String> candidates = emails.stream()
+				.filter(this::mightBeTaken)
+				.toList();
+		return candidates.isEmpty() ? Set.of() : customerDao.selectExistingEmails(candidates);
+	}
+
+	@Override
+	public List<Customer> selectCustomersSimilarTo(String text, int limit) {
+		return customerDao.selectCustomersSimilarTo(text, limit);
+	}
+
+	@Override
+	public void insertCustomer(Customer customer) {
+		remembering(Collections.singletonList(customer.getEmail()), () -> {
+			customerDao.insertCustomer(customer);
+			return null;
+		});
+	}
+
+	@Override
+	public Optional<Integer> insertCustomerIfEmailAvailable(Customer customer) {
+		return remembering(Collections.singletonList(customer.getEmail()),
+				() -> customerDao.insertCustomerIfEmailAvailable(customer));
+	}
+
+	@Override
+	public Set<String> insertCustomersIfEmailsAvailable(List<Customer> customers) {
+		return remembering(emailsOf(customers), () -> customerDao.insertCustomersIfEmailsAvailable(customers));
+	}
+
+	@Override
+	public void updateCustomer(Customer update) {
+		remembering(Collections.singletonList(update.getEmail()), () -> {
+			customerDao.updateCustomer(update);
+			return null;
+		});
+	}
+
+	@Override
+	public Optional<Customer> updateCustomerIfChanged(Customer update, Integer expectedVersion) {
+		return remembering(Collections.singletonList(update.getEmail()),
+				() -> customerDao.updateCustomerIfChanged(update, expectedVersion));
+	}
+
+	private static List<String> emailsOf(List<Customer> customers) {
+		return customers.stream().map(Customer::getEmail).toList();
+	}
+
+	@Override
+	public List<Customer> selectAllCustomers() {
+		return customerDao.selectAllCustomers();
+	}
+
+	@Override
+	public List<Customer> selectCustomers(Integer afterId, int limit) {
+		return customerDao.selectCustomers(afterId, limit);
+	}
+
+	@Override
+	public List<Customer> selectCustomersMatching(CustomerQuery query, int limit) {
+		return customerDao.selectCustomersMatching(query, limit);
+	}
+
+	@Override
+	public void forEachCustomer(Consumer<Customer> action) {
+		customerDao.forEachCustomer(action);
+	}
+
+	@Override
+	public Optional<Customer> selectCustomerById(Integer id) {
+		return customerDao.selectCustomerById(id);
+	}
+
+	@Override
+	public List<Customer> selectCustomersByIds(Collection<Integer> ids) {
+		return customerDao.selectCustomersByIds(ids);
+	}
+
+	@Override
+	public boolean existsCustomerWithId(Integer id) {
+		return customerDao.existsCustomerWithId(id);
+	}
+
+	@Override
+	public void deleteCustomerById(Integer id) {
+		customerDao.deleteCustomerById(id);
+	}
+}
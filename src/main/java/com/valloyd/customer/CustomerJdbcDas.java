@@ -1,14 +1,35 @@
 package com.valloyd.customer;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.ResultSetExtractor;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.function.Consumer;
 
 @Repository("jdbc")
 public class CustomerJdbcDas implements CustomerDao{
 
+	private static final Logger log = LoggerFactory.getLogger(CustomerJdbcDas.class);
+
+	static final int EXPORT_FETCH_SIZE = 1000;
+	private static final String[] UPDATABLE_COLUMNS = {"name", "email", "age"};
+	private static final String[] UPDATE_STATEMENTS = updateStatements(false, false);
+	private static final String[] RETURNING_UPDATE_STATEMENTS = updateStatements(true, false);
+	private static final String[] VERSIONED_RETURNING_UPDATE_STATEMENTS = updateStatements(true, true);
+	private static final CustomerResultSetExtractor CUSTOMER_RESULT_SET_EXTRACTOR = new CustomerResultSetExtractor();
+
 	private final JdbcTemplate jdbcTemplate;
 	private final CustomerRowMapper customerRowMapper;
 
@@ -18,19 +39,122 @@ public class CustomerJdbcDas implements CustomerDao{
 	}
 
 	@Override
+	@Transactional(readOnly = true)
 	public List<Customer> selectAllCustomers() {
 		var sql = """
-    			SELECT id, name, email, age
+    			SELECT id, name, email, age, version
     			FROM customer
 				""";
 
-		return jdbcTemplate.query(sql, customerRowMapper);
+		return jdbcTemplate.query(sql, CUSTOMER_RESULT_SET_EXTRACTOR);
+	}
+
+	@Override
+	@Transactional(readOnly = true)
+	public List<Customer> selectCustomers(Integer afterId, int limit) {
+		var sql = """
+				SELECT id, name, email, age, version
+				FROM customer
+				WHERE id > ?
+				ORDER BY id
+				LIMIT ?
+				""";
+
+		return jdbcTemplate.query(sql, CUSTOMER_RESULT_SET_EXTRACTOR, afterId, limit);
 	}
 
+	/**
+	 * Only the filters that are set become predicates, so each combination gets its own
+	 * statement and plan. The keyset cursor is a row comparison, which PostgreSQL
+	 * matches against the leading columns of the {@code (age, id)} and {@code (name, id)}
+	 * indexes, so every page starts with an index seek however deep it is.
+	 */
 	@Override
+	@Transactional(readOnly = true)
+	public List<Customer> selectCustomersMatching(CustomerQuery query, int limit) {
+		StringBuilder sql = new StringBuilder("""
+				SELECT id, name, email, age, version
+				FROM customer
+				WHERE TRUE
+				""");
+		List<Object> args = new ArrayList<>();
+
+		if (query.minAge() != null) {
+			sql.append("AND age >= ?\n");
+			args.add(query.minAge());
+		}
+		if (query.maxAge() != null) {
+			sql.append("AND age <= ?\n");
+			args.add(query.maxAge());
+		}
+		if (query.namePrefix() != null) {
+			sql.append("AND name LIKE ?\n");
+			args.add(CustomerQuery.likePrefix(query.namePrefix()));
+		}
+		if (query.emailPrefix() != null) {
+			sql.append("AND email LIKE ?\n");
+			args.add(CustomerQuery.likePrefix(query.emailPrefix()));
+		}
+		if (query.hasCursor()) {
+			switch (query.sort()) {
+				case ID -> sql.append("AND id > ?\n");
+				case AGE -> {
+					sql.append("AND (age, id) > (?, ?)\n");
+					args.add(query.afterAge());
+				}
+				case NAME -> {
+					sql.append("AND (name, id) > (?, ?)\n");
+					args.add(query.afterName());
+				}
+			}
+			args.add(query.afterId());
+		}
+
+		sql.append(switch (query.sort()) {
+			case ID -> "ORDER BY id\n";
+			case AGE -> "ORDER BY age, id\n";
+			case NAME -> "ORDER BY name, id\n";
+		});
+		sql.append("LIMIT ?");
+		args.add(limit);
+
+		return jdbcTemplate.query(sql.toString(), CUSTOMER_RESULT_SET_EXTRACTOR, args.toArray());
+	}
+
+	/**
+	 * Streams every customer through a server-side cursor. The PostgreSQL driver
+	 * only honours the fetch size inside a transaction, hence the read-only one here.
+	 */
+	@Override
+	@Transactional(readOnly = true)
+	public void forEachCustomer(Consumer<Customer> action) {
+		var sql = """
+				SELECT id, name, email, age, version
+				FROM customer
+				ORDER BY id
+				""";
+
+		PreparedStatementCreator statementCreator = connection -> {
+			PreparedStatement statement = connection.prepareStatement(sql);
+			statement.setFetchSize(EXPORT_FETCH_SIZE);
+			return statement;
+		};
+		ResultSetExtractor<Void> resultSetExtractor = rs -> {
+			CustomerColumns columns = CustomerColumns.of(rs);
+			while (rs.next()) {
+				action.accept(columns.mapRow(rs));
+			}
+			return null;
+		};
+
+		jdbcTemplate.query(statementCreator, resultSetExtractor);
+	}
+
+	@Override
+	@Transactional(readOnly = true)
 	public Optional<Customer> selectCustomerById(Integer id) {
 		var sql = """
-    			SELECT id, name, email, age
+    			SELECT id, name, email, age, version
     			FROM customer
     			WHERE id = ?
 				""";
@@ -40,6 +164,45 @@ public class CustomerJdbcDas implements CustomerDao{
 				.findFirst();
 	}
 
+	/**
+	 * One round trip for any number of ids, with the ids bound as a single array so the
+	 * statement text, and its cached plan, never changes.
+	 */
+	@Override
+	@Transactional(readOnly = true)
+	public List<Customer> selectCustomersByIds(Collection<Integer> ids) {
+		if (ids.isEmpty()) {
+			return List.of();
+		}
+
+		var sql = """
+				SELECT id, name, email, age, version
+				FROM customer
+				WHERE id = ANY(?)
+				""";
+
+		return jdbcTemplate.query(sql, CUSTOMER_RESULT_SET_EXTRACTOR, (Object) ids.toArray(Integer[]::new));
+	}
+
+	/**
+	 * Ranks by {@code word_similarity} to the name or the email. The {@code <%} operators
+	 * match at {@code pg_trgm.word_similarity_threshold} and can use the trigram GIN
+	 * indexes, so only matching rows are scored.
+	 */
+	@Override
+	@Transactional(readOnly = true)
+	public List<Customer> selectCustomersSimilarTo(String text, int limit) {
+		var sql = """
+				SELECT id, name, email, age, version
+				FROM customer
+				WHERE ? <% name OR ? <% email
+				ORDER BY greatest(word_similarity(?, name), word_similarity(?, email)) DESC, id
+				LIMIT ?
+				""";
+
+		return jdbcTemplate.query(sql, CUSTOMER_RESULT_SET_EXTRACTOR, text, text, text, text, limit);
+	}
+
 	@Override
 	public void insertCustomer(Customer customer) {
 		var sql = """
@@ -49,31 +212,99 @@ public class CustomerJdbcDas implements CustomerDao{
 
 		int result = jdbcTemplate.update(sql, customer.getName(), customer.getEmail(), customer.getAge());
 
-		System.out.println("jdbcTemplate.update = " + result);
+		log.atDebug().addKeyValue("rows", result).log("Inserted customer");
+	}
+
+	/**
+	 * Relies on the unique email constraint instead of checking first, so registration
+	 * costs one statement and cannot race with another insert of the same email.
+	 *
+	 * @return the generated id, or empty when the email is already taken
+	 */
+	@Override
+	public Optional<Integer> insertCustomerIfEmailAvailable(Customer customer) {
+		var sql = """
+				INSERT INTO customer(name, email, age)
+				VALUES (?, ?, ?)
+				ON CONFLICT ON CONSTRAINT customer_email_unique DO NOTHING
+				RETURNING id
+				""";
+
+		return jdbcTemplate.queryForList(sql, Integer.class, customer.getName(), customer.getEmail(), customer.getAge())
+				.stream()
+				.findFirst();
+	}
+
+	/**
+	 * The multi-row form of {@link #insertCustomerIfEmailAvailable(Customer)}: one
+	 * statement and one round trip however many customers there are, with the columns
+	 * bound as arrays so the statement text, and its cached plan, never changes.
+	 *
+	 * @return the emails that were inserted, the rest were already taken
+	 */
+	@Override
+	public Set<String> insertCustomersIfEmailsAvailable(List<Customer> customers) {
+		if (customers.isEmpty()) {
+			return Set.of();
+		}
+
+		var sql = """
+				INSERT INTO customer(name, email, age)
+				SELECT name, email, age
+				FROM unnest(?::text[], ?::text[], ?::int[]) AS c(name, email, age)
+				ON CONFLICT ON CONSTRAINT customer_email_unique DO NOTHING
+				RETURNING email
+				""";
+
+		List<String> inserted = jdbcTemplate.query(connection -> {
+			PreparedStatement ps = connection.prepareStatement(sql);
+			ps.setArray(1, connection.createArrayOf("text", customers.stream().map(Customer::getName).toArray()));
+			ps.setArray(2, connection.createArrayOf("text", customers.stream().map(Customer::getEmail).toArray()));
+			ps.setArray(3, connection.createArrayOf("int4", customers.stream().map(Customer::getAge).toArray()));
+			return ps;
+		}, (rs, rowNum) -> rs.getString(1));
+
+		log.atDebug().addKeyValue("rows", inserted.size()).log("Inserted customers");
+		return new HashSet<>(inserted);
 	}
 
 	@Override
 	public boolean existsCustomerWithEmail(String email) {
 		var sql = """
-				SELECT count(id)
+				SELECT EXISTS(
+					SELECT 1
+					FROM customer
+					WHERE email = ?
+				)
+				""";
+
+		return Boolean.TRUE.equals(jdbcTemplate.queryForObject(sql, Boolean.class, email));
+	}
+
+	@Override
+	public Set<String> selectExistingEmails(Collection<String> emails) {
+		var sql = """
+				SELECT email
 				FROM customer
-				WHERE email = ?
+				WHERE email = ANY(?)
 				""";
 
-		Integer count = jdbcTemplate.queryForObject(sql, Integer.class, email);
-		return count != null && count > 0;
+		return new HashSet<>(
+				jdbcTemplate.queryForList(sql, String.class, (Object) emails.toArray(String[]::new))
+		);
 	}
 
 	@Override
 	public boolean existsCustomerWithId(Integer id) {
 		var sql = """
-				SELECT count(id)
-				FROM customer
-				WHERE id = ?
+				SELECT EXISTS(
+					SELECT 1
+					FROM customer
+					WHERE id = ?
+				)
 				""";
 
-		Integer count = jdbcTemplate.queryForObject(sql, Integer.class, id);
-		return count != null && count > 0;
+		return Boolean.TRUE.equals(jdbcTemplate.queryForObject(sql, Boolean.class, id));
 	}
 
 	@Override
@@ -84,27 +315,109 @@ public class CustomerJdbcDas implements CustomerDao{
     			WHERE id = ?
 				""";
 		int result = jdbcTemplate.update(sql, id);
-		System.out.println("deleteCustomerById result = " + result);
+		log.atDebug().addKeyValue("id", id).addKeyValue("rows", result).log("Deleted customer");
 	}
 
 	@Override
 	public void updateCustomer(Customer update) {
-		if (update.getName() != null) {
-			String sql = "UPDATE customer SET name = ? WHERE id = ?";
-			int result = jdbcTemplate.update(sql, update.getName(), update.getId());
-		System.out.println("Update customer name result = " + result);
+		Object[] values = updatableValues(update);
+		int columns = changedColumns(values);
+
+		if (columns == 0) {
+			return;
+		}
+
+		List<Object> args = new ArrayList<>(values.length + 1);
+		addChangedValues(args, values);
+		args.add(update.getId());
+		int result = jdbcTemplate.update(UPDATE_STATEMENTS[columns], args.toArray());
+		log.atDebug().addKeyValue("id", update.getId()).addKeyValue("rows", result).log("Updated customer");
+	}
+
+	/**
+	 * Updates and reads back the customer in one round trip. Nothing is written, and the
+	 * result is empty, when the customer does not exist, none of the given values differ
+	 * from the stored ones, or {@code expectedVersion} is given and no longer current.
+	 */
+	@Override
+	public Optional<Customer> updateCustomerIfChanged(Customer update, Integer expectedVersion) {
+		Object[] values = updatableValues(update);
+		int columns = changedColumns(values);
+
+		if (columns == 0) {
+			return Optional.empty();
+		}
+
+		List<Object> args = new ArrayList<>(2 * values.length + 2);
+		addChangedValues(args, values);
+		args.add(update.getId());
+		if (expectedVersion != null) {
+			args.add(expectedVersion);
+		}
+		addChangedValues(args, values);
+
+		String sql = expectedVersion == null
+				? RETURNING_UPDATE_STATEMENTS[columns]
+				: VERSIONED_RETURNING_UPDATE_STATEMENTS[columns];
+
+		return jdbcTemplate.query(sql, customerRowMapper, args.toArray())
+				.stream()
+				.findFirst();
+	}
+
+	private static Object[] updatableValues(Customer update) {
+		return new Object[]{update.getName(), update.getEmail(), update.getAge()};
+	}
+
+	private static int changedColumns(Object[] values) {
+		int columns = 0;
+		for (int i = 0; i < values.length; i++) {
+			if (values[i] != null) {
+				columns |= 1 << i;
+			}
 		}
+		return columns;
+	}
 
-		if (update.getAge() != null) {
-			String sql = "UPDATE customer SET age = ? WHERE id = ?";
-			int result = jdbcTemplate.update(sql, update.getAge(), update.getId());
-			System.out.println("Update customer age result = " + result);
+	private static void addChangedValues(List<Object> args, Object[] values) {
+		for (Object value : values) {
+			if (value != null) {
+				args.add(value);
+			}
 		}
+	}
+
+	/**
+	 * Builds one UPDATE per combination of {@link #UPDATABLE_COLUMNS}, indexed by a bit mask
+	 * of the columns being set, so every partial update reuses the same statement text.
+	 * The returning variants only write when a value actually differs, optionally guarded
+	 * by the expected version, and hand back the updated row.
+	 */
+	private static String[] updateStatements(boolean returning, boolean versioned) {
+		String[] statements = new String[1 << UPDATABLE_COLUMNS.length];
+		for (int columns = 1; columns < statements.length; columns++) {
+			StringJoiner assignments = new StringJoiner(", ", "", ", version = version + 1");
+			StringJoiner differences = new StringJoiner(" OR ", "(", ")");
+			for (int i = 0; i < UPDATABLE_COLUMNS.length; i++) {
+				if ((columns & (1 << i)) != 0) {
+					assignments.add(UPDATABLE_COLUMNS[i] + " = ?");
+					differences.add(UPDATABLE_COLUMNS[i] + " IS DISTINCT FROM ?");
+				}
+			}
 
-		if (update.getEmail() != null) {
-			String sql = "UPDATE customer SET email = ? WHERE id = ?";
-			int result = jdbcTemplate.update(sql, update.getEmail(), update.getId());
-			System.out.println("Update customer email result = " + result);
+			StringBuilder sql = new StringBuilder("UPDATE customer SET ")
+					.append(assignments)
+					.append(" WHERE id = ?");
+			if (returning) {
+				if (versioned) {
+					sql.append(" AND version = ?");
+				}
+				sql.append(" AND ")
+						.append(differences)
+						.append(" RETURNING id, name, email, age, version");
+			}
+			statements[columns] = sql.toString();
 		}
+		return statements;
 	}
 }
@@ -1,13 +1,21 @@
 package com.valloyd.customer;
 
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
 
 @Repository("jpa")
 public class CustomerJpaDas implements CustomerDao{
 
+	static final int EXPORT_PAGE_SIZE = 1000;
+
 	private final CustomerRepository customerRepository;
 
 	public CustomerJpaDas(CustomerRepository customerRepository) {
@@ -19,21 +27,80 @@ public class CustomerJpaDas implements CustomerDao{
 		return customerRepository.findAll();
 	}
 
+	@Override
+	public List<Customer> selectCustomers(Integer afterId, int limit) {
+		return customerRepository.findByIdGreaterThanOrderByIdAsc(afterId, PageRequest.of(0, limit));
+	}
+
+	@Override
+	public List<Customer> selectCustomersMatching(CustomerQuery query, int limit) {
+		return customerRepository.findMatching(query, limit);
+	}
+
+	@Override
+	public void forEachCustomer(Consumer<Customer> action) {
+		int afterId = 0;
+		List<Customer> page;
+		do {
+			page = selectCustomers(afterId, EXPORT_PAGE_SIZE);
+			page.forEach(action);
+			if (!page.isEmpty()) {
+				afterId = page.get(page.size() - 1).getId();
+			}
+		} while (page.size() == EXPORT_PAGE_SIZE);
+	}
+
 	@Override
 	public Optional<Customer> selectCustomerById(Integer id) {
 		return customerRepository.findById(id);
 	}
 
+	@Override
+	public List<Customer> selectCustomersByIds(Collection<Integer> ids) {
+		return customerRepository.findAllById(ids);
+	}
+
+	@Override
+	public List<Customer> selectCustomersSimilarTo(String text, int limit) {
+		return customerRepository.findSimilarTo(text, limit);
+	}
+
 	@Override
 	public void insertCustomer(Customer customer) {
 		customerRepository.save(customer);
 	}
 
+	@Override
+	public Optional<Integer> insertCustomerIfEmailAvailable(Customer customer) {
+		return customerRepository.insertIfEmailAvailable(
+				customer.getName(),
+				customer.getEmail(),
+				customer.getAge()
+		);
+	}
+
+	@Override
+	@Transactional
+	public Set<String> insertCustomersIfEmailsAvailable(List<Customer> customers) {
+		Set<String> inserted = new HashSet<>();
+		for (Customer customer : customers) {
+			if (insertCustomerIfEmailAvailable(customer).isPresent()) {
+				inserted.add(customer.getEmail());
+			}
+		}
+		return inserted;
+	}
+
 	@Override
 	public boolean existsCustomerWithEmail(String email) {
 		return customerRepository.existsCustomerByEmail(email);
 	}
 
+	@Override
+	public Set<String> selectExistingEmails(Collection<String> emails) {
+		return customerRepository.findEmailsIn(emails);
+	}
+
 	@Override
 	public boolean existsCustomerWithId(Integer id) {
 		return customerRepository.existsCustomerById(id);
@@ -48,4 +115,13 @@ public class CustomerJpaDas implements CustomerDao{
 	public void updateCustomer(Customer update) {
 		customerRepository.save(update);
 	}
+
+	@Override
+	@Transactional
+	public Optional<Customer> updateCustomerIfChanged(Customer update, Integer expectedVersion) {
+		return customerRepository.findById(update.getId())
+				.filter(customer -> expectedVersion == null || expectedVersion == customer.getVersion())
+				.filter(customer -> customer.applyChanges(update))
+				.map(customerRepository::saveAndFlush);
+	}
 }
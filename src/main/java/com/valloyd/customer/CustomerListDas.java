@@ -1,73 +1,265 @@
 package com.valloyd.customer;
 
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Repository;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.NavigableSet;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
 
+/**
+ * In-process customer store indexed by id, by email and by the trigrams of name and
+ * email for similarity search.
+ * <p>
+ * Reads go straight to the concurrent indexes without locking. Writes are serialised on
+ * a single lock so the id and email indexes always agree and the email stays unique, as
+ * the database constraint would guarantee. Customers are copied on the way in and out
+ * and replaced rather than mutated, so callers never share state with the store.
+ */
 @Repository("list")
-public class CustomerListDas implements CustomerDao{
-	private static List<Customer> customers;
+public class CustomerListDas implements CustomerDao {
 
-	static {
-		customers = new ArrayList<>();
-		Customer alex = new Customer(
+	private final ConcurrentMap<Integer, Customer> customersById = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, Integer> idsByEmail = new ConcurrentHashMap<>();
+	private final NavigableSet<Integer> orderedIds = new ConcurrentSkipListSet<>();
+	private final CustomerTrigramIndex trigramIndex = new CustomerTrigramIndex();
+	private final AtomicInteger lastId = new AtomicInteger();
+	private final Object writeLock = new Object();
+
+	public CustomerListDas() {
+		insertCustomer(new Customer(
 				1,
 				"Alex",
 				"alex@gmail.com",
 				28
-		);
-		customers.add(alex);
-
-		Customer jamila = new Customer(
+		));
+		insertCustomer(new Customer(
 				2,
 				"Jamila",
 				"jamila@gmail.com",
 				28
-		);
-		customers.add(jamila);
+		));
 	}
 
 	@Override
 	public List<Customer> selectAllCustomers() {
+		List<Customer> customers = new ArrayList<>(customersById.size());
+		forEachCustomer(customers::add);
 		return customers;
 	}
 
+	@Override
+	public List<Customer> selectCustomers(Integer afterId, int limit) {
+		List<Customer> customers = new ArrayList<>(limit);
+		for (Integer id : orderedIds.tailSet(afterId, false)) {
+			if (customers.size() == limit) {
+				break;
+			}
+			Customer customer = customersById.get(id);
+			if (customer != null) {
+				customers.add(copy(customer));
+			}
+		}
+		return customers;
+	}
+
+	/**
+	 * Scans every customer, as there is no index on age or name; fine at the sizes this
+	 * store is meant for.
+	 */
+	@Override
+	public List<Customer> selectCustomersMatching(CustomerQuery query, int limit) {
+		List<Customer> matching = new ArrayList<>();
+		Predicate<Customer> predicate = query.predicate();
+		forEachCustomer(customer -> {
+			if (predicate.test(customer)) {
+				matching.add(customer);
+			}
+		});
+		matching.sort(query.order());
+		return new ArrayList<>(matching.subList(0, Math.min(limit, matching.size())));
+	}
+
+	@Override
+	public void forEachCustomer(Consumer<Customer> action) {
+		for (Integer id : orderedIds) {
+			Customer customer = customersById.get(id);
+			if (customer != null) {
+				action.accept(copy(customer));
+			}
+		}
+	}
+
 	@Override
 	public Optional<Customer> selectCustomerById(Integer id) {
-		return customers.stream()
-				.filter(c -> c.getId().equals(id))
-				.findFirst();
+		return Optional.ofNullable(customersById.get(id))
+				.map(CustomerListDas::copy);
+	}
+
+	@Override
+	public List<Customer> selectCustomersByIds(Collection<Integer> ids) {
+		List<Customer> customers = new ArrayList<>(ids.size());
+		for (Integer id : ids) {
+			Customer customer = customersById.get(id);
+			if (customer != null) {
+				customers.add(copy(customer));
+			}
+		}
+		return customers;
+	}
+
+	@Override
+	public List<Customer> selectCustomersSimilarTo(String text, int limit) {
+		return trigramIndex.search(text, limit, id -> {
+			Customer customer = customersById.get(id);
+			return customer == null ? null : copy(customer);
+		});
 	}
 
 	@Override
 	public void insertCustomer(Customer customer) {
-		customers.add(customer);
+		synchronized (writeLock) {
+			if (isTaken(customer)) {
+				throw new DuplicateKeyException(CustomerService.EMAIL_UNIQUE_CONSTRAINT);
+			}
+			store(customer);
+		}
+	}
+
+	@Override
+	public Optional<Integer> insertCustomerIfEmailAvailable(Customer customer) {
+		synchronized (writeLock) {
+			if (idsByEmail.containsKey(customer.getEmail())) {
+				return Optional.empty();
+			}
+			return Optional.of(store(new Customer(customer.getName(), customer.getEmail(), customer.getAge())));
+		}
+	}
+
+	@Override
+	public Set<String> insertCustomersIfEmailsAvailable(List<Customer> customers) {
+		synchronized (writeLock) {
+			Set<String> inserted = new HashSet<>();
+			for (Customer customer : customers) {
+				if (!idsByEmail.containsKey(customer.getEmail())) {
+					store(new Customer(customer.getName(), customer.getEmail(), customer.getAge()));
+					inserted.add(customer.getEmail());
+				}
+			}
+			return inserted;
+		}
 	}
 
 	@Override
 	public boolean existsCustomerWithEmail(String email) {
-		return customers.stream()
-				.anyMatch(c -> c.getEmail().equals(email));
+		return idsByEmail.containsKey(email);
+	}
+
+	@Override
+	public Set<String> selectExistingEmails(Collection<String> emails) {
+		return emails.stream()
+				.filter(idsByEmail::containsKey)
+				.collect(Collectors.toSet());
 	}
 
 	@Override
 	public boolean existsCustomerWithId(Integer id) {
-		return customers.stream()
-				.anyMatch(c -> c.getId().equals(id));
+		return customersById.containsKey(id);
 	}
 
 	@Override
 	public void deleteCustomerById(Integer id) {
-		customers.stream()
-				.filter(c -> c.getId().equals(id))
-				.findFirst()
-				.ifPresent(customers::remove);
+		synchronized (writeLock) {
+			orderedIds.remove(id);
+			Customer removed = customersById.remove(id);
+			if (removed != null) {
+				idsByEmail.remove(removed.getEmail(), id);
+				trigramIndex.remove(removed);
+			}
+		}
 	}
 
 	@Override
 	public void updateCustomer(Customer update) {
-		customers.add(update);
+		updateCustomerIfChanged(update, null);
+	}
+
+	@Override
+	public Optional<Customer> updateCustomerIfChanged(Customer update, Integer expectedVersion) {
+		synchronized (writeLock) {
+			Integer emailOwner = update.getEmail() == null ? null : idsByEmail.get(update.getEmail());
+			if (emailOwner != null && !emailOwner.equals(update.getId())) {
+				throw new DuplicateKeyException(CustomerService.EMAIL_UNIQUE_CONSTRAINT);
+			}
+
+			Customer current = customersById.get(update.getId());
+			if (current == null || (expectedVersion != null && expectedVersion != current.getVersion())) {
+				return Optional.empty();
+			}
+
+			Customer updated = copy(current);
+			if (!updated.applyChanges(update)) {
+				return Optional.empty();
+			}
+			updated.setVersion(current.getVersion() + 1);
+
+			if (!updated.getEmail().equals(current.getEmail())) {
+				idsByEmail.remove(current.getEmail(), current.getId());
+				idsByEmail.put(updated.getEmail(), updated.getId());
+			}
+			customersById.put(updated.getId(), updated);
+			if (!updated.getName().equals(current.getName()) || !updated.getEmail().equals(current.getEmail())) {
+				trigramIndex.remove(current);
+				trigramIndex.add(updated);
+			}
+			return Optional.of(copy(updated));
+		}
+	}
+
+	/**
+	 * Stores a copy of the customer under its id, or under the next free id when it
+	 * has none. Callers hold the write lock and have checked the email is free.
+	 */
+	private int store(Customer customer) {
+		int id;
+		if (customer.getId() == null) {
+			id = lastId.incrementAndGet();
+		} else {
+			id = customer.getId();
+			lastId.accumulateAndGet(id, Math::max);
+		}
+
+		Customer stored = new Customer(id, customer.getName(), customer.getEmail(), customer.getAge(), customer.getVersion());
+		customersById.put(id, stored);
+		idsByEmail.put(customer.getEmail(), id);
+		trigramIndex.add(stored);
+		orderedIds.add(id);
+		return id;
+	}
+
+	private boolean isTaken(Customer customer) {
+		return idsByEmail.containsKey(customer.getEmail())
+				|| (customer.getId() != null && customersById.containsKey(customer.getId()));
+	}
+
+	private static Customer copy(Customer customer) {
+		return new Customer(
+				customer.getId(),
+				customer.getName(),
+				customer.getEmail(),
+				customer.getAge(),
+				customer.getVersion()
+		);
 	}
 }
@@ -0,0 +1,9 @@
+package com.valloyd.customer;
+
+import java.util.List;
+
+public record CustomerLookupResult(
+		List<Customer> customers,
+		List<Integer> missingIds
+){
+}
@@ -0,0 +1,154 @@
+package com.valloyd.customer;
+
+import com.valloyd.exception.DuplicateResourceException;
+import com.valloyd.exception.RequestValidationException;
+import com.valloyd.exception.ResourceNotFoundException;
+import com.valloyd.exception.ServiceUnavailableException;
+import com.valloyd.exception.StaleResourceException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.stereotype.Repository;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times every {@link CustomerDao} and {@link CustomerService} call. DAO calls are
+ * recorded as {@code customer.dao.calls}, tagged with the DAO's bean name, the method and
+ * the outcome; service calls as {@code customer.service.calls}, tagged with the operation
+ * and the outcome. Decorating DAOs are timed as well as their delegates, so a cache hit
+ * shows up under {@code dao=cached} without a matching {@code dao=jdbc} call.
+ * <p>
+ * Timers are looked up once per method and outcome and cached, so a call costs two clock
+ * reads and a lock-free histogram update. The histogram buckets are configured under
+ * {@code management.metrics.distribution}. Switch it off with
+ * {@code customer.metrics.enabled=false}.
+ */
+@Aspect
+@Component
+@ConditionalOnProperty(prefix = "customer.metrics", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class CustomerMetricsAspect {
+
+	static final String DAO_TIMER = "customer.dao.calls";
+	static final String SERVICE_TIMER = "customer.service.calls";
+
+	enum Outcome {
+		SUCCESS("success"),
+		NOT_FOUND("not_found"),
+		DUPLICATE("duplicate"),
+		VALIDATION_ERROR("validation_error"),
+		STALE("stale"),
+		REJECTED("rejected"),
+		ERROR("error");
+
+		private static final Outcome[] VALUES = values();
+
+		private final String tag;
+
+		Outcome(String tag) {
+			this.tag = tag;
+		}
+
+		static Outcome of(Throwable e) {
+			if (e instanceof ResourceNotFoundException || e instanceof EmptyResultDataAccessException) {
+				return NOT_FOUND;
+			}
+			if (e instanceof DuplicateResourceException || e instanceof DuplicateKeyException) {
+				return DUPLICATE;
+			}
+			if (e instanceof RequestValidationException) {
+				return VALIDATION_ERROR;
+			}
+			if (e instanceof StaleResourceException || e instanceof OptimisticLockingFailureException) {
+				return STALE;
+			}
+			if (e instanceof ServiceUnavailableException) {
+				return REJECTED;
+			}
+			return ERROR;
+		}
+	}
+
+	private final MeterRegistry meterRegistry;
+	private final ConcurrentMap<Class<?>, ConcurrentMap<Method, Timer[]>> timersByTarget = new ConcurrentHashMap<>();
+
+	public CustomerMetricsAspect(MeterRegistry meterRegistry) {
+		this.meterRegistry = meterRegistry;
+	}
+
+	@Around("execution(* com.valloyd.customer.CustomerDao.*(..))")
+	public Object timeDaoCall(ProceedingJoinPoint joinPoint) throws Throwable {
+		return time(joinPoint, true);
+	}
+
+	@Around("execution(public * com.valloyd.customer.CustomerService.*(..))")
+	public Object timeServiceCall(ProceedingJoinPoint joinPoint) throws Throwable {
+		return time(joinPoint, false);
+	}
+
+	private Object time(ProceedingJoinPoint joinPoint, boolean dao) throws Throwable {
+		Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+		// Keyed by target too, since a proxied interface method is shared by every DAO.
+		Timer[] timers = timersByTarget
+				.computeIfAbsent(joinPoint.getTarget().getClass(), t -> new ConcurrentHashMap<>())
+				.computeIfAbsent(method, m -> new Timer[Outcome.VALUES.length]);
+		Outcome outcome = Outcome.SUCCESS;
+		long start = System.nanoTime();
+		try {
+			return joinPoint.proceed();
+		} catch (Throwable e) {
+			outcome = Outcome.of(e);
+			throw e;
+		} finally {
+			long elapsed = System.nanoTime() - start;
+			Timer timer = timers[outcome.ordinal()];
+			if (timer == null) {
+				// Racing threads register the same meter, which the registry deduplicates.
+				timer = dao ? daoTimer(joinPoint, method, outcome) : serviceTimer(method, outcome);
+				timers[outcome.ordinal()] = timer;
+			}
+			timer.record(elapsed, TimeUnit.NANOSECONDS);
+		}
+	}
+
+	private Timer daoTimer(ProceedingJoinPoint joinPoint, Method method, Outcome outcome) {
+		return Timer.builder(DAO_TIMER)
+				.description("Time spent in CustomerDao calls")
+				.tag("dao", daoName(joinPoint.getTarget()))
+				.tag("method", method.getName())
+				.tag("outcome", outcome.tag)
+				.register(meterRegistry);
+	}
+
+	private Timer serviceTimer(Method method, Outcome outcome) {
+		return Timer.builder(SERVICE_TIMER)
+				.description("Time spent in CustomerService operations")
+				.tag("operation", method.getName())
+				.tag("outcome", outcome.tag)
+				.register(meterRegistry);
+	}
+
+	/**
+	 * The DAO's qualifier, which is the value of its {@link Repository} annotation.
+	 */
+	static String daoName(Object target) {
+		Class<?> targetClass = AopUtils.getTargetClass(target);
+		Repository repository = AnnotatedElementUtils.findMergedAnnotation(targetClass, Repository.class);
+		return repository != null && !repository.value().isEmpty()
+				? repository.value()
+				: targetClass.getSimpleName();
+	}
+}
@@ -0,0 +1,755 @@
+package com.valloyd.customer;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Repository;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * In-process customer store for very large data sets that keeps rows outside the Java
+ * heap. Select it with {@code @Qualifier("offheap")}.
+ * <p>
+ * Rows are appended to direct {@link ByteBuffer} segments as
+ * {@code id, age, version, name length, email length, name, email} with UTF-8 strings.
+ * The id and email indexes are open-addressing tables over primitive arrays, so the heap
+ * holds a handful of large arrays instead of millions of small objects, and
+ * {@link Customer} instances are only created for rows that are returned. Updates append
+ * a new row version; the space of replaced and deleted rows is reclaimed by compacting
+ * into fresh segments once it outweighs the live rows.
+ * <p>
+ * Reads share a read lock and writes take the write lock. Segments count against
+ * {@code -XX:MaxDirectMemorySize}, and compaction briefly needs room for a second copy
+ * of the live rows.
+ */
+@Repository("offheap")
+public class CustomerOffHeapDas implements CustomerDao {
+
+	static final int EXPORT_PAGE_SIZE = 1000;
+
+	private static final int ID = 0;
+	private static final int AGE = 4;
+	private static final int VERSION = 8;
+	private static final int NAME_LENGTH = 12;
+	private static final int EMAIL_LENGTH = 16;
+	private static final int HEADER_SIZE = 20;
+
+	private final int segmentSize;
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+	private List<ByteBuffer> segments = new ArrayList<>();
+	private int writeOffset;
+	private long liveBytes;
+	private long deadBytes;
+
+	private final IdIndex idIndex;
+	private final EmailIndex emailIndex;
+	private int[] orderedIds;
+	private int orderedIdCount;
+	private int deletedOrderedIds;
+	private int lastId;
+
+	public CustomerOffHeapDas(
+			@Value("${customer.offheap.segment-size:64MB}") DataSize segmentSize,
+			@Value("${customer.offheap.initial-capacity:1024}") int initialCapacity) {
+		if (segmentSize.toBytes() <= HEADER_SIZE || segmentSize.toBytes() > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Segment size must be between %s bytes and 2GB.".formatted(HEADER_SIZE + 1));
+		}
+		this.segmentSize = (int) segmentSize.toBytes();
+		this.idIndex = new IdIndex(initialCapacity);
+		this.emailIndex = new EmailIndex(initialCapacity);
+		this.orderedIds = new int[Math.max(16, initialCapacity)];
+	}
+
+	@Override
+	public List<Customer> selectAllCustomers() {
+		List<Customer> customers = new ArrayList<>();
+		forEachCustomer(customers::add);
+		return customers;
+	}
+
+	@Override
+	public List<Customer> selectCustomers(Integer afterId, int limit) {
+		Lock readLock = lock.readLock();
+		readLock.lock();
+		try {
+			List<Customer> customers = new ArrayList<>(Math.min(limit, orderedIdCount));
+			int position = Arrays.binarySearch(orderedIds, 0, orderedIdCount, afterId);
+			for (int i = position >= 0 ? position + 1 : -position - 1; i < orderedIdCount && customers.size() < limit; i++) {
+				long address = idIndex.get(orderedIds[i]);
+				if (address != IdIndex.MISSING) {
+					customers.add(read(address));
+				}
+			}
+			return customers;
+		} finally {
+			readLock.unlock();
+		}
+	}
+
+	/**
+	 * Reads every row, as there is no index on age or name, so a query costs a full scan
+	 * of the store. Only the first {@code limit} matches in {@link CustomerQuery#order()}
+	 * are kept on the heap while scanning, which takes O(n log limit) comparisons.
+	 */
+	@Override
+	public List<Customer> selectCustomersMatching(CustomerQuery query, int limit) {
+		if (limit < 1) {
+			return new ArrayList<>();
+		}
+		Comparator<Customer> order = query.order();
+		// Ordered worst first, so the head is the match to drop once there are too many.
+		PriorityQueue<Customer> best = new PriorityQueue<>(limit + 1, order.reversed());
+		Predicate<Customer> predicate = query.predicate();
+		forEachCustomer(customer -> {
+			if (!predicate.test(customer)) {
+				return;
+			}
+			if (best.size() < limit) {
+				best.add(customer);
+			} else if (order.compare(customer, best.peek()) < 0) {
+				best.poll();
+				best.add(customer);
+			}
+		});
+		List<Customer> matching = new ArrayList<>(best);
+		matching.sort(order);
+		return matching;
+	}
+
+	/**
+	 * Walks the store in id order one page at a time, so writers are never blocked for
+	 * longer than it takes to copy a page.
+	 */
+	@Override
+	public void forEachCustomer(Consumer<Customer> action) {
+		int afterId = 0;
+		List<Customer> page;
+		do {
+			page = selectCustomers(afterId, EXPORT_PAGE_SIZE);
+			page.forEach(action);
+			if (!page.isEmpty()) {
+				afterId = page.get(page.size() - 1).getId();
+			}
+		} while (page.size() == EXPORT_PAGE_SIZE);
+	}
+
+	@Override
+	public Optional<Customer> selectCustomerById(Integer id) {
+		Lock readLock = lock.readLock();
+		readLock.lock();
+		try {
+			long address = idIndex.get(id);
+			return address == IdIndex.MISSING ? Optional.empty() : Optional.of(read(address));
+		} finally {
+			readLock.unlock();
+		}
+	}
+
+	@Override
+	public List<Customer> selectCustomersByIds(Collection<Integer> ids) {
+		Lock readLock = lock.readLock();
+		readLock.lock();
+		try {
+			List<Customer> customers = new ArrayList<>(ids.size());
+			for (Integer id : ids) {
+				long address = idIndex.get(id);
+				if (address != IdIndex.MISSING) {
+					customers.add(read(address));
+				}
+			}
+			return customers;
+		} finally {
+			readLock.unlock();
+		}
+	}
+
+	/**
+	 * Scores every row, as the trigram index of {@link CustomerListDas} is not kept here;
+	 * it would live on the heap this store is meant to stay off. Rows are streamed a page
+	 * at a time and only the {@code limit} best matches are kept while scanning.
+	 */
+	@Override
+	public List<Customer> selectCustomersSimilarTo(String text, int limit) {
+		CustomerTrigramIndex.MostSimilar mostSimilar =
+				new CustomerTrigramIndex.MostSimilar(CustomerTrigramIndex.trigrams(text), limit);
+		forEachCustomer(mostSimilar);
+		return mostSimilar.toList();
+	}
+
+	@Override
+	public void insertCustomer(Customer customer) {
+		Lock writeLock = lock.writeLock();
+		writeLock.lock();
+		try {
+			checkInsertable(customer);
+			store(customer.getId(), customer);
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	@Override
+	public Optional<Integer> insertCustomerIfEmailAvailable(Customer customer) {
+		Lock writeLock = lock.writeLock();
+		writeLock.lock();
+		try {
+			checkNotNull(customer);
+			if (emailIndex.find(customer.getEmail()) != EmailIndex.MISSING) {
+				return Optional.empty();
+			}
+			return Optional.of(store(null, customer));
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	@Override
+	public Set<String> insertCustomersIfEmailsAvailable(List<Customer> customers) {
+		Lock writeLock = lock.writeLock();
+		writeLock.lock();
+		try {
+			customers.forEach(this::checkNotNull);
+			Set<String> inserted = new HashSet<>();
+			for (Customer customer : customers) {
+				if (emailIndex.find(customer.getEmail()) == EmailIndex.MISSING) {
+					store(null, customer);
+					inserted.add(customer.getEmail());
+				}
+			}
+			return inserted;
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	@Override
+	public boolean existsCustomerWithEmail(String email) {
+		Lock readLock = lock.readLock();
+		readLock.lock();
+		try {
+			return emailIndex.find(email) != EmailIndex.MISSING;
+		} finally {
+			readLock.unlock();
+		}
+	}
+
+	@Override
+	public Set<String> selectExistingEmails(Collection<String> emails) {
+		Lock readLock = lock.readLock();
+		readLock.lock();
+		try {
+			Set<String> existing = new HashSet<>();
+			for (String email : emails) {
+				if (emailIndex.find(email) != EmailIndex.MISSING) {
+					existing.add(email);
+				}
+			}
+			return existing;
+		} finally {
+			readLock.unlock();
+		}
+	}
+
+	@Override
+	public boolean existsCustomerWithId(Integer id) {
+		Lock readLock = lock.readLock();
+		readLock.lock();
+		try {
+			return idIndex.get(id) != IdIndex.MISSING;
+		} finally {
+			readLock.unlock();
+		}
+	}
+
+	@Override
+	public void deleteCustomerById(Integer id) {
+		Lock writeLock = lock.writeLock();
+		writeLock.lock();
+		try {
+			long address = idIndex.remove(id);
+			if (address == IdIndex.MISSING) {
+				return;
+			}
+			emailIndex.remove(readEmail(address).hashCode(), id);
+			release(address);
+			if (++deletedOrderedIds > orderedIdCount / 2) {
+				compactOrderedIds();
+			}
+			compactIfWasteful();
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	@Override
+	public void updateCustomer(Customer update) {
+		updateCustomerIfChanged(update, null);
+	}
+
+	@Override
+	public Optional<Customer> updateCustomerIfChanged(Customer update, Integer expectedVersion) {
+		Lock writeLock = lock.writeLock();
+		writeLock.lock();
+		try {
+			if (update.getEmail() != null) {
+				int emailOwner = emailIndex.find(update.getEmail());
+				if (emailOwner != EmailIndex.MISSING && emailIndex.idAt(emailOwner) != update.getId()) {
+					throw new DuplicateKeyException(CustomerService.EMAIL_UNIQUE_CONSTRAINT);
+				}
+			}
+
+			long address = idIndex.get(update.getId());
+			if (address == IdIndex.MISSING) {
+				return Optional.empty();
+			}
+
+			Customer current = read(address);
+			if (expectedVersion != null && expectedVersion != current.getVersion()) {
+				return Optional.empty();
+			}
+
+			Customer updated = read(address);
+			if (!updated.applyChanges(update)) {
+				return Optional.empty();
+			}
+			updated.setVersion(current.getVersion() + 1);
+
+			release(address);
+			idIndex.put(updated.getId(), append(updated));
+			if (!updated.getEmail().equals(current.getEmail())) {
+				emailIndex.remove(current.getEmail().hashCode(), current.getId());
+				emailIndex.add(updated.getEmail().hashCode(), updated.getId());
+			}
+			compactIfWasteful();
+			return Optional.of(updated);
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	private void checkNotNull(Customer customer) {
+		if (customer.getName() == null || customer.getEmail() == null || customer.getAge() == null) {
+			throw new DataIntegrityViolationException("Customer name, email and age must not be null.");
+		}
+	}
+
+	private void checkInsertable(Customer customer) {
+		checkNotNull(customer);
+		if (emailIndex.find(customer.getEmail()) != EmailIndex.MISSING
+				|| (customer.getId() != null && idIndex.get(customer.getId()) != IdIndex.MISSING)) {
+			throw new DuplicateKeyException(CustomerService.EMAIL_UNIQUE_CONSTRAINT);
+		}
+	}
+
+	/**
+	 * Stores the customer under {@code id}, or under the next free id when it is
+	 * {@code null}. Callers hold the write lock and have checked the keys are free.
+	 */
+	private int store(Integer id, Customer customer) {
+		int storedId;
+		if (id == null) {
+			storedId = ++lastId;
+		} else {
+			storedId = id;
+			lastId = Math.max(lastId, storedId);
+		}
+
+		idIndex.put(storedId, append(new Customer(
+				storedId, customer.getName(), customer.getEmail(), customer.getAge(), customer.getVersion()
+		)));
+		emailIndex.add(customer.getEmail().hashCode(), storedId);
+		addOrderedId(storedId);
+		return storedId;
+	}
+
+	private void addOrderedId(int id) {
+		if (orderedIdCount > 0 && id <= orderedIds[orderedIdCount - 1]) {
+			int position = Arrays.binarySearch(orderedIds, 0, orderedIdCount, id);
+			if (position >= 0) {
+				// A deleted id that is being reused; its slot is still in place.
+				deletedOrderedIds--;
+				return;
+			}
+			insertOrderedId(-position - 1, id);
+			return;
+		}
+		insertOrderedId(orderedIdCount, id);
+	}
+
+	private void insertOrderedId(int position, int id) {
+		if (orderedIdCount == orderedIds.length) {
+			orderedIds = Arrays.copyOf(orderedIds, orderedIds.length * 2);
+		}
+		System.arraycopy(orderedIds, position, orderedIds, position + 1, orderedIdCount - position);
+		orderedIds[position] = id;
+		orderedIdCount++;
+	}
+
+	private void compactOrderedIds() {
+		int live = 0;
+		for (int i = 0; i < orderedIdCount; i++) {
+			if (idIndex.get(orderedIds[i]) != IdIndex.MISSING) {
+				orderedIds[live++] = orderedIds[i];
+			}
+		}
+		orderedIdCount = live;
+		deletedOrderedIds = 0;
+	}
+
+	private long append(Customer customer) {
+		byte[] name = customer.getName().getBytes(StandardCharsets.UTF_8);
+		byte[] email = customer.getEmail().getBytes(StandardCharsets.UTF_8);
+		int size = HEADER_SIZE + name.length + email.length;
+		if (size > segmentSize) {
+			throw new DataIntegrityViolationException(
+					"Customer of %s bytes does not fit in a segment of %s bytes.".formatted(size, segmentSize)
+			);
+		}
+
+		if (segments.isEmpty() || writeOffset + size > segmentSize) {
+			segments.add(ByteBuffer.allocateDirect(segmentSize));
+			writeOffset = 0;
+		}
+
+		ByteBuffer segment = segments.get(segments.size() - 1);
+		int offset = writeOffset;
+		segment.putInt(offset + ID, customer.getId());
+		segment.putInt(offset + AGE, customer.getAge());
+		segment.putInt(offset + VERSION, customer.getVersion());
+		segment.putInt(offset + NAME_LENGTH, name.length);
+		segment.putInt(offset + EMAIL_LENGTH, email.length);
+		segment.put(offset + HEADER_SIZE, name);
+		segment.put(offset + HEADER_SIZE + name.length, email);
+
+		writeOffset += size;
+		liveBytes += size;
+		return address(segments.size() - 1, offset);
+	}
+
+	private Customer read(long address) {
+		ByteBuffer segment = segment(address);
+		int offset = offset(address);
+		int nameLength = segment.getInt(offset + NAME_LENGTH);
+		byte[] name = new byte[nameLength];
+		segment.get(offset + HEADER_SIZE, name);
+		return new Customer(
+				segment.getInt(offset + ID),
+				new String(name, StandardCharsets.UTF_8),
+				readEmail(address),
+				segment.getInt(offset + AGE),
+				segment.getInt(offset + VERSION)
+		);
+	}
+
+	private String readEmail(long address) {
+		ByteBuffer segment = segment(address);
+		int offset = offset(address);
+		byte[] email = new byte[segment.getInt(offset + EMAIL_LENGTH)];
+		segment.get(offset + HEADER_SIZE + segment.getInt(offset + NAME_LENGTH), email);
+		return new String(email, StandardCharsets.UTF_8);
+	}
+
+	private boolean emailEquals(long address, byte[] email) {
+		ByteBuffer segment = segment(address);
+		int offset = offset(address);
+		if (segment.getInt(offset + EMAIL_LENGTH) != email.length) {
+			return false;
+		}
+		int start = offset + HEADER_SIZE + segment.getInt(offset + NAME_LENGTH);
+		for (int i = 0; i < email.length; i++) {
+			if (segment.get(start + i) != email[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private int sizeOf(long address) {
+		ByteBuffer segment = segment(address);
+		int offset = offset(address);
+		return HEADER_SIZE + segment.getInt(offset + NAME_LENGTH) + segment.getInt(offset + EMAIL_LENGTH);
+	}
+
+	private void release(long address) {
+		int size = sizeOf(address);
+		liveBytes -= size;
+		deadBytes += size;
+	}
+
+	/**
+	 * Copies the live rows into fresh segments once replaced and deleted rows take more
+	 * space than live ones, so a store with many updates does not grow without bound.
+	 * The old segments are freed when their buffers are collected.
+	 */
+	private void compactIfWasteful() {
+		if (deadBytes <= liveBytes || deadBytes < segmentSize) {
+			return;
+		}
+
+		List<ByteBuffer> previous = segments;
+		segments = new ArrayList<>();
+		writeOffset = 0;
+		liveBytes = 0;
+		deadBytes = 0;
+		for (int i = 0; i < orderedIdCount; i++) {
+			int id = orderedIds[i];
+			long address = idIndex.get(id);
+			if (address != IdIndex.MISSING) {
+				ByteBuffer segment = previous.get((int) (address >>> 32));
+				int offset = offset(address);
+				int size = HEADER_SIZE + segment.getInt(offset + NAME_LENGTH) + segment.getInt(offset + EMAIL_LENGTH);
+				byte[] row = new byte[size];
+				segment.get(offset, row);
+				idIndex.put(id, appendRow(row));
+			}
+		}
+	}
+
+	private long appendRow(byte[] row) {
+		if (segments.isEmpty() || writeOffset + row.length > segmentSize) {
+			segments.add(ByteBuffer.allocateDirect(segmentSize));
+			writeOffset = 0;
+		}
+		int offset = writeOffset;
+		segments.get(segments.size() - 1).put(offset, row);
+		writeOffset += row.length;
+		liveBytes += row.length;
+		return address(segments.size() - 1, offset);
+	}
+
+	private ByteBuffer segment(long address) {
+		return segments.get((int) (address >>> 32));
+	}
+
+	private static int offset(long address) {
+		return (int) address;
+	}
+
+	private static long address(int segment, int offset) {
+		return ((long) segment << 32) | offset;
+	}
+
+	private static int mix(int hash) {
+		hash *= 0x9E3779B9;
+		return hash ^ (hash >>> 16);
+	}
+
+	private static int tableSize(int capacity) {
+		return Integer.highestOneBit(Math.max(16, capacity) * 2 - 1);
+	}
+
+	/**
+	 * Open-addressing map from id to row address with linear probing. Removed entries
+	 * leave a tombstone until the next resize.
+	 */
+	private static final class IdIndex {
+
+		static final long MISSING = -1;
+		private static final long DELETED = -2;
+
+		private int[] ids;
+		private long[] addresses;
+		private int size;
+		private int used;
+
+		IdIndex(int capacity) {
+			allocate(tableSize(capacity));
+		}
+
+		long get(int id) {
+			int mask = ids.length - 1;
+			for (int slot = mix(id) & mask; ; slot = (slot + 1) & mask) {
+				long address = addresses[slot];
+				if (address == MISSING) {
+					return MISSING;
+				}
+				if (address != DELETED && ids[slot] == id) {
+					return address;
+				}
+			}
+		}
+
+		void put(int id, long address) {
+			if ((used + 1) * 4L > ids.length * 3L) {
+				resize();
+			}
+
+			int mask = ids.length - 1;
+			int tombstone = -1;
+			for (int slot = mix(id) & mask; ; slot = (slot + 1) & mask) {
+				long current = addresses[slot];
+				if (current == MISSING) {
+					if (tombstone >= 0) {
+						slot = tombstone;
+					} else {
+						used++;
+					}
+					ids[slot] = id;
+					addresses[slot] = address;
+					size++;
+					return;
+				}
+				if (current == DELETED) {
+					if (tombstone < 0) {
+						tombstone = slot;
+					}
+				} else if (ids[slot] == id) {
+					addresses[slot] = address;
+					return;
+				}
+			}
+		}
+
+		long remove(int id) {
+			int mask = ids.length - 1;
+			for (int slot = mix(id) & mask; ; slot = (slot + 1) & mask) {
+				long address = addresses[slot];
+				if (address == MISSING) {
+					return MISSING;
+				}
+				if (address != DELETED && ids[slot] == id) {
+					addresses[slot] = DELETED;
+					size--;
+					return address;
+				}
+			}
+		}
+
+		private void resize() {
+			int[] previousIds = ids;
+			long[] previousAddresses = addresses;
+			allocate(tableSize(size * 2));
+			for (int slot = 0; slot < previousIds.length; slot++) {
+				if (previousAddresses[slot] >= 0) {
+					put(previousIds[slot], previousAddresses[slot]);
+				}
+			}
+		}
+
+		private void allocate(int length) {
+			ids = new int[length];
+			addresses = new long[length];
+			Arrays.fill(addresses, MISSING);
+			size = 0;
+			used = 0;
+		}
+	}
+
+	/**
+	 * Open-addressing set of ids keyed by the hash of their email. A probe compares
+	 * stored hashes first and only reads the row for a matching hash.
+	 */
+	private final class EmailIndex {
+
+		static final int MISSING = -1;
+		private static final byte FREE = 0;
+		private static final byte TAKEN = 1;
+		private static final byte DELETED = 2;
+
+		private byte[] states;
+		private int[] hashes;
+		private int[] ids;
+		private int size;
+		private int used;
+
+		EmailIndex(int capacity) {
+			allocate(tableSize(capacity));
+		}
+
+		/**
+		 * @return the slot holding the customer with this email, or {@link #MISSING}
+		 */
+		int find(String email) {
+			if (email == null) {
+				return MISSING;
+			}
+
+			int hash = email.hashCode();
+			byte[] encoded = null;
+			int mask = states.length - 1;
+			for (int slot = mix(hash) & mask; states[slot] != FREE; slot = (slot + 1) & mask) {
+				if (states[slot] == TAKEN && hashes[slot] == hash) {
+					if (encoded == null) {
+						encoded = email.getBytes(StandardCharsets.UTF_8);
+					}
+					if (emailEquals(idIndex.get(ids[slot]), encoded)) {
+						return slot;
+					}
+				}
+			}
+			return MISSING;
+		}
+
+		int idAt(int slot) {
+			return ids[slot];
+		}
+
+		void add(int hash, int id) {
+			if ((used + 1) * 4L > states.length * 3L) {
+				resize();
+			}
+
+			int mask = states.length - 1;
+			int slot = mix(hash) & mask;
+			while (states[slot] == TAKEN) {
+				slot = (slot + 1) & mask;
+			}
+			if (states[slot] == FREE) {
+				used++;
+			}
+			states[slot] = TAKEN;
+			hashes[slot] = hash;
+			ids[slot] = id;
+			size++;
+		}
+
+		void remove(int hash, int id) {
+			int mask = states.length - 1;
+			for (int slot = mix(hash) & mask; states[slot] != FREE; slot = (slot + 1) & mask) {
+				if (states[slot] == TAKEN && hashes[slot] == hash && ids[slot] == id) {
+					states[slot] = DELETED;
+					size--;
+					return;
+				}
+			}
+		}
+
+		private void resize() {
+			byte[] previousStates = states;
+			int[] previousHashes = hashes;
+			int[] previousIds = ids;
+			allocate(tableSize(size * 2));
+			for (int slot = 0; slot < previousStates.length; slot++) {
+				if (previousStates[slot] == TAKEN) {
+					add(previousHashes[slot], previousIds[slot]);
+				}
+			}
+		}
+
+		private void allocate(int length) {
+			states = new byte[length];
+			hashes = new int[length];
+			ids = new int[length];
+			size = 0;
+			used = 0;
+		}
+	}
+}
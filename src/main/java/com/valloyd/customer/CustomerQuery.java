@@ -0,0 +1,89 @@
+package com.valloyd.customer;
+
+import com.valloyd.exception.RequestValidationException;
+
+import java.util.Comparator;
+import java.util.Locale;
+import java.util.function.Predicate;
+
+/**
+ * Filters and order for a page of customers. Every filter is optional. Pages are keyset
+ * paginated: the next page starts after the id, and for {@link Sort#AGE} or
+ * {@link Sort#NAME} also the age or name, of the last customer on the previous page.
+ */
+public record CustomerQuery(
+		Integer minAge,
+		Integer maxAge,
+		String namePrefix,
+		String emailPrefix,
+		Sort sort,
+		Integer afterId,
+		Integer afterAge,
+		String afterName
+){
+	public enum Sort {
+		ID,
+		AGE,
+		NAME;
+
+		/**
+		 * Parses a {@code sort} request parameter, ignoring case.
+		 */
+		public static Sort of(String value) {
+			if (value == null) {
+				return null;
+			}
+			try {
+				return valueOf(value.toUpperCase(Locale.ROOT));
+			} catch (IllegalArgumentException e) {
+				throw new RequestValidationException("Sort must be one of id, age or name.");
+			}
+		}
+	}
+
+	public CustomerQuery {
+		sort = sort == null ? Sort.ID : sort;
+	}
+
+	boolean hasCursor() {
+		return afterId != null;
+	}
+
+	/**
+	 * A {@code LIKE} pattern matching values that start with {@code prefix}, taken
+	 * literally, using the default backslash escape.
+	 */
+	static String likePrefix(String prefix) {
+		return prefix.replace("\\", "\\\\")
+				.replace("%", "\\%")
+				.replace("_", "\\_") + "%";
+	}
+
+	/**
+	 * The filters and cursor as an in-memory predicate, for DAOs without SQL.
+	 */
+	Predicate<Customer> predicate() {
+		return customer -> (minAge == null || customer.getAge() >= minAge)
+				&& (maxAge == null || customer.getAge() <= maxAge)
+				&& (namePrefix == null || customer.getName().startsWith(namePrefix))
+				&& (emailPrefix == null || customer.getEmail().startsWith(emailPrefix))
+				&& (!hasCursor() || order().compare(customer, cursor()) > 0);
+	}
+
+	/**
+	 * The sort order as an in-memory comparator, for DAOs without SQL. Names compare by
+	 * code point rather than by the database collation.
+	 */
+	Comparator<Customer> order() {
+		Comparator<Customer> byId = Comparator.comparing(Customer::getId);
+		return switch (sort) {
+			case ID -> byId;
+			case AGE -> Comparator.comparing(Customer::getAge).thenComparing(byId);
+			case NAME -> Comparator.comparing(Customer::getName).thenComparing(byId);
+		};
+	}
+
+	private Customer cursor() {
+		return new Customer(afterId, afterName, null, afterAge);
+	}
+}
@@ -0,0 +1,12 @@
+package com.valloyd.customer;
+
+import java.util.List;
+
+/**
+ * Repository fragment for queries whose shape depends on the arguments, built with the
+ * Criteria API in {@link CustomerQueryRepositoryImpl}.
+ */
+public interface CustomerQueryRepository {
+
+	List<Customer> findMatching(CustomerQuery query, int limit);
+}
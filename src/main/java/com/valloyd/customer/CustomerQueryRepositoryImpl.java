@@ -0,0 +1,80 @@
+package com.valloyd.customer;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+
+import java.util.ArrayList;
+import java.util.List;
+
+class CustomerQueryRepositoryImpl implements CustomerQueryRepository {
+
+	private static final char LIKE_ESCAPE = '\\';
+
+	private final EntityManager entityManager;
+
+	CustomerQueryRepositoryImpl(EntityManager entityManager) {
+		this.entityManager = entityManager;
+	}
+
+	/**
+	 * Same predicates and order as {@link CustomerJdbcDas#selectCustomersMatching}, except
+	 * that the keyset cursor is spelled out as {@code a >= x AND (a > x OR (a = x AND id > y))},
+	 * since JPQL has no row comparison. PostgreSQL derives no index condition from the
+	 * {@code OR}; the redundant {@code a >= x} lets it seek to the cursor on the leading
+	 * column of the (a, id) index instead of walking it from the start.
+	 */
+	@Override
+	public List<Customer> findMatching(CustomerQuery query, int limit) {
+		CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+		CriteriaQuery<Customer> criteria = cb.createQuery(Customer.class);
+		Root<Customer> customer = criteria.from(Customer.class);
+		Path<Integer> id = customer.get("id");
+		Path<Integer> age = customer.get("age");
+		Path<String> name = customer.get("name");
+
+		List<Predicate> predicates = new ArrayList<>();
+		if (query.minAge() != null) {
+			predicates.add(cb.greaterThanOrEqualTo(age, query.minAge()));
+		}
+		if (query.maxAge() != null) {
+			predicates.add(cb.lessThanOrEqualTo(age, query.maxAge()));
+		}
+		if (query.namePrefix() != null) {
+			predicates.add(cb.like(name, CustomerQuery.likePrefix(query.namePrefix()), LIKE_ESCAPE));
+		}
+		if (query.emailPrefix() != null) {
+			predicates.add(cb.like(customer.get("email"), CustomerQuery.likePrefix(query.emailPrefix()), LIKE_ESCAPE));
+		}
+		if (query.hasCursor()) {
+			Predicate afterId = cb.greaterThan(id, query.afterId());
+			predicates.add(switch (query.sort()) {
+				case ID -> afterId;
+				case AGE -> cb.and(
+						cb.greaterThanOrEqualTo(age, query.afterAge()),
+						cb.or(
+								cb.greaterThan(age, query.afterAge()),
+								cb.and(cb.equal(age, query.afterAge()), afterId)));
+				case NAME -> cb.and(
+						cb.greaterThanOrEqualTo(name, query.afterName()),
+						cb.or(
+								cb.greaterThan(name, query.afterName()),
+								cb.and(cb.equal(name, query.afterName()), afterId)));
+			});
+		}
+
+		criteria.where(predicates.toArray(Predicate[]::new));
+		criteria.orderBy(switch (query.sort()) {
+			case ID -> List.of(cb.asc(id));
+			case AGE -> List.of(cb.asc(age), cb.asc(id));
+			case NAME -> List.of(cb.asc(name), cb.asc(id));
+		});
+
+		return entityManager.createQuery(criteria)
+				.setMaxResults(limit)
+				.getResultList();
+	}
+}
@@ -0,0 +1,310 @@
+package com.valloyd.customer;
+
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.Readable;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcProperties;
+import org.springframework.boot.context.properties.PropertyMapper;
+import org.springframework.boot.r2dbc.ConnectionFactoryBuilder;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Non-blocking customer queries over R2DBC, used when the application runs as a
+ * reactive web application.
+ * <p>
+ * The connection pool is built from the {@code spring.r2dbc.*} properties but is
+ * deliberately not a {@link ConnectionFactory} bean: Spring Boot backs off the JDBC
+ * {@code DataSource} when one exists, and Flyway, JPA and the blocking DAOs need it.
+ */
+@Repository("r2dbc")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class CustomerR2dbcDas implements ReactiveCustomerDao, DisposableBean {
+
+	/**
+	 * Rows fetched per round trip when streaming the table, so a slow subscriber holds
+	 * back the query instead of buffering the whole result.
+	 */
+	static final int STREAM_FETCH_SIZE = 1000;
+
+	private final ConnectionFactory connectionFactory;
+	private final DatabaseClient databaseClient;
+
+	@Autowired
+	public CustomerR2dbcDas(R2dbcProperties properties) {
+		this(connectionPool(properties));
+	}
+
+	CustomerR2dbcDas(ConnectionFactory connectionFactory) {
+		this.connectionFactory = connectionFactory;
+		this.databaseClient = DatabaseClient.create(connectionFactory);
+	}
+
+	private static ConnectionPool connectionPool(R2dbcProperties properties) {
+		ConnectionFactory connectionFactory = ConnectionFactoryBuilder.withUrl(properties.getUrl())
+				.username(properties.getUsername())
+				.password(properties.getPassword())
+				.build();
+
+		R2dbcProperties.Pool pool = properties.getPool();
+		ConnectionPoolConfiguration.Builder configuration = ConnectionPoolConfiguration.builder(connectionFactory);
+		PropertyMapper map = PropertyMapper.get().alwaysApplyingWhenNonNull();
+		map.from(pool.getInitialSize()).to(configuration::initialSize);
+		map.from(pool.getMaxSize()).to(configuration::maxSize);
+		map.from(pool.getMaxIdleTime()).to(configuration::maxIdleTime);
+		map.from(pool.getMaxLifeTime()).to(configuration::maxLifeTime);
+		map.from(pool.getMaxAcquireTime()).to(configuration::maxAcquireTime);
+		map.from(pool.getMaxCreateConnectionTime()).to(configuration::maxCreateConnectionTime);
+		map.from(pool.getValidationQuery()).to(configuration::validationQuery);
+		return new ConnectionPool(configuration.build());
+	}
+
+	@Override
+	public void destroy() {
+		if (connectionFactory instanceof ConnectionPool connectionPool) {
+			connectionPool.dispose();
+		}
+	}
+
+	@Override
+	public Flux<Customer> selectAllCustomers() {
+		var sql = """
+				SELECT id, name, email, age, version
+				FROM customer
+				ORDER BY id
+				""";
+
+		return databaseClient.sql(sql)
+				.filter(statement -> statement.fetchSize(STREAM_FETCH_SIZE))
+				.map(CustomerR2dbcDas::mapCustomer)
+				.all();
+	}
+
+	@Override
+	public Flux<Customer> selectCustomers(Integer afterId, int limit) {
+		var sql = """
+				SELECT id, name, email, age, version
+				FROM customer
+				WHERE id > :afterId
+				ORDER BY id
+				LIMIT :limit
+				""";
+
+		return databaseClient.sql(sql)
+				.bind("afterId", afterId)
+				.bind("limit", limit)
+				.map(CustomerR2dbcDas::mapCustomer)
+				.all();
+	}
+
+	/**
+	 * The reactive counterpart of {@link CustomerJdbcDas#selectCustomersMatching}.
+	 */
+	@Override
+	public Flux<Customer> selectCustomersMatching(CustomerQuery query, int limit) {
+		StringBuilder sql = new StringBuilder("""
+				SELECT id, name, email, age, version
+				FROM customer
+				WHERE TRUE
+				""");
+		Map<String, Object> bindings = new HashMap<>();
+
+		if (query.minAge() != null) {
+			sql.append("AND age >= :minAge\n");
+			bindings.put("minAge", query.minAge());
+		}
+		if (query.maxAge() != null) {
+			sql.append("AND age <= :maxAge\n");
+			bindings.put("maxAge", query.maxAge());
+		}
+		if (query.namePrefix() != null) {
+			sql.append("AND name LIKE :namePattern\n");
+			bindings.put("namePattern", CustomerQuery.likePrefix(query.namePrefix()));
+		}
+		if (query.emailPrefix() != null) {
+			sql.append("AND email LIKE :emailPattern\n");
+			bindings.put("emailPattern", CustomerQuery.likePrefix(query.emailPrefix()));
+		}
+		if (query.hasCursor()) {
+			switch (query.sort()) {
+				case ID -> sql.append("AND id > :afterId\n");
+				case AGE -> {
+					sql.append("AND (age, id) > (:afterAge, :afterId)\n");
+					bindings.put("afterAge", query.afterAge());
+				}
+				case NAME -> {
+					sql.append("AND (name, id) > (:afterName, :afterId)\n");
+					bindings.put("afterName", query.afterName());
+				}
+			}
+			bindings.put("afterId", query.afterId());
+		}
+
+		sql.append(switch (query.sort()) {
+			case ID -> "ORDER BY id\n";
+			case AGE -> "ORDER BY age, id\n";
+			case NAME -> "ORDER BY name, id\n";
+		});
+		sql.append("LIMIT :limit");
+		bindings.put("limit", limit);
+
+		DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(sql.toString());
+		for (Map.Entry<String, Object> binding : bindings.entrySet()) {
+			spec = spec.bind(binding.getKey(), binding.getValue());
+		}
+		return spec.map(CustomerR2dbcDas::mapCustomer).all();
+	}
+
+	@Override
+	public Mono<Customer> selectCustomerById(Integer id) {
+		var sql = """
+				SELECT id, name, email, age, version
+				FROM customer
+				WHERE id = :id
+				""";
+
+		return databaseClient.sql(sql)
+				.bind("id", id)
+				.map(CustomerR2dbcDas::mapCustomer)
+				.one();
+	}
+
+	@Override
+	public Flux<Customer> selectCustomersByIds(Collection<Integer> ids) {
+		if (ids.isEmpty()) {
+			return Flux.empty();
+		}
+
+		var sql = """
+				SELECT id, name, email, age, version
+				FROM customer
+				WHERE id = ANY(:ids)
+				""";
+
+		return databaseClient.sql(sql)
+				.bind("ids", ids.toArray(Integer[]::new))
+				.map(CustomerR2dbcDas::mapCustomer)
+				.all();
+	}
+
+	@Override
+	public Flux<Customer> selectCustomersSimilarTo(String text, int limit) {
+		var sql = """
+				SELECT id, name, email, age, version
+				FROM customer
+				WHERE :text <% name OR :text <% email
+				ORDER BY greatest(word_similarity(:text, name), word_similarity(:text, email)) DESC, id
+				LIMIT :limit
+				""";
+
+		return databaseClient.sql(sql)
+				.bind("text", text)
+				.bind("limit", limit)
+				.map(CustomerR2dbcDas::mapCustomer)
+				.all();
+	}
+
+	@Override
+	public Mono<Integer> insertCustomerIfEmailAvailable(Customer customer) {
+		var sql = """
+				INSERT INTO customer(name, email, age)
+				VALUES (:name, :email, :age)
+				ON CONFLICT ON CONSTRAINT customer_email_unique DO NOTHING
+				RETURNING id
+				""";
+
+		return databaseClient.sql(sql)
+				.bind("name", customer.getName())
+				.bind("email", customer.getEmail())
+				.bind("age", customer.getAge())
+				.map(row -> row.get("id", Integer.class))
+				.one();
+	}
+
+	@Override
+	public Mono<Boolean> existsCustomerWithId(Integer id) {
+		var sql = """
+				SELECT EXISTS(SELECT 1 FROM customer WHERE id = :id)
+				""";
+
+		return databaseClient.sql(sql)
+				.bind("id", id)
+				.map(row -> row.get(0, Boolean.class))
+				.one();
+	}
+
+	@Override
+	public Mono<Long> deleteCustomerById(Integer id) {
+		var sql = """
+				DELETE FROM customer WHERE id = :id
+				""";
+
+		return databaseClient.sql(sql)
+				.bind("id", id)
+				.fetch()
+				.rowsUpdated();
+	}
+
+	/**
+	 * Updates and reads back the customer in one round trip, with the same outcomes as
+	 * {@link CustomerJdbcDas#updateCustomerIfChanged(Customer, Integer)}. Unset fields
+	 * keep their stored value through {@code COALESCE}, so one statement covers every
+	 * combination of fields.
+	 */
+	@Override
+	public Mono<Customer> updateCustomerIfChanged(Customer update, Integer expectedVersion) {
+		if (update.getName() == null && update.getEmail() == null && update.getAge() == null) {
+			return Mono.empty();
+		}
+
+		var sql = """
+				UPDATE customer
+				SET name = COALESCE(:name, name),
+				    email = COALESCE(:email, email),
+				    age = COALESCE(:age, age),
+				    version = version + 1
+				WHERE id = :id
+				AND (CAST(:version AS INT) IS NULL OR version = :version)
+				AND (name IS DISTINCT FROM COALESCE(:name, name)
+				     OR email IS DISTINCT FROM COALESCE(:email, email)
+				     OR age IS DISTINCT FROM COALESCE(:age, age))
+				RETURNING id, name, email, age, version
+				""";
+
+		DatabaseClient.GenericExecuteSpec statement = databaseClient.sql(sql)
+				.bind("id", update.getId());
+		statement = bindNullable(statement, "name", update.getName(), String.class);
+		statement = bindNullable(statement, "email", update.getEmail(), String.class);
+		statement = bindNullable(statement, "age", update.getAge(), Integer.class);
+		statement = bindNullable(statement, "version", expectedVersion, Integer.class);
+
+		return statement
+				.map(CustomerR2dbcDas::mapCustomer)
+				.one();
+	}
+
+	private static DatabaseClient.GenericExecuteSpec bindNullable(
+			DatabaseClient.GenericExecuteSpec statement, String name, Object value, Class<?> type) {
+		return value == null ? statement.bindNull(name, type) : statement.bind(name, value);
+	}
+
+	private static Customer mapCustomer(Readable row) {
+		return new Customer(
+				row.get("id", Integer.class),
+				row.get("name", String.class),
+				row.get("email", String.class),
+				row.get("age", Integer.class),
+				row.get("version", Integer.class)
+		);
+	}
+}
@@ -0,0 +1,11 @@
+package com.valloyd.customer;
+
+public record CustomerRegistrationResult(
+		String email,
+		Status status
+){
+	public enum Status {
+		REGISTERED,
+		EMAIL_TAKEN
+	}
+}
@@ -1,9 +1,48 @@
 package com.valloyd.customer;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
-public interface CustomerRepository extends JpaRepository<Customer, Integer> {
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
 
-	boolean existsCustomerByEmail(String email);
-	boolean existsCustomerById(Integer id);
+public interface CustomerRepository extends JpaRepository<Customer, Integer>, CustomerQueryRepository {
+
+	@Query(value = "SELECT EXISTS(SELECT 1 FROM customer WHERE email = :email)", nativeQuery = true)
+	boolean existsCustomerByEmail(@Param("email") String email);
+
+	@Query(value = "SELECT EXISTS(SELECT 1 FROM customer WHERE id = :id)", nativeQuery = true)
+	boolean existsCustomerById(@Param("id") Integer id);
+
+	List<Customer> findByIdGreaterThanOrderByIdAsc(Integer id, Pageable pageable);
+
+	@Query(value = """
+			SELECT id, name, email, age, version
+			FROM customer
+			WHERE :text <% name OR :text <% email
+			ORDER BY greatest(word_similarity(:text, name), word_similarity(:text, email)) DESC, id
+			LIMIT :limit
+			""", nativeQuery = true)
+	List<Customer> findSimilarTo(@Param("text") String text, @Param("limit") int limit);
+
+	@Query("SELECT c.email FROM Customer c WHERE c.email IN :emails")
+	Set<String> findEmailsIn(@Param("emails") Collection<String> emails);
+
+	@Transactional
+	@Query(value = """
+			INSERT INTO customer(name, email, age)
+			VALUES (:name, :email, :age)
+			ON CONFLICT ON CONSTRAINT customer_email_unique DO NOTHING
+			RETURNING id
+			""", nativeQuery = true)
+	Optional<Integer> insertIfEmailAvailable(
+			@Param("name") String name,
+			@Param("email") String email,
+			@Param("age") Integer age
+	);
 }
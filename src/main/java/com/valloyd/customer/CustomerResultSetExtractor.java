@@ -0,0 +1,25 @@
+package com.valloyd.customer;
+
+import org.springframework.jdbc.core.ResultSetExtractor;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Maps every row of a customer result set, resolving the column indexes once up front.
+ * Prefer it over {@link CustomerRowMapper} for queries returning more than a row or two.
+ */
+class CustomerResultSetExtractor implements ResultSetExtractor<List<Customer>> {
+
+	@Override
+	public List<Customer> extractData(ResultSet rs) throws SQLException {
+		CustomerColumns columns = CustomerColumns.of(rs);
+		List<Customer> customers = new ArrayList<>();
+		while (rs.next()) {
+			customers.add(columns.mapRow(rs));
+		}
+		return customers;
+	}
+}
@@ -3,22 +3,133 @@ package com.valloyd.customer;
 import com.valloyd.exception.DuplicateResourceException;
 import com.valloyd.exception.RequestValidationException;
 import com.valloyd.exception.ResourceNotFoundException;
+import com.valloyd.exception.StaleResourceException;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
 
 @Service
 public class CustomerService {
 
+	static final String EMAIL_UNIQUE_CONSTRAINT = "customer_email_unique";
+	static final int DEFAULT_PAGE_SIZE = 100;
+	static final int MAX_PAGE_SIZE = 1000;
+	static final int MAX_BATCH_SIZE = 1000;
+	static final int DEFAULT_SEARCH_LIMIT = 20;
+	static final int MIN_SEARCH_LENGTH = 3;
+
 	private final CustomerDao customerDao;
+	private final CustomerWriteBehindQueue writeBehindQueue;
+
+	public CustomerService(@Qualifier("coalescing") CustomerDao customerDao) {
+		this(customerDao, Optional.empty());
+	}
+
+	public CustomerService(@Qualifier("coalescing") CustomerDao customerDao,
+						   Optional<CustomerWriteBehindQueue> writeBehindQueue) {
+		this(customerDao, writeBehindQueue, Optional.empty());
+	}
 
-	public CustomerService(@Qualifier("jdbc") CustomerDao customerDao) {
-		this.customerDao = customerDao;
+	/**
+	 * Goes through the email filter when it is enabled, as it wraps the coalescing DAO and
+	 * only stays complete when it sees every write.
+	 */
+	@Autowired
+	public CustomerService(@Qualifier("coalescing") CustomerDao customerDao,
+						   Optional<CustomerWriteBehindQueue> writeBehindQueue,
+						   Optional<CustomerEmailFilteringDas> emailFilter) {
+		this.customerDao = emailFilter.<CustomerDao>map(filter -> filter).orElse(customerDao);
+		this.writeBehindQueue = writeBehindQueue.orElse(null);
 	}
 
-	public List<Customer> getAllCustomers(){
-		return customerDao.selectAllCustomers();
+	public List<Customer> getCustomers(Integer afterId, Integer limit){
+		int pageSize = limit == null ? DEFAULT_PAGE_SIZE : limit;
+
+		if (pageSize < 1 || pageSize > MAX_PAGE_SIZE){
+			throw new RequestValidationException(
+					"Limit must be between 1 and %s.".formatted(MAX_PAGE_SIZE)
+			);
+		}
+
+		return customerDao.selectCustomers(afterId == null ? 0 : afterId, pageSize);
+	}
+
+	public List<Customer> searchCustomers(CustomerQuery query, Integer limit){
+		return customerDao.selectCustomersMatching(query, searchPageSize(query, limit));
+	}
+
+	/**
+	 * Validates a search and returns its page size. A cursor past the first page needs the
+	 * sort key of the last customer seen as well as its id.
+	 */
+	static int searchPageSize(CustomerQuery query, Integer limit){
+		int pageSize = limit == null ? DEFAULT_PAGE_SIZE : limit;
+
+		if (pageSize < 1 || pageSize > MAX_PAGE_SIZE){
+			throw new RequestValidationException(
+					"Limit must be between 1 and %s.".formatted(MAX_PAGE_SIZE)
+			);
+		}
+		if (query.minAge() != null && query.maxAge() != null && query.minAge() > query.maxAge()){
+			throw new RequestValidationException("Minimum age must not be greater than maximum age.");
+		}
+		boolean cursorComplete = switch (query.sort()) {
+			case ID -> query.afterAge() == null && query.afterName() == null;
+			case AGE -> (query.afterId() == null) == (query.afterAge() == null) && query.afterName() == null;
+			case NAME -> (query.afterId() == null) == (query.afterName() == null) && query.afterAge() == null;
+		};
+		if (!cursorComplete){
+			throw new RequestValidationException(
+					"After age is required with after when sorting by age, after name when sorting by name, and neither otherwise."
+			);
+		}
+
+		return pageSize;
+	}
+
+	public List<Customer> searchCustomersByText(String text, Integer limit){
+		int searchLimit = textSearchLimit(text, limit);
+		return customerDao.selectCustomersSimilarTo(text.strip(), searchLimit);
+	}
+
+	/**
+	 * Validates a similarity search and returns its limit. Shorter texts have too few
+	 * trigrams to narrow the search down, so they would match most of the table.
+	 */
+	static int textSearchLimit(String text, Integer limit){
+		int searchLimit = limit == null ? DEFAULT_SEARCH_LIMIT : limit;
+
+		if (searchLimit < 1 || searchLimit > MAX_PAGE_SIZE){
+			throw new RequestValidationException(
+					"Limit must be between 1 and %s.".formatted(MAX_PAGE_SIZE)
+			);
+		}
+		if (text == null || text.strip().length() < MIN_SEARCH_LENGTH){
+			throw new RequestValidationException(
+					"Search text must have at least %s characters.".formatted(MIN_SEARCH_LENGTH)
+			);
+		}
+
+		return searchLimit;
+	}
+
+	public void exportCustomers(Consumer<Customer> action){
+		customerDao.forEachCustomer(action);
 	}
 
 	public Customer getCustomer(Integer id){
@@ -28,20 +139,103 @@ public class CustomerService {
 				));
 	}
 
-	public void addCustomer(CustomerRegistrationRequest customerRegistrationRequest){
-		String email = customerRegistrationRequest.email();
+	/**
+	 * Looks the ids up with a single DAO call. Customers come back in the order their
+	 * ids were asked for, each once, followed by the ids that were not found.
+	 */
+	public CustomerLookupResult getCustomersByIds(List<Integer> ids){
+		Set<Integer> requested = requestedIds(ids);
+		return inRequestOrder(requested, customerDao.selectCustomersByIds(requested));
+	}
 
-		if (customerDao.existsCustomerWithEmail(email)){
-			throw new DuplicateResourceException("Email taken");
+	/**
+	 * The distinct ids in request order.
+	 */
+	static Set<Integer> requestedIds(List<Integer> ids){
+		if (ids.isEmpty() || ids.size() > MAX_PAGE_SIZE || ids.stream().anyMatch(Objects::isNull)){
+			throw new RequestValidationException(
+					"Between 1 and %s ids must be given.".formatted(MAX_PAGE_SIZE)
+			);
+		}
+		return new LinkedHashSet<>(ids);
+	}
+
+	static CustomerLookupResult inRequestOrder(Set<Integer> requested, Collection<Customer> found){
+		Map<Integer, Customer> customersById = new HashMap<>();
+		for (Customer customer : found) {
+			customersById.put(customer.getId(), customer);
 		}
 
+		List<Customer> customers = new ArrayList<>(customersById.size());
+		List<Integer> missingIds = new ArrayList<>();
+		for (Integer id : requested) {
+			Customer customer = customersById.get(id);
+			if (customer == null){
+				missingIds.add(id);
+			} else {
+				customers.add(customer);
+			}
+		}
+
+		return new CustomerLookupResult(customers, missingIds);
+	}
+
+	public void addCustomer(CustomerRegistrationRequest customerRegistrationRequest){
 		Customer customer = new Customer(
 				customerRegistrationRequest.name(),
 				customerRegistrationRequest.email(),
 				customerRegistrationRequest.age()
 		);
 
-		customerDao.insertCustomer(customer);
+		boolean inserted = writeBehindQueue == null
+				? customerDao.insertCustomerIfEmailAvailable(customer).isPresent()
+				: writeBehindQueue.insert(customer);
+
+		if (!inserted){
+			throw new DuplicateResourceException("Email taken");
+		}
+	}
+
+	public List<CustomerRegistrationResult> addCustomers(List<CustomerRegistrationRequest> registrationRequests){
+		if (registrationRequests.isEmpty() || registrationRequests.size() > MAX_BATCH_SIZE){
+			throw new RequestValidationException(
+					"Batch size must be between 1 and %s.".formatted(MAX_BATCH_SIZE)
+			);
+		}
+
+		Set<String> takenEmails = new HashSet<>(customerDao.selectExistingEmails(
+				registrationRequests.stream()
+						.map(CustomerRegistrationRequest::email)
+						.toList()
+		));
+
+		List<Customer> customers = new ArrayList<>(registrationRequests.size());
+		for (CustomerRegistrationRequest request : registrationRequests) {
+			// Also skips an email repeated within the same batch.
+			if (takenEmails.add(request.email())){
+				customers.add(new Customer(
+						request.name(),
+						request.email(),
+						request.age()
+				));
+			}
+		}
+
+		// An email taken since the check above is skipped by the insert rather than failing it.
+		Set<String> registered = customers.isEmpty()
+				? new HashSet<>()
+				: new HashSet<>(customerDao.insertCustomersIfEmailsAvailable(customers));
+
+		List<CustomerRegistrationResult> results = new ArrayList<>(registrationRequests.size());
+		for (CustomerRegistrationRequest request : registrationRequests) {
+			results.add(new CustomerRegistrationResult(
+					request.email(),
+					registered.remove(request.email())
+							? CustomerRegistrationResult.Status.REGISTERED
+							: CustomerRegistrationResult.Status.EMAIL_TAKEN
+			));
+		}
+		return results;
 	}
 
 	public void deleteCustomerById(Integer customerId){
@@ -53,31 +247,47 @@ public class CustomerService {
 	}
 
 	public void updateCustomer(Integer customerId, CustomerUpdateRequest updateRequest){
-		Customer customer = getCustomer(customerId);
-		boolean changes = false;
-
-		if (updateRequest.name() != null && !updateRequest.name().equals(customer.getName())){
-			customer.setName(updateRequest.name());
-			changes = true;
-		}
+		Customer update = new Customer(
+				customerId,
+				updateRequest.name(),
+				updateRequest.email(),
+				updateRequest.age()
+		);
 
-		if (updateRequest.email() != null && !updateRequest.email().equals(customer.getEmail())){
-			if (customerDao.existsCustomerWithEmail(updateRequest.email())){
+		Optional<Customer> updated;
+		try {
+			updated = customerDao.updateCustomerIfChanged(update, updateRequest.version());
+		} catch (OptimisticLockingFailureException e) {
+			throw staleCustomer(customerId);
+		} catch (DataIntegrityViolationException e) {
+			if (isEmailTaken(e)){
 				throw new DuplicateResourceException("Email taken");
 			}
-			customer.setEmail(updateRequest.email());
-			changes = true;
+			throw e;
 		}
 
-		if (updateRequest.age() != null && !updateRequest.age().equals(customer.getAge())){
-			customer.setAge(updateRequest.age());
-			changes = true;
+		if (updated.isPresent()){
+			return;
 		}
 
-		if (changes){
-			customerDao.updateCustomer(customer);
-		}else {
-			throw new RequestValidationException("No data changes found.");
+		// Nothing was written, only now pay for a read to report why.
+		Customer customer = getCustomer(customerId);
+
+		if (updateRequest.version() != null && updateRequest.version() != customer.getVersion()){
+			throw staleCustomer(customerId);
 		}
+
+		throw new RequestValidationException("No data changes found.");
+	}
+
+	private static StaleResourceException staleCustomer(Integer customerId){
+		return new StaleResourceException(
+				"Customer with id %s was modified by another request.".formatted(customerId)
+		);
+	}
+
+	static boolean isEmailTaken(DataIntegrityViolationException e){
+		String message = NestedExceptionUtils.getMostSpecificCause(e).getMessage();
+		return message != null && message.contains(EMAIL_UNIQUE_CONSTRAINT);
 	}
 }
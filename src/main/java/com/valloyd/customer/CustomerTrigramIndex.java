@@ -0,0 +1,159 @@
+package com.valloyd.customer;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Inverted index from trigrams to the ids of customers whose name or email contains
+ * them, the in-memory counterpart of the {@code pg_trgm} GIN indexes. Trigrams are
+ * extracted as {@code pg_trgm} does: lower-cased alphanumeric words, padded with two
+ * spaces in front and one behind.
+ * <p>
+ * Similarity is the share of the search text's trigrams found in the name or the email,
+ * whichever is higher. This approximates {@code word_similarity}, and matches need the
+ * same 0.6 that is {@code pg_trgm}'s default threshold. Lookups are lock-free; callers
+ * serialise {@link #add(Customer)} and {@link #remove(Customer)}.
+ */
+class CustomerTrigramIndex {
+
+	static final double SIMILARITY_THRESHOLD = 0.6;
+
+	private record Match(Customer customer, double similarity) {
+	}
+
+	private static final Comparator<Match> MOST_SIMILAR_FIRST = Comparator
+			.comparingDouble(Match::similarity).reversed()
+			.thenComparing(match -> match.customer().getId());
+
+	private final ConcurrentMap<String, Set<Integer>> idsByTrigram = new ConcurrentHashMap<>();
+
+	void add(Customer customer) {
+		for (String trigram : trigrams(customer)) {
+			idsByTrigram.computeIfAbsent(trigram, t -> ConcurrentHashMap.newKeySet()).add(customer.getId());
+		}
+	}
+
+	void remove(Customer customer) {
+		for (String trigram : trigrams(customer)) {
+			idsByTrigram.computeIfPresent(trigram, (t, ids) -> {
+				ids.remove(customer.getId());
+				return ids.isEmpty() ? null : ids;
+			});
+		}
+	}
+
+	/**
+	 * Finds the customers most similar to {@code text}. Only customers sharing enough
+	 * trigrams with it to possibly reach the threshold are looked up and scored.
+	 */
+	List<Customer> search(String text, int limit, Function<Integer, Customer> customersById) {
+		Set<String> query = trigrams(text);
+		Map<Integer, Integer> sharedById = new HashMap<>();
+		for (String trigram : query) {
+			Set<Integer> ids = idsByTrigram.get(trigram);
+			if (ids != null) {
+				ids.forEach(id -> sharedById.merge(id, 1, Integer::sum));
+			}
+		}
+
+		Stream<Customer> candidates = sharedById.entrySet().stream()
+				.filter(shared -> (double) shared.getValue() / query.size() >= SIMILARITY_THRESHOLD)
+				.map(shared -> customersById.apply(shared.getKey()))
+				.filter(Objects::nonNull);
+		return mostSimilar(query, candidates, limit);
+	}
+
+	/**
+	 * Scores every candidate against the trigrams of the search text and returns the most
+	 * similar at or above the threshold, best first and then by id.
+	 */
+	static List<Customer> mostSimilar(Set<String> query, Stream<Customer> candidates, int limit) {
+		MostSimilar mostSimilar = new MostSimilar(query, limit);
+		candidates.forEach(mostSimilar);
+		return mostSimilar.toList();
+	}
+
+	/**
+	 * Scores customers as they are fed in and keeps only the {@code limit} most similar at
+	 * or above the threshold, so candidates can be streamed without holding them all.
+	 */
+	static final class MostSimilar implements Consumer<Customer> {
+
+		private final Set<String> query;
+		private final int limit;
+		// Ordered worst first, so the head is the match to drop once there are too many.
+		private final PriorityQueue<Match> best;
+
+		MostSimilar(Set<String> query, int limit) {
+			this.query = query;
+			this.limit = limit;
+			this.best = new PriorityQueue<>(Math.max(1, limit + 1), MOST_SIMILAR_FIRST.reversed());
+		}
+
+		@Override
+		public void accept(Customer customer) {
+			if (query.isEmpty() || limit < 1) {
+				return;
+			}
+			Match match = new Match(customer, similarity(query, customer));
+			if (match.similarity() < SIMILARITY_THRESHOLD) {
+				return;
+			}
+			if (best.size() < limit) {
+				best.add(match);
+			} else if (MOST_SIMILAR_FIRST.compare(match, best.peek()) < 0) {
+				best.poll();
+				best.add(match);
+			}
+		}
+
+		List<Customer> toList() {
+			return best.stream()
+					.sorted(MOST_SIMILAR_FIRST)
+					.map(Match::customer)
+					.toList();
+		}
+	}
+
+	static Set<String> trigrams(String text) {
+		Set<String> trigrams = new HashSet<>();
+		for (String word : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+			if (word.isEmpty()) {
+				continue;
+			}
+			String padded = "  " + word + " ";
+			for (int i = 0; i + 3 <= padded.length(); i++) {
+				trigrams.add(padded.substring(i, i + 3));
+			}
+		}
+		return trigrams;
+	}
+
+	private static Set<String> trigrams(Customer customer) {
+		Set<String> trigrams = trigrams(customer.getName());
+		trigrams.addAll(trigrams(customer.getEmail()));
+		return trigrams;
+	}
+
+	private static double similarity(Set<String> query, Customer customer) {
+		return Math.max(similarity(query, customer.getName()), similarity(query, customer.getEmail()));
+	}
+
+	private static double similarity(Set<String> query, String text) {
+		Set<String> trigrams = trigrams(text);
+		long shared = query.stream().filter(trigrams::contains).count();
+		return (double) shared / query.size();
+	}
+}
@@ -1,8 +1,16 @@
 package com.valloyd.customer;
 
+/**
+ * @param version the version the client last read; when present the update only
+ *                applies if the customer has not been modified since
+ */
 public record CustomerUpdateRequest(
 		String name,
 		String email,
-		Integer age
+		Integer age,
+		Integer version
 ){
+	public CustomerUpdateRequest(String name, String email, Integer age) {
+		this(name, email, age, null);
+	}
 }
@@ -0,0 +1,274 @@
+package com.valloyd.customer;
+
+import com.valloyd.exception.ServiceUnavailableException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Write-behind pipeline for single customer registrations. Registrations are queued and
+ * a background flusher writes them with one multi-row
+ * {@link CustomerDao#insertCustomersIfEmailsAvailable(List)} once {@code batch-size} have
+ * queued up or the oldest has waited {@code linger}, whichever comes first. Each caller
+ * is answered once the batch holding its registration has been committed, so an
+ * acknowledged registration is as durable as a directly inserted one. When a batch
+ * fails, its registrations are retried one at a time, so one bad registration only fails
+ * its own caller.
+ * <p>
+ * The queue is lock-free and holds at most {@code capacity} registrations; beyond that
+ * {@link #submit(Customer)} fails fast with a {@link ServiceUnavailableException}, which
+ * the API answers with 503, rather than letting latency grow without bound. Callers of
+ * {@link #insert(Customer)} wait at most {@code timeout}, and get a 503 too once it passes.
+ * Enable it with {@code customer.write-behind.enabled=true}.
+ */
+@Component
+@ConditionalOnProperty(prefix = "customer.write-behind", name = "enabled", havingValue = "true")
+public class CustomerWriteBehindQueue implements SmartLifecycle {
+
+	private static final Logger log = LoggerFactory.getLogger(CustomerWriteBehindQueue.class);
+
+	record PendingInsert(Customer customer, CompletableFuture<Boolean> inserted) {
+	}
+
+	private final CustomerDao customerDao;
+	private final int batchSize;
+	private final long lingerNanos;
+	private final int capacity;
+	private final long timeoutNanos;
+	private final ConcurrentLinkedQueue<PendingInsert> queue = new ConcurrentLinkedQueue<>();
+	// Tracked separately, ConcurrentLinkedQueue.size() walks the whole queue.
+	private final AtomicInteger size = new AtomicInteger();
+	private final Counter rejected;
+	private final DistributionSummary batchSizes;
+
+	private volatile boolean running;
+	private volatile Thread flusher;
+
+	public CustomerWriteBehindQueue(
+			@Qualifier("jdbc") CustomerDao customerDao,
+			@Value("${customer.write-behind.batch-size:100}") int batchSize,
+			@Value("${customer.write-behind.linger:5ms}") Duration linger,
+			@Value("${customer.write-behind.capacity:10000}") int capacity,
+			@Value("${customer.write-behind.timeout:10s}") Duration timeout,
+			MeterRegistry meterRegistry) {
+		if (batchSize < 1 || capacity < batchSize || linger.isNegative() || timeout.isNegative() || timeout.isZero()) {
+			throw new IllegalArgumentException(
+					"Batch size must be positive, capacity at least the batch size, linger not negative and timeout positive."
+			);
+		}
+		this.customerDao = customerDao;
+		this.batchSize = batchSize;
+		this.lingerNanos = linger.toNanos();
+		this.capacity = capacity;
+		this.timeoutNanos = timeout.toNanos();
+		this.rejected = Counter.builder("customer.write.behind.rejected")
+				.description("Registrations turned away because the write-behind queue was full")
+				.register(meterRegistry);
+		this.batchSizes = DistributionSummary.builder("customer.write.behind.batch.size")
+				.description("Registrations written per flush")
+				.register(meterRegistry);
+		Gauge.builder("customer.write.behind.queue.size", size, AtomicInteger::get)
+				.description("Registrations waiting to be written")
+				.register(meterRegistry);
+	}
+
+	/**
+	 * Queues the customer and waits until its batch has been committed, or the timeout
+	 * has passed. A registration that timed out may still be written afterwards.
+	 *
+	 * @return {@code true} when the customer was inserted, {@code false} when the email
+	 * was already taken
+	 */
+	public boolean insert(Customer customer) {
+		try {
+			return submit(customer).get(timeoutNanos, TimeUnit.NANOSECONDS);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException cause) {
+				throw cause;
+			}
+			throw new IllegalStateException(e.getCause());
+		} catch (TimeoutException e) {
+			throw new ServiceUnavailableException("Registration is taking too long, retry later.");
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ServiceUnavailableException("Registration was interrupted, retry later.");
+		}
+	}
+
+	/**
+	 * Queues the customer without waiting. The future completes with {@code true} once
+	 * the customer is committed, with {@code false} when the email was already taken, or
+	 * exceptionally when its batch failed.
+	 */
+	public CompletableFuture<Boolean> submit(Customer customer) {
+		if (!running) {
+			throw notAccepting();
+		}
+
+		int queued;
+		do {
+			queued = size.get();
+			if (queued >= capacity) {
+				rejected.increment();
+				throw new ServiceUnavailableException("Too many pending registrations, retry later.");
+			}
+		} while (!size.compareAndSet(queued, queued + 1));
+
+		PendingInsert pending = new PendingInsert(customer, new CompletableFuture<>());
+		queue.offer(pending);
+		// stop() may have come in since the check above, and the flusher may already have
+		// drained the queue and exited. Whoever takes the registration off the queue
+		// completes it, so taking it back here cannot race with the flusher.
+		if (!running && queue.remove(pending)) {
+			size.decrementAndGet();
+			pending.inserted().completeExceptionally(notAccepting());
+			return pending.inserted();
+		}
+		// The flusher only needs waking to start a linger window or to cut one short.
+		if (queued == 0 || queued + 1 == batchSize) {
+			LockSupport.unpark(flusher);
+		}
+		return pending.inserted();
+	}
+
+	int queued() {
+		return size.get();
+	}
+
+	@Override
+	public void start() {
+		running = true;
+		Thread thread = new Thread(this::flushUntilStopped, "customer-write-behind");
+		thread.setDaemon(true);
+		flusher = thread;
+		thread.start();
+	}
+
+	/**
+	 * Stops accepting registrations and waits for the queued ones to be written.
+	 */
+	@Override
+	public void stop() {
+		running = false;
+		Thread thread = flusher;
+		if (thread == null) {
+			return;
+		}
+		LockSupport.unpark(thread);
+		try {
+			thread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	@Override
+	public boolean isRunning() {
+		return running;
+	}
+
+	/**
+	 * Stops after the web server has stopped taking requests, so none are turned away
+	 * while it drains.
+	 */
+	@Override
+	public int getPhase() {
+		return SmartLifecycle.DEFAULT_PHASE - 4096;
+	}
+
+	private void flushUntilStopped() {
+		List<PendingInsert> batch = new ArrayList<>(batchSize);
+		while (running || size.get() > 0) {
+			if (size.get() == 0) {
+				LockSupport.park(this);
+				continue;
+			}
+
+			long deadline = System.nanoTime() + lingerNanos;
+			long remaining;
+			while (running && size.get() < batchSize && (remaining = deadline - System.nanoTime()) > 0) {
+				LockSupport.parkNanos(this, remaining);
+			}
+
+			PendingInsert pending;
+			while (batch.size() < batchSize && (pending = queue.poll()) != null) {
+				batch.add(pending);
+			}
+			// A registration is counted just before it is offered, so this can come up empty.
+			if (batch.isEmpty()) {
+				continue;
+			}
+			size.addAndGet(-batch.size());
+			flush(batch);
+			batch.clear();
+		}
+		// Only a registration that submit() is about to take back can still be queued.
+		PendingInsert pending;
+		while ((pending = queue.poll()) != null) {
+			size.decrementAndGet();
+			pending.inserted().completeExceptionally(notAccepting());
+		}
+	}
+
+	private void flush(List<PendingInsert> batch) {
+		// Only the first registration of an email in the batch can win, as with single inserts.
+		Set<String> emails = new HashSet<>();
+		List<Customer> customers = new ArrayList<>(batch.size());
+		for (PendingInsert pending : batch) {
+			if (emails.add(pending.customer().getEmail())) {
+				customers.add(pending.customer());
+			}
+		}
+
+		batchSizes.record(batch.size());
+		Set<String> inserted;
+		try {
+			inserted = new HashSet<>(customerDao.insertCustomersIfEmailsAvailable(customers));
+		} catch (Throwable e) {
+			log.atWarn().addKeyValue("batch", batch.size()).setCause(e).log("Failed to write customers, retrying one by one");
+			batch.forEach(this::insertAlone);
+			return;
+		}
+
+		for (PendingInsert pending : batch) {
+			pending.inserted().complete(inserted.remove(pending.customer().getEmail()));
+		}
+	}
+
+	private static ServiceUnavailableException notAccepting() {
+		return new ServiceUnavailableException("Registrations are not being accepted right now.");
+	}
+
+	/**
+	 * Falls back to a single-row insert, so that a registration the database rejects
+	 * fails only its own caller, as it would have without the queue.
+	 */
+	private void insertAlone(PendingInsert pending) {
+		try {
+			pending.inserted().complete(customerDao.insertCustomerIfEmailAvailable(pending.customer()).isPresent());
+		} catch (Throwable e) {
+			pending.inserted().completeExceptionally(e);
+		}
+	}
+}
@@ -0,0 +1,93 @@
+package com.valloyd.customer;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * Mirrors {@link CustomerController} on WebFlux when the application runs as a reactive
+ * web application. Customer lists are streamed from the database as the client reads
+ * them, as a JSON array or as NDJSON depending on the {@code Accept} header.
+ */
+@RestController
+@RequestMapping("api/v1/customers")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveCustomerController {
+
+	private final ReactiveCustomerService customerService;
+
+	public ReactiveCustomerController(ReactiveCustomerService customerService) {
+		this.customerService = customerService;
+	}
+
+	@GetMapping(produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+	public Flux<Customer> getCustomers(
+			@RequestParam(value = "after", required = false) Integer after,
+			@RequestParam(value = "limit", required = false) Integer limit,
+			@RequestParam(value = "minAge", required = false) Integer minAge,
+			@RequestParam(value = "maxAge", required = false) Integer maxAge,
+			@RequestParam(value = "name", required = false) String name,
+			@RequestParam(value = "email", required = false) String email,
+			@RequestParam(value = "sort", required = false) String sort,
+			@RequestParam(value = "afterAge", required = false) Integer afterAge,
+			@RequestParam(value = "afterName", required = false) String afterName){
+		if (minAge != null || maxAge != null || name != null || email != null
+				|| sort != null || afterAge != null || afterName != null){
+			return customerService.searchCustomers(
+					new CustomerQuery(minAge, maxAge, name, email, CustomerQuery.Sort.of(sort), after, afterAge, afterName),
+					limit
+			);
+		}
+		return customerService.getCustomers(after, limit);
+	}
+
+	@GetMapping(params = "ids")
+	public Mono<CustomerLookupResult> getCustomersByIds(@RequestParam("ids") List<Integer> ids){
+		return customerService.getCustomersByIds(ids);
+	}
+
+	@GetMapping(value = "search", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+	public Flux<Customer> searchCustomers(
+			@RequestParam("q") String q,
+			@RequestParam(value = "limit", required = false) Integer limit){
+		return customerService.searchCustomersByText(q, limit);
+	}
+
+	@GetMapping(value = "export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+	public Flux<Customer> exportCustomers(){
+		return customerService.getAllCustomers();
+	}
+
+	@GetMapping("{customerId}")
+	public Mono<Customer> getCustomer(@PathVariable("customerId") Integer customerId){
+		return customerService.getCustomer(customerId);
+	}
+
+	@PostMapping
+	public Mono<Void> registerCustomer(@RequestBody CustomerRegistrationRequest request){
+		return customerService.addCustomer(request);
+	}
+
+	@PostMapping("batch")
+	public Mono<List<CustomerRegistrationResult>> registerCustomers(
+			@RequestBody List<CustomerRegistrationRequest> requests){
+		return customerService.addCustomers(requests);
+	}
+
+	@DeleteMapping("{customerId}")
+	public Mono<Void> deleteCustomer(
+			@PathVariable("customerId") Integer customerId) {
+		return customerService.deleteCustomerById(customerId);
+	}
+
+	@PutMapping("{customerId}")
+	public Mono<Void> updateCustomer(
+			@PathVariable("customerId") Integer customerId,
+			@RequestBody CustomerUpdateRequest updateRequest) {
+		return customerService.updateCustomer(customerId, updateRequest);
+	}
+}
@@ -0,0 +1,19 @@
+package com.valloyd.customer;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+
+public interface ReactiveCustomerDao {
+	Flux<Customer> selectAllCustomers();
+	Flux<Customer> selectCustomers(Integer afterId, int limit);
+	Flux<Customer> selectCustomersMatching(CustomerQuery query, int limit);
+	Mono<Customer> selectCustomerById(Integer id);
+	Flux<Customer> selectCustomersByIds(Collection<Integer> ids);
+	Flux<Customer> selectCustomersSimilarTo(String text, int limit);
+	Mono<Integer> insertCustomerIfEmailAvailable(Customer customer);
+	Mono<Boolean> existsCustomerWithId(Integer id);
+	Mono<Long> deleteCustomerById(Integer id);
+	Mono<Customer> updateCustomerIfChanged(Customer update, Integer expectedVersion);
+}
@@ -0,0 +1,139 @@
+package com.valloyd.customer;
+
+import com.valloyd.exception.DuplicateResourceException;
+import com.valloyd.exception.RequestValidationException;
+import com.valloyd.exception.ResourceNotFoundException;
+import com.valloyd.exception.StaleResourceException;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+import static com.valloyd.customer.CustomerService.DEFAULT_PAGE_SIZE;
+import static com.valloyd.customer.CustomerService.MAX_BATCH_SIZE;
+import static com.valloyd.customer.CustomerService.MAX_PAGE_SIZE;
+
+/**
+ * Reactive counterpart of {@link CustomerService} with the same validation and errors.
+ */
+@Service
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveCustomerService {
+
+	private final ReactiveCustomerDao customerDao;
+
+	public ReactiveCustomerService(ReactiveCustomerDao customerDao) {
+		this.customerDao = customerDao;
+	}
+
+	public Flux<Customer> getAllCustomers(){
+		return customerDao.selectAllCustomers();
+	}
+
+	public Flux<Customer> getCustomers(Integer afterId, Integer limit){
+		int pageSize = limit == null ? DEFAULT_PAGE_SIZE : limit;
+
+		if (pageSize < 1 || pageSize > MAX_PAGE_SIZE){
+			return Flux.error(new RequestValidationException(
+					"Limit must be between 1 and %s.".formatted(MAX_PAGE_SIZE)
+			));
+		}
+
+		return customerDao.selectCustomers(afterId == null ? 0 : afterId, pageSize);
+	}
+
+	public Flux<Customer> searchCustomers(CustomerQuery query, Integer limit){
+		return Mono.fromSupplier(() -> CustomerService.searchPageSize(query, limit))
+				.flatMapMany(pageSize -> customerDao.selectCustomersMatching(query, pageSize));
+	}
+
+	public Flux<Customer> searchCustomersByText(String text, Integer limit){
+		return Mono.fromSupplier(() -> CustomerService.textSearchLimit(text, limit))
+				.flatMapMany(searchLimit -> customerDao.selectCustomersSimilarTo(text.strip(), searchLimit));
+	}
+
+	public Mono<Customer> getCustomer(Integer id){
+		return customerDao.selectCustomerById(id)
+				.switchIfEmpty(Mono.error(() -> new ResourceNotFoundException(
+						"Customer with id %s not found.".formatted(id)
+				)));
+	}
+
+	public Mono<CustomerLookupResult> getCustomersByIds(List<Integer> ids){
+		return Mono.fromSupplier(() -> CustomerService.requestedIds(ids))
+				.flatMap(requested -> customerDao.selectCustomersByIds(requested)
+						.collectList()
+						.map(found -> CustomerService.inRequestOrder(requested, found)));
+	}
+
+	public Mono<Void> addCustomer(CustomerRegistrationRequest customerRegistrationRequest){
+		return customerDao.insertCustomerIfEmailAvailable(toCustomer(customerRegistrationRequest))
+				.switchIfEmpty(Mono.error(() -> new DuplicateResourceException("Email taken")))
+				.then();
+	}
+
+	/**
+	 * Registers each customer with an insert that skips taken emails, in request order,
+	 * so an email repeated within the batch is reported as taken like in
+	 * {@link CustomerService#addCustomers(List)}.
+	 */
+	public Mono<List<CustomerRegistrationResult>> addCustomers(List<CustomerRegistrationRequest> registrationRequests){
+		if (registrationRequests.isEmpty() || registrationRequests.size() > MAX_BATCH_SIZE){
+			return Mono.error(new RequestValidationException(
+					"Batch size must be between 1 and %s.".formatted(MAX_BATCH_SIZE)
+			));
+		}
+
+		return Flux.fromIterable(registrationRequests)
+				.concatMap(request -> customerDao.insertCustomerIfEmailAvailable(toCustomer(request))
+						.map(id -> new CustomerRegistrationResult(request.email(), CustomerRegistrationResult.Status.REGISTERED))
+						.defaultIfEmpty(new CustomerRegistrationResult(request.email(), CustomerRegistrationResult.Status.EMAIL_TAKEN)))
+				.collectList();
+	}
+
+	public Mono<Void> deleteCustomerById(Integer customerId){
+		return customerDao.deleteCustomerById(customerId)
+				.filter(deleted -> deleted > 0)
+				.switchIfEmpty(Mono.error(() -> new ResourceNotFoundException(
+						"Customer with ID [%s] not found.".formatted(customerId)
+				)))
+				.then();
+	}
+
+	public Mono<Void> updateCustomer(Integer customerId, CustomerUpdateRequest updateRequest){
+		Customer update = new Customer(
+				customerId,
+				updateRequest.name(),
+				updateRequest.email(),
+				updateRequest.age()
+		);
+
+		return customerDao.updateCustomerIfChanged(update, updateRequest.version())
+				.onErrorMap(
+						e -> e instanceof DataIntegrityViolationException violation && CustomerService.isEmailTaken(violation),
+						e -> new DuplicateResourceException("Email taken")
+				)
+				// Nothing was written, only now pay for a read to report why.
+				.switchIfEmpty(Mono.defer(() -> getCustomer(customerId)
+						.flatMap(customer -> {
+							if (updateRequest.version() != null && updateRequest.version() != customer.getVersion()){
+								return Mono.error(new StaleResourceException(
+										"Customer with id %s was modified by another request.".formatted(customerId)
+								));
+							}
+							return Mono.error(new RequestValidationException("No data changes found."));
+						})))
+				.then();
+	}
+
+	private static Customer toCustomer(CustomerRegistrationRequest request){
+		return new Customer(
+				request.name(),
+				request.email(),
+				request.age()
+		);
+	}
+}
@@ -0,0 +1,92 @@
+package com.valloyd.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Replaces the single datasource with a primary and one or more read replicas. Read-only
+ * transactions, such as the {@code CustomerJdbcDas} reads, go to the replicas; everything
+ * else, including Flyway, goes to the primary. The primary is configured as usual under
+ * {@code spring.datasource}; the replicas under {@code customer.datasource.read-replicas},
+ * sharing the primary's credentials unless given their own. Replica pools take the
+ * primary's {@code spring.datasource.hikari} settings, and their own
+ * {@code maximum-pool-size} when one is given.
+ * <p>
+ * Enable it with {@code customer.datasource.read-replicas.enabled=true}, or the
+ * {@code read-replicas} profile which points at the replica in {@code docker-compose.yml}.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(prefix = "customer.datasource.read-replicas", name = "enabled", havingValue = "true")
+public class ReadReplicaConfig {
+
+	public static final String REPLICA_MAXIMUM_POOL_SIZE = "customer.datasource.read-replicas.maximum-pool-size";
+
+	@Bean
+	@ConfigurationProperties("spring.datasource.hikari")
+	HikariDataSource primaryDataSource(DataSourceProperties properties) {
+		HikariDataSource dataSource = properties.initializeDataSourceBuilder()
+				.type(HikariDataSource.class)
+				.build();
+		dataSource.setPoolName("primary");
+		return dataSource;
+	}
+
+	@Bean
+	ReplicaRoutingDataSource replicaRoutingDataSource(
+			HikariDataSource primaryDataSource,
+			DataSourceProperties properties,
+			@Value("${customer.datasource.read-replicas.urls}") List<String> urls,
+			@Value("${customer.datasource.read-replicas.username:}") String username,
+			@Value("${customer.datasource.read-replicas.password:}") String password,
+			@Value("${" + REPLICA_MAXIMUM_POOL_SIZE + ":#{null}}") Integer maximumPoolSize,
+			Environment environment) {
+		Binder binder = Binder.get(environment);
+		List<DataSource> replicas = IntStream.range(0, urls.size())
+				.mapToObj(i -> {
+					HikariDataSource replica = new HikariDataSource();
+					binder.bind("spring.datasource.hikari", Bindable.ofInstance(replica));
+					replica.setPoolName("replica-" + i);
+					replica.setJdbcUrl(urls.get(i));
+					replica.setUsername(username.isEmpty() ? properties.determineUsername() : username);
+					replica.setPassword(password.isEmpty() ? properties.determinePassword() : password);
+					if (maximumPoolSize != null) {
+						replica.setMaximumPoolSize(maximumPoolSize);
+					}
+					replica.setReadOnly(true);
+					return (DataSource) replica;
+				})
+				.toList();
+		return new ReplicaRoutingDataSource(primaryDataSource, replicas);
+	}
+
+	@Bean
+	@Primary
+	DataSource dataSource(ReplicaRoutingDataSource replicaRoutingDataSource) {
+		return new LazyConnectionDataSourceProxy(replicaRoutingDataSource);
+	}
+
+	@Bean
+	@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+	FilterRegistrationBean<ReadYourWritesFilter> readYourWritesFilter(
+			@Value("${customer.datasource.read-replicas.read-your-writes-window:5s}") Duration window) {
+		return new FilterRegistrationBean<>(new ReadYourWritesFilter(window, Clock.systemUTC()));
+	}
+}
@@ -0,0 +1,68 @@
+package com.valloyd.datasource;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpMethod;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+
+/**
+ * Gives clients read-your-writes consistency on top of lagging replicas. Every write
+ * request is answered with a {@value #WRITTEN_AT_HEADER} header holding the time of the
+ * write; a client that sends it back on later reads is served from the primary until
+ * {@code window} has passed. Clients that do not echo the header read from the replicas.
+ */
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+
+	public static final String WRITTEN_AT_HEADER = "X-Customer-Written-At";
+
+	private final Duration window;
+	private final Clock clock;
+
+	public ReadYourWritesFilter(Duration window, Clock clock) {
+		this.window = window;
+		this.clock = clock;
+	}
+
+	@Override
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+			throws ServletException, IOException {
+		if (!isRead(request)) {
+			response.setHeader(WRITTEN_AT_HEADER, Long.toString(clock.millis()));
+			filterChain.doFilter(request, response);
+			return;
+		}
+
+		if (!wroteRecently(request.getHeader(WRITTEN_AT_HEADER))) {
+			filterChain.doFilter(request, response);
+			return;
+		}
+
+		try (var scope = ReplicaRoutingDataSource.primaryOnly()) {
+			filterChain.doFilter(request, response);
+		}
+	}
+
+	private static boolean isRead(HttpServletRequest request) {
+		String method = request.getMethod();
+		return HttpMethod.GET.matches(method) || HttpMethod.HEAD.matches(method);
+	}
+
+	private boolean wroteRecently(String writtenAt) {
+		if (writtenAt == null) {
+			return false;
+		}
+		try {
+			// Bounded on both sides, so a time far in the future cannot pin a client to the primary.
+			long age = clock.millis() - Long.parseLong(writtenAt.trim());
+			return age > -window.toMillis() && age < window.toMillis();
+		} catch (NumberFormatException e) {
+			return false;
+		}
+	}
+}
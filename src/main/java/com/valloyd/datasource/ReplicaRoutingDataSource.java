@@ -0,0 +1,96 @@
+package com.valloyd.datasource;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends connections for read-only transactions to the replicas, in turn, and everything
+ * else to the primary. The transaction's read-only flag is only known once it has begun,
+ * so this must sit behind a {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy}
+ * that defers picking a connection until the first statement.
+ * <p>
+ * Code that has to see its own recent writes can pin the current thread to the primary
+ * with {@link #primaryOnly()}, even inside a read-only transaction.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource implements DisposableBean {
+
+	static final String PRIMARY = "primary";
+
+	private static final ThreadLocal<Boolean> PRIMARY_ONLY = new ThreadLocal<>();
+
+	private final List<DataSource> replicas;
+	private final String[] replicaKeys;
+	private final AtomicInteger next = new AtomicInteger();
+
+	public ReplicaRoutingDataSource(DataSource primary, List<DataSource> replicas) {
+		this.replicas = List.copyOf(replicas);
+		this.replicaKeys = new String[replicas.size()];
+		Map<Object, Object> targets = new HashMap<>();
+		targets.put(PRIMARY, primary);
+		for (int i = 0; i < replicaKeys.length; i++) {
+			replicaKeys[i] = "replica-" + i;
+			targets.put(replicaKeys[i], replicas.get(i));
+		}
+		setTargetDataSources(targets);
+		setDefaultTargetDataSource(primary);
+	}
+
+	public List<DataSource> getReplicas() {
+		return replicas;
+	}
+
+	/**
+	 * Routes every connection the current thread opens to the primary until the returned
+	 * scope is closed.
+	 */
+	public static PrimaryOnlyScope primaryOnly() {
+		Boolean previous = PRIMARY_ONLY.get();
+		PRIMARY_ONLY.set(Boolean.TRUE);
+		return () -> {
+			if (previous == null) {
+				PRIMARY_ONLY.remove();
+			} else {
+				PRIMARY_ONLY.set(previous);
+			}
+		};
+	}
+
+	/**
+	 * Whether the current thread is pinned to the primary by {@link #primaryOnly()}.
+	 */
+	public static boolean isPrimaryOnly() {
+		return PRIMARY_ONLY.get() != null;
+	}
+
+	@Override
+	protected Object determineCurrentLookupKey() {
+		if (replicaKeys.length == 0
+				|| !TransactionSynchronizationManager.isCurrentTransactionReadOnly()
+				|| isPrimaryOnly()) {
+			return PRIMARY;
+		}
+		return replicaKeys[Math.floorMod(next.getAndIncrement(), replicaKeys.length)];
+	}
+
+	@Override
+	public void destroy() throws Exception {
+		for (DataSource replica : replicas) {
+			if (replica instanceof AutoCloseable closeable) {
+				closeable.close();
+			}
+		}
+	}
+
+	@FunctionalInterface
+	public interface PrimaryOnlyScope extends AutoCloseable {
+		@Override
+		void close();
+	}
+}
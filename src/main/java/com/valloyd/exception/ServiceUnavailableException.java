@@ -0,0 +1,11 @@
+package com.valloyd.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(code = HttpStatus.SERVICE_UNAVAILABLE)
+public class ServiceUnavailableException extends RuntimeException{
+	public ServiceUnavailableException(String message) {
+		super(message);
+	}
+}
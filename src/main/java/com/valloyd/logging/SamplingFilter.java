@@ -0,0 +1,40 @@
+package com.valloyd.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.filter.Filter;
+import ch.qos.logback.core.spi.FilterReply;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lets one in every {@code rate} events at or below {@code level} through and all more
+ * severe ones, so a hot path logging at debug cannot flood the appender when its level is
+ * lowered at runtime. Events are counted per filter, not per logger.
+ * <p>
+ * Attach it to the async appender in {@code logback-spring.xml}. Its filters run on the
+ * thread that logs, before the event is queued, so a denied event costs the caller
+ * nothing more than this check.
+ */
+public class SamplingFilter extends Filter<ILoggingEvent> {
+
+	private Level level = Level.DEBUG;
+	private long rate = 1;
+	private final AtomicLong events = new AtomicLong();
+
+	@Override
+	public FilterReply decide(ILoggingEvent event) {
+		if (rate <= 1 || event.getLevel().toInt() > level.toInt()) {
+			return FilterReply.NEUTRAL;
+		}
+		return events.getAndIncrement() % rate == 0 ? FilterReply.NEUTRAL : FilterReply.DENY;
+	}
+
+	public void setLevel(String level) {
+		this.level = Level.toLevel(level, Level.DEBUG);
+	}
+
+	public void setRate(long rate) {
+		this.rate = rate;
+	}
+}
@@ -0,0 +1,13 @@
+-- Built CONCURRENTLY so that registrations and updates keep going while the indexes are
+-- created; see the .conf file next to this one for why this runs outside a transaction.
+-- A build that fails leaves an INVALID index behind, drop it before retrying.
+
+-- Keyset pages sorted by age or name seek on (sort key, id). The included columns let
+-- age-filtered pages be answered from the index alone.
+CREATE INDEX CONCURRENTLY customer_age_id_idx ON customer (age, id) INCLUDE (name, email, version);
+CREATE INDEX CONCURRENTLY customer_name_id_idx ON customer (name, id);
+
+-- Prefix searches (LIKE 'prefix%') can only use a B-tree whose operator class ignores
+-- the collation.
+CREATE INDEX CONCURRENTLY customer_name_pattern_idx ON customer (name text_pattern_ops);
+CREATE INDEX CONCURRENTLY customer_email_pattern_idx ON customer (email text_pattern_ops);
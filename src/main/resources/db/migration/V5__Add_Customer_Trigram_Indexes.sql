@@ -0,0 +1,17 @@
+-- Built CONCURRENTLY so that registrations and updates keep going while the indexes are
+-- created; see the .conf file next to this one for why this runs outside a transaction.
+-- A build that fails leaves an INVALID index behind, drop it before retrying.
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+-- Back the word_similarity (<%) search on name and email.
+CREATE INDEX CONCURRENTLY customer_name_trgm_idx ON customer USING gin (name gin_trgm_ops);
+CREATE INDEX CONCURRENTLY customer_email_trgm_idx ON customer USING gin (email gin_trgm_ops);
+
+-- fastupdate is only turned off once the indexes are built, so that rows written during
+-- the build go through the cheap pending list. From here on searches never have to scan
+-- a pending list of unmerged entries, trading a little insert throughput for steadier
+-- read latency; the entries already queued are merged right away.
+ALTER INDEX customer_name_trgm_idx SET (fastupdate = off);
+ALTER INDEX customer_email_trgm_idx SET (fastupdate = off);
+SELECT gin_clean_pending_list('customer_name_trgm_idx');
+SELECT gin_clean_pending_list('customer_email_trgm_idx');
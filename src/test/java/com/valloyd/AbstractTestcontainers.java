@@ -1,6 +1,9 @@
 package com.valloyd;
 
 import com.github.javafaker.Faker;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.ConnectionFactoryOptions;
 import org.flywaydb.core.Flyway;
 import org.junit.jupiter.api.BeforeAll;
 import org.springframework.boot.jdbc.DataSourceBuilder;
@@ -22,7 +25,7 @@ public abstract class AbstractTestcontainers {
 				POSTGRE_SQL_CONTAINER.getJdbcUrl(),
 				POSTGRE_SQL_CONTAINER.getUsername(),
 				POSTGRE_SQL_CONTAINER.getPassword()
-		).load();
+		).configuration(FlywayConfig.SESSION_LOCK).load();
 		flyway.migrate();
 		System.out.println();
 	}
@@ -55,5 +58,16 @@ public abstract class AbstractTestcontainers {
 		return new JdbcTemplate(getDataSource());
 	}
 
+	protected static ConnectionFactory getConnectionFactory() {
+		return ConnectionFactories.get(ConnectionFactoryOptions.builder()
+				.option(ConnectionFactoryOptions.DRIVER, "postgresql")
+				.option(ConnectionFactoryOptions.HOST, POSTGRE_SQL_CONTAINER.getHost())
+				.option(ConnectionFactoryOptions.PORT, POSTGRE_SQL_CONTAINER.getMappedPort(PostgreSQLContainer.POSTGRESQL_PORT))
+				.option(ConnectionFactoryOptions.DATABASE, POSTGRE_SQL_CONTAINER.getDatabaseName())
+				.option(ConnectionFactoryOptions.USER, POSTGRE_SQL_CONTAINER.getUsername())
+				.option(ConnectionFactoryOptions.PASSWORD, POSTGRE_SQL_CONTAINER.getPassword())
+				.build());
+	}
+
 	protected static final Faker FAKER = new Faker();
 }
\ No newline at end of file
@@ -0,0 +1,71 @@
+package com.valloyd;
+
+import com.valloyd.datasource.ReadReplicaConfig;
+import com.valloyd.datasource.ReplicaRoutingDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DataSourceTuningConfigTest {
+
+	@Test
+	void sizesPoolFromCoresAndSpindles() {
+		// Given
+		MockEnvironment environment = new MockEnvironment()
+				.withProperty("customer.datasource.effective-spindle-count", "3");
+		BeanPostProcessor underTest = DataSourceTuningConfig.hikariPoolSizer(environment);
+		HikariDataSource dataSource = new HikariDataSource();
+
+		// When
+		underTest.postProcessBeforeInitialization(dataSource, "dataSource");
+
+		// Then
+		int expected = Runtime.getRuntime().availableProcessors() * 2 + 3;
+		assertThat(dataSource.getMaximumPoolSize()).isEqualTo(expected);
+		assertThat(dataSource.getMinimumIdle()).isEqualTo(expected);
+	}
+
+	@Test
+	void keepsExplicitPoolSize() {
+		// Given
+		MockEnvironment environment = new MockEnvironment()
+				.withProperty(DataSourceTuningConfig.MAXIMUM_POOL_SIZE, "7")
+				.withProperty(DataSourceTuningConfig.MINIMUM_IDLE, "2");
+		BeanPostProcessor underTest = DataSourceTuningConfig.hikariPoolSizer(environment);
+		HikariDataSource dataSource = new HikariDataSource();
+
+		// When
+		underTest.postProcessBeforeInitialization(dataSource, "dataSource");
+
+		// Then
+		assertThat(dataSource.getMaximumPoolSize()).isEqualTo(7);
+		assertThat(dataSource.getMinimumIdle()).isEqualTo(2);
+	}
+
+	@Test
+	void sizesReplicaPoolsUnlessGivenTheirOwnSize() {
+		// Given
+		HikariDataSource replica = new HikariDataSource();
+		ReplicaRoutingDataSource routingDataSource = new ReplicaRoutingDataSource(new HikariDataSource(), List.of(replica));
+		BeanPostProcessor tuned = DataSourceTuningConfig.hikariPoolSizer(new MockEnvironment()
+				.withProperty("customer.datasource.effective-spindle-count", "3"));
+		HikariDataSource explicitReplica = new HikariDataSource();
+		BeanPostProcessor explicit = DataSourceTuningConfig.hikariPoolSizer(new MockEnvironment()
+				.withProperty(ReadReplicaConfig.REPLICA_MAXIMUM_POOL_SIZE, "4"));
+
+		// When
+		tuned.postProcessBeforeInitialization(routingDataSource, "replicaRoutingDataSource");
+		explicit.postProcessBeforeInitialization(
+				new ReplicaRoutingDataSource(new HikariDataSource(), List.of(explicitReplica)), "replicaRoutingDataSource");
+
+		// Then
+		assertThat(replica.getMaximumPoolSize()).isEqualTo(Runtime.getRuntime().availableProcessors() * 2 + 3);
+		assertThat(explicitReplica.getMaximumPoolSize()).isEqualTo(4);
+		assertThat(explicitReplica.getMinimumIdle()).isEqualTo(4);
+	}
+}
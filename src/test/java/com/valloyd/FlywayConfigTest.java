@@ -0,0 +1,26 @@
+package com.valloyd;
+
+import org.flywaydb.core.Flyway;
+import org.flywaydb.core.api.configuration.FluentConfiguration;
+import org.flywaydb.core.internal.database.postgresql.PostgreSQLConfigurationExtension;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FlywayConfigTest {
+
+	@Test
+	void locksWithoutHoldingATransactionOpen() {
+		// Given
+		FluentConfiguration configuration = Flyway.configure().connectRetries(3);
+
+		// When
+		new FlywayConfig().sessionLockCustomizer().customize(configuration);
+
+		// Then
+		assertThat(configuration.getPluginRegister()
+				.getPlugin(PostgreSQLConfigurationExtension.class)
+				.isTransactionalLock()).isFalse();
+		assertThat(configuration.getConnectRetries()).isEqualTo(3);
+	}
+}
@@ -0,0 +1,281 @@
+package com.valloyd.customer;
+
+import com.valloyd.datasource.ReplicaRoutingDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CustomerCachingDasTest {
+
+	@Mock
+	private CustomerDao customerDao;
+	private SimpleMeterRegistry meterRegistry;
+	private CustomerCachingDas underTest;
+
+	@BeforeEach
+	void setUp() {
+		meterRegistry = new SimpleMeterRegistry();
+		underTest = new CustomerCachingDas(customerDao, 100, Duration.ofMinutes(5), Duration.ofSeconds(5), meterRegistry);
+	}
+
+	@Test
+	void selectCustomerByIdLoadsOnceThenServesFromCache() {
+		// Given
+		var id = 1;
+		Customer customer = new Customer(id, "Jip", "jip@gmail.com", 28);
+		when(customerDao.selectCustomerById(id)).thenReturn(Optional.of(customer));
+
+		// When
+		Optional<Customer> first = underTest.selectCustomerById(id);
+		Optional<Customer> second = underTest.selectCustomerById(id);
+
+		// Then
+		assertThat(first).hasValue(customer);
+		assertThat(second).hasValue(customer);
+		verify(customerDao, times(1)).selectCustomerById(id);
+		assertThat(meterRegistry.get("cache.gets").tag("result", "hit").functionCounter().count()).isEqualTo(1);
+		assertThat(meterRegistry.get("cache.gets").tag("result", "miss").functionCounter().count()).isEqualTo(1);
+	}
+
+	@Test
+	void selectCustomersByIdsOnlyLoadsUncachedIds() {
+		// Given
+		Customer jip = new Customer(1, "Jip", "jip@gmail.com", 28);
+		Customer jap = new Customer(2, "Jap", "jap@gmail.com", 30);
+		when(customerDao.selectCustomerById(1)).thenReturn(Optional.of(jip));
+		when(customerDao.selectCustomersByIds(List.of(2, 3))).thenReturn(List.of(jap));
+		underTest.selectCustomerById(1);
+
+		// When
+		List<Customer> actual = underTest.selectCustomersByIds(List.of(1, 2, 3));
+
+		// Then
+		assertThat(actual).containsExactlyInAnyOrder(jip, jap);
+		assertThat(underTest.selectCustomerById(2)).hasValue(jap);
+		verify(customerDao, never()).selectCustomerById(2);
+	}
+
+	@Test
+	void selectCustomerByIdDoesNotCacheMissingCustomer() {
+		// Given
+		var id = 1;
+		when(customerDao.selectCustomerById(id)).thenReturn(Optional.empty());
+
+		// When
+		underTest.selectCustomerById(id);
+		underTest.selectCustomerById(id);
+
+		// Then
+		verify(customerDao, times(2)).selectCustomerById(id);
+	}
+
+	@Test
+	void deleteCustomerByIdInvalidatesEntry() {
+		// Given
+		var id = 1;
+		Customer customer = new Customer(id, "Jip", "jip@gmail.com", 28);
+		when(customerDao.selectCustomerById(id))
+				.thenReturn(Optional.of(customer))
+				.thenReturn(Optional.empty());
+		underTest.selectCustomerById(id);
+
+		// When
+		underTest.deleteCustomerById(id);
+
+		// Then
+		verify(customerDao).deleteCustomerById(id);
+		assertThat(underTest.selectCustomerById(id)).isEmpty();
+	}
+
+	@Test
+	void updateCustomerInvalidatesEntry() {
+		// Given
+		var id = 1;
+		Customer customer = new Customer(id, "Jip", "jip@gmail.com", 28);
+		Customer updated = new Customer(id, "Jap", "jip@gmail.com", 28);
+		when(customerDao.selectCustomerById(id))
+				.thenReturn(Optional.of(customer))
+				.thenReturn(Optional.of(updated));
+		underTest.selectCustomerById(id);
+
+		// When
+		underTest.updateCustomer(updated);
+
+		// Then
+		verify(customerDao).updateCustomer(updated);
+		assertThat(underTest.selectCustomerById(id)).hasValue(updated);
+	}
+
+	@Test
+	void updateCustomerIfChangedInvalidatesEntry() {
+		// Given
+		var id = 1;
+		Customer customer = new Customer(id, "Jip", "jip@gmail.com", 28, 0);
+		Customer updated = new Customer(id, "Jap", "jip@gmail.com", 28, 1);
+		Customer update = new Customer(id, "Jap", null, null);
+		when(customerDao.selectCustomerById(id))
+				.thenReturn(Optional.of(customer))
+				.thenReturn(Optional.of(updated));
+		when(customerDao.updateCustomerIfChanged(update, null)).thenReturn(Optional.of(updated));
+		underTest.selectCustomerById(id);
+
+		// When
+		underTest.updateCustomerIfChanged(update, null);
+
+		// Then
+		assertThat(underTest.selectCustomerById(id)).hasValueSatisfying(c -> {
+			assertThat(c.getName()).isEqualTo("Jap");
+			assertThat(c.getVersion()).isEqualTo(1);
+		});
+		verify(customerDao, times(2)).selectCustomerById(id);
+	}
+
+	@Test
+	void selectCustomerByIdLoadsFromPrimaryRightAfterWrite() {
+		// Given
+		var id = 1;
+		Customer customer = new Customer(id, "Jip", "jip@gmail.com", 28);
+		List<Boolean> primaryOnly = new ArrayList<>();
+		when(customerDao.selectCustomerById(id)).thenAnswer(invocation -> {
+			primaryOnly.add(ReplicaRoutingDataSource.isPrimaryOnly());
+			return Optional.of(customer);
+		});
+		underTest.selectCustomerById(id);
+
+		// When
+		underTest.updateCustomer(customer);
+		underTest.selectCustomerById(id);
+
+		// Then
+		assertThat(primaryOnly).containsExactly(false, true);
+		assertThat(ReplicaRoutingDataSource.isPrimaryOnly()).isFalse();
+	}
+
+	@Test
+	void selectCustomerByIdLoadsFromReplicaOnceWindowHasPassed() {
+		// Given
+		underTest = new CustomerCachingDas(customerDao, 100, Duration.ofMinutes(5), Duration.ZERO, meterRegistry);
+		var id = 1;
+		Customer customer = new Customer(id, "Jip", "jip@gmail.com", 28);
+		List<Boolean> primaryOnly = new ArrayList<>();
+		when(customerDao.selectCustomerById(id)).thenAnswer(invocation -> {
+			primaryOnly.add(ReplicaRoutingDataSource.isPrimaryOnly());
+			return Optional.of(customer);
+		});
+
+		// When
+		underTest.updateCustomer(customer);
+		underTest.selectCustomerById(id);
+
+		// Then
+		assertThat(primaryOnly).containsExactly(false);
+	}
+
+	@Test
+	void selectCustomersByIdsLoadsFromPrimaryWhenAnyIdWasJustWritten() {
+		// Given
+		Customer jip = new Customer(1, "Jip", "jip@gmail.com", 28);
+		Customer jap = new Customer(2, "Jap", "jap@gmail.com", 30);
+		List<Boolean> primaryOnly = new ArrayList<>();
+		when(customerDao.selectCustomersByIds(List.of(1, 2))).thenAnswer(invocation -> {
+			primaryOnly.add(ReplicaRoutingDataSource.isPrimaryOnly());
+			return List.of(jip, jap);
+		});
+		when(customerDao.selectCustomersByIds(List.of(2))).thenAnswer(invocation -> {
+			primaryOnly.add(ReplicaRoutingDataSource.isPrimaryOnly());
+			return List.of(jap);
+		});
+
+		// When
+		underTest.deleteCustomerById(3);
+		underTest.selectCustomersByIds(List.of(1, 2));
+		underTest.deleteCustomerById(2);
+		underTest.selectCustomersByIds(List.of(1, 2));
+
+		// Then
+		assertThat(primaryOnly).containsExactly(false, true);
+	}
+
+	@Test
+	void selectCustomerByIdDoesNotCacheRowInvalidatedWhileLoading() throws Exception {
+		// Given
+		var id = 1;
+		Customer stale = new Customer(id, "Jip", "jip@gmail.com", 28, 0);
+		Customer fresh = new Customer(id, "Jap", "jip@gmail.com", 28, 1);
+		Thread writer = new Thread(() -> underTest.updateCustomer(fresh));
+		when(customerDao.selectCustomerById(id))
+				.thenAnswer(invocation -> {
+					// The write lands between the delegate read and caching what it read.
+					writer.start();
+					awaitBlockedOrDone(writer);
+					return Optional.of(stale);
+				})
+				.thenReturn(Optional.of(fresh));
+
+		// When
+		Optional<Customer> first = underTest.selectCustomerById(id);
+		writer.join();
+
+		// Then
+		assertThat(first).hasValue(stale);
+		assertThat(underTest.selectCustomerById(id)).hasValue(fresh);
+	}
+
+	@Test
+	void selectCustomersByIdsDoesNotCacheRowsInvalidatedWhileLoading() {
+		// Given
+		Customer stale = new Customer(2, "Jap", "jap@gmail.com", 30, 0);
+		Customer fresh = new Customer(2, "Jop", "jap@gmail.com", 30, 1);
+		when(customerDao.selectCustomersByIds(List.of(2))).thenAnswer(invocation -> {
+			underTest.updateCustomer(fresh);
+			return List.of(stale);
+		});
+		when(customerDao.selectCustomerById(2)).thenReturn(Optional.of(fresh));
+
+		// When
+		List<Customer> actual = underTest.selectCustomersByIds(List.of(2));
+
+		// Then
+		assertThat(actual).containsExactly(stale);
+		assertThat(underTest.selectCustomerById(2)).hasValue(fresh);
+	}
+
+	private static void awaitBlockedOrDone(Thread thread) throws InterruptedException {
+		long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+		while (thread.getState() != Thread.State.BLOCKED
+				&& thread.getState() != Thread.State.WAITING
+				&& thread.getState() != Thread.State.TERMINATED) {
+			if (System.nanoTime() > deadline) {
+				throw new AssertionError("Writer neither blocked nor finished");
+			}
+			Thread.sleep(1);
+		}
+	}
+
+	@Test
+	void existsCustomerWithIdAnsweredFromCache() {
+		// Given
+		var id = 1;
+		when(customerDao.selectCustomerById(id)).thenReturn(Optional.of(new Customer(id, "Jip", "jip@gmail.com", 28)));
+		underTest.selectCustomerById(id);
+
+		// When
+		boolean actual = underTest.existsCustomerWithId(id);
+
+		// Then
+		assertThat(actual).isTrue();
+		verify(customerDao, never()).existsCustomerWithId(id);
+	}
+}
@@ -0,0 +1,171 @@
+package com.valloyd.customer;
+
+import com.valloyd.datasource.ReplicaRoutingDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.QueryTimeoutException;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CustomerCoalescingDasTest {
+
+	private static final Customer JIP = new Customer(1, "Jip", "jip@gmail.com", 28);
+
+	@Mock
+	private CustomerDao customerDao;
+	private SimpleMeterRegistry meterRegistry;
+	private CustomerCoalescingDas underTest;
+	private final ExecutorService executor = Executors.newFixedThreadPool(8);
+	private final CountDownLatch querying = new CountDownLatch(1);
+	private final CountDownLatch release = new CountDownLatch(1);
+
+	@BeforeEach
+	void setUp() {
+		meterRegistry = new SimpleMeterRegistry();
+		underTest = new CustomerCoalescingDas(customerDao, meterRegistry);
+	}
+
+	@AfterEach
+	void tearDown() {
+		release.countDown();
+		executor.shutdownNow();
+	}
+
+	@Test
+	void concurrentSelectsForSameIdShareOneQuery() throws Exception {
+		// Given
+		when(customerDao.selectCustomerById(1)).thenAnswer(invocation -> {
+			release.await(5, TimeUnit.SECONDS);
+			return Optional.of(JIP);
+		});
+
+		// When
+		List<Future<Optional<Customer>>> selects = IntStream.range(0, 8)
+				.mapToObj(i -> executor.submit(() -> underTest.selectCustomerById(1)))
+				.toList();
+		awaitUntil(() -> coalesced() == 7);
+		release.countDown();
+
+		// Then
+		for (Future<Optional<Customer>> select : selects) {
+			assertThat(select.get(5, TimeUnit.SECONDS)).hasValue(JIP);
+		}
+		verify(customerDao, times(1)).selectCustomerById(1);
+	}
+
+	@Test
+	void followersSeeTheSharedQueryFail() throws Exception {
+		// Given
+		when(customerDao.selectCustomerById(1)).thenAnswer(invocation -> {
+			querying.countDown();
+			release.await(5, TimeUnit.SECONDS);
+			throw new QueryTimeoutException("Timed out");
+		});
+		Future<Optional<Customer>> leader = executor.submit(() -> underTest.selectCustomerById(1));
+		querying.await(5, TimeUnit.SECONDS);
+		Future<Optional<Customer>> follower = executor.submit(() -> underTest.selectCustomerById(1));
+		awaitUntil(() -> coalesced() == 1);
+
+		// When
+		release.countDown();
+
+		// Then
+		assertThatThrownBy(() -> follower.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(QueryTimeoutException.class);
+		assertThatThrownBy(() -> leader.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(QueryTimeoutException.class);
+	}
+
+	@Test
+	void selectAfterQueryReturnsRunsANewQuery() {
+		// Given
+		when(customerDao.selectCustomerById(1)).thenReturn(Optional.of(JIP));
+
+		// When
+		underTest.selectCustomerById(1);
+		underTest.selectCustomerById(1);
+
+		// Then
+		verify(customerDao, times(2)).selectCustomerById(1);
+		assertThat(coalesced()).isZero();
+	}
+
+	@Test
+	void selectAfterUpdateDoesNotShareQueryStartedBeforeIt() throws Exception {
+		// Given
+		Customer updated = new Customer(1, "Jap", "jip@gmail.com", 28);
+		CountDownLatch stale = new CountDownLatch(1);
+		when(customerDao.selectCustomerById(1))
+				.thenAnswer(invocation -> {
+					querying.countDown();
+					stale.await(5, TimeUnit.SECONDS);
+					return Optional.of(JIP);
+				})
+				.thenReturn(Optional.of(updated));
+		Future<Optional<Customer>> before = executor.submit(() -> underTest.selectCustomerById(1));
+		querying.await(5, TimeUnit.SECONDS);
+
+		// When
+		underTest.updateCustomer(updated);
+		Optional<Customer> after = underTest.selectCustomerById(1);
+		stale.countDown();
+
+		// Then
+		assertThat(after).hasValue(updated);
+		assertThat(before.get(5, TimeUnit.SECONDS)).hasValue(JIP);
+		assertThat(coalesced()).isZero();
+	}
+
+	@Test
+	void selectPinnedToPrimaryIsNeverCoalesced() throws Exception {
+		// Given
+		when(customerDao.selectCustomerById(1)).thenAnswer(invocation -> {
+			querying.countDown();
+			release.await(5, TimeUnit.SECONDS);
+			return Optional.of(JIP);
+		}).thenReturn(Optional.of(JIP));
+		Future<Optional<Customer>> replicaRead = executor.submit(() -> underTest.selectCustomerById(1));
+		querying.await(5, TimeUnit.SECONDS);
+
+		// When
+		Optional<Customer> actual;
+		try (var scope = ReplicaRoutingDataSource.primaryOnly()) {
+			actual = underTest.selectCustomerById(1);
+		}
+		release.countDown();
+
+		// Then
+		assertThat(actual).hasValue(JIP);
+		assertThat(replicaRead.get(5, TimeUnit.SECONDS)).hasValue(JIP);
+		verify(customerDao, times(2)).selectCustomerById(1);
+		assertThat(coalesced()).isZero();
+	}
+
+	private static void awaitUntil(BooleanSupplier condition) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (!condition.getAsBoolean()) {
+			assertThat(System.nanoTime()).as("Timed out waiting").isLessThan(deadline);
+			Thread.sleep(5);
+		}
+	}
+
+	private double coalesced() {
+		return meterRegistry.get("customer.dao.coalesced").counter().count();
+	}
+}
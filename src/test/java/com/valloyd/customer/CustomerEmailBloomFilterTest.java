@@ -0,0 +1,59 @@
+package com.valloyd.customer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CustomerEmailBloomFilterTest {
+
+	@Test
+	void neverReportsAddedEmailAsAbsent() {
+		// Given
+		CustomerEmailBloomFilter underTest = new CustomerEmailBloomFilter(10_000, 0.01);
+
+		// When
+		IntStream.range(0, 10_000).forEach(i -> underTest.put("customer-" + i + "@gmail.com"));
+
+		// Then
+		assertThat(IntStream.range(0, 10_000))
+				.allMatch(i -> underTest.mightContain("customer-" + i + "@gmail.com"));
+	}
+
+	@Test
+	void falsePositiveRateStaysNearConfiguredProbability() {
+		// Given
+		CustomerEmailBloomFilter underTest = new CustomerEmailBloomFilter(10_000, 0.01);
+		IntStream.range(0, 10_000).forEach(i -> underTest.put("customer-" + i + "@gmail.com"));
+
+		// When
+		long falsePositives = IntStream.range(0, 100_000)
+				.filter(i -> underTest.mightContain("other-" + i + "@gmail.com"))
+				.count();
+
+		// Then
+		assertThat(falsePositives / 100_000.0).isLessThan(0.02);
+		assertThat(underTest.expectedFalsePositiveRate()).isBetween(0.005, 0.02);
+	}
+
+	@Test
+	void emptyFilterContainsNothing() {
+		// Given
+		CustomerEmailBloomFilter underTest = new CustomerEmailBloomFilter(100, 0.01);
+
+		// When
+		// Then
+		assertThat(underTest.mightContain("gop@gmail.com")).isFalse();
+		assertThat(underTest.expectedFalsePositiveRate()).isZero();
+	}
+
+	@Test
+	void willThrowWhenProbabilityOutOfRange() {
+		// When
+		// Then
+		assertThatThrownBy(() -> new CustomerEmailBloomFilter(100, 1.0))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+}
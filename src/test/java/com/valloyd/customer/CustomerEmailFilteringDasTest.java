@@ -0,0 +1,198 @@
+package com.valloyd.customer;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CustomerEmailFilteringDasTest {
+
+	@Mock
+	private CustomerDao customerDao;
+	private SimpleMeterRegistry meterRegistry;
+	private CustomerEmailFilteringDas underTest;
+
+	@BeforeEach
+	void setUp() {
+		meterRegistry = new SimpleMeterRegistry();
+		underTest = new CustomerEmailFilteringDas(customerDao, 1_000, 0.01, meterRegistry);
+	}
+
+	@SuppressWarnings("unchecked")
+	private void givenTableContains(Customer... customers) {
+		doAnswer(invocation -> {
+			Consumer<Customer> action = invocation.getArgument(0);
+			List.of(customers).forEach(action);
+			return null;
+		}).when(customerDao).forEachCustomer(any(Consumer.class));
+		underTest.rebuild();
+	}
+
+	@Test
+	void existsCustomerWithEmailFallsThroughUntilBuilt() {
+		// Given
+		String email = "gop@gmail.com";
+		when(customerDao.existsCustomerWithEmail(email)).thenReturn(false);
+
+		// When
+		boolean actual = underTest.existsCustomerWithEmail(email);
+
+		// Then
+		assertThat(actual).isFalse();
+		assertThat(underTest.isBuilt()).isFalse();
+		verify(customerDao).existsCustomerWithEmail(email);
+	}
+
+	@Test
+	void existsCustomerWithEmailSkipsDaoForUnknownEmail() {
+		// Given
+		givenTableContains(new Customer(1, "Jip", "jip@gmail.com", 28));
+
+		// When
+		boolean actual = underTest.existsCustomerWithEmail("gop@gmail.com");
+
+		// Then
+		assertThat(actual).isFalse();
+		verify(customerDao, never()).existsCustomerWithEmail(any());
+		assertThat(meterRegistry.get("customer.email.filter.lookups")
+				.tag("result", "definitely_absent")
+				.counter()
+				.count()).isEqualTo(1);
+	}
+
+	@Test
+	void existsCustomerWithEmailAsksDaoForPossibleMatch() {
+		// Given
+		String email = "jip@gmail.com";
+		givenTableContains(new Customer(1, "Jip", email, 28));
+		when(customerDao.existsCustomerWithEmail(email)).thenReturn(true);
+
+		// When
+		boolean actual = underTest.existsCustomerWithEmail(email);
+
+		// Then
+		assertThat(actual).isTrue();
+		verify(customerDao).existsCustomerWithEmail(email);
+	}
+
+	@Test
+	void insertedEmailIsRemembered() {
+		// Given
+		givenTableContains();
+		Customer customer = new Customer("Gop", "gop@gmail.com", 28);
+		when(customerDao.insertCustomerIfEmailAvailable(customer)).thenReturn(Optional.of(1));
+		when(customerDao.existsCustomerWithEmail(customer.getEmail())).thenReturn(true);
+
+		// When
+		underTest.insertCustomerIfEmailAvailable(customer);
+
+		// Then
+		assertThat(underTest.existsCustomerWithEmail(customer.getEmail())).isTrue();
+	}
+
+	@Test
+	void insertCustomersIfEmailsAvailableRemembersEmails() {
+		// Given
+		givenTableContains();
+		List<Customer> customers = List.of(new Customer("Gop", "gop@gmail.com", 28));
+		when(customerDao.insertCustomersIfEmailsAvailable(customers)).thenReturn(Set.of("gop@gmail.com"));
+		when(customerDao.existsCustomerWithEmail("gop@gmail.com")).thenReturn(true);
+
+		// When
+		underTest.insertCustomersIfEmailsAvailable(customers);
+
+		// Then
+		assertThat(underTest.existsCustomerWithEmail("gop@gmail.com")).isTrue();
+	}
+
+	@Test
+	void selectExistingEmailsSkipsDaoWhenNoCandidates() {
+		// Given
+		givenTableContains(new Customer(1, "Jip", "jip@gmail.com", 28));
+
+		// When
+		Set<String> actual = underTest.selectExistingEmails(List.of("gop@gmail.com", "dal@gmail.com"));
+
+		// Then
+		assertThat(actual).isEmpty();
+		verify(customerDao, never()).selectExistingEmails(any());
+	}
+
+	@Test
+	void selectExistingEmailsOnlyQueriesPossibleMatches() {
+		// Given
+		givenTableContains(new Customer(1, "Jip", "jip@gmail.com", 28));
+		when(customerDao.selectExistingEmails(List.of("jip@gmail.com"))).thenReturn(Set.of("jip@gmail.com"));
+
+		// When
+		Set<String> actual = underTest.selectExistingEmails(List.of("gop@gmail.com", "jip@gmail.com"));
+
+		// Then
+		assertThat(actual).containsExactly("jip@gmail.com");
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void rebuildWaitsForWritesInFlight() throws Exception {
+		// Given
+		String email = "gop@gmail.com";
+		CountDownLatch writing = new CountDownLatch(1);
+		CountDownLatch commit = new CountDownLatch(1);
+		AtomicBoolean committed = new AtomicBoolean();
+		when(customerDao.insertCustomerIfEmailAvailable(any())).thenAnswer(invocation -> {
+			writing.countDown();
+			commit.await(5, TimeUnit.SECONDS);
+			committed.set(true);
+			return Optional.of(1);
+		});
+		doAnswer(invocation -> {
+			Consumer<Customer> action = invocation.getArgument(0);
+			if (committed.get()) {
+				action.accept(new Customer(1, "Gop", email, 28));
+			}
+			return null;
+		}).when(customerDao).forEachCustomer(any(Consumer.class));
+		when(customerDao.existsCustomerWithEmail(email)).thenReturn(true);
+
+		Thread writer = new Thread(() -> underTest.insertCustomerIfEmailAvailable(new Customer("Gop", email, 28)));
+		writer.start();
+		writing.await(5, TimeUnit.SECONDS);
+
+		// When
+		// The write added its email before any filter existed and commits after rebuild starts.
+		Thread rebuilder = new Thread(underTest::rebuild);
+		rebuilder.start();
+		awaitBlockedOrDone(rebuilder);
+		commit.countDown();
+		writer.join();
+		rebuilder.join();
+
+		// Then
+		assertThat(underTest.isBuilt()).isTrue();
+		assertThat(underTest.existsCustomerWithEmail(email)).isTrue();
+	}
+
+	private static void awaitBlockedOrDone(Thread thread) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (thread.getState() != Thread.State.WAITING && thread.getState() != Thread.State.TERMINATED) {
+			if (System.nanoTime() > deadline) {
+				throw new AssertionError("Rebuild neither blocked nor finished");
+			}
+			Thread.sleep(1);
+		}
+	}
+}
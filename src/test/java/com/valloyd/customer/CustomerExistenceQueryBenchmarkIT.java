@@ -0,0 +1,99 @@
+package com.valloyd.customer;
+
+import com.valloyd.AbstractTestcontainers;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.IntConsumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compares the latency of the old {@code count(id)} existence checks with the
+ * {@code EXISTS} queries used by {@link CustomerJdbcDas}. Seeding is slow, so the
+ * benchmark only runs when a table size is given, e.g.
+ * {@code ./mvnw verify -Dit.test=CustomerExistenceQueryBenchmarkIT -Dbenchmark.rows=10000000}.
+ */
+@EnabledIfSystemProperty(named = "benchmark.rows", matches = "\\d+")
+class CustomerExistenceQueryBenchmarkIT extends AbstractTestcontainers {
+
+	private static final int WARMUP_ITERATIONS = 2_000;
+	private static final int MEASURED_ITERATIONS = 10_000;
+
+	private static int rows;
+	private static JdbcTemplate jdbcTemplate;
+	private static CustomerJdbcDas underTest;
+
+	@BeforeAll
+	static void seed() {
+		rows = Integer.getInteger("benchmark.rows");
+		jdbcTemplate = getJdbcTemplate();
+		underTest = new CustomerJdbcDas(jdbcTemplate, new CustomerRowMapper());
+
+		jdbcTemplate.execute("TRUNCATE customer RESTART IDENTITY");
+		jdbcTemplate.update("""
+				INSERT INTO customer(name, email, age)
+				SELECT 'name-' || i, 'benchmark-' || i || '@example.com', 18 + i % 80
+				FROM generate_series(1, ?) AS i
+				""", rows);
+		jdbcTemplate.execute("VACUUM ANALYZE customer");
+	}
+
+	@Test
+	void compareExistenceCheckLatency() {
+		var countByEmail = "SELECT count(id) FROM customer WHERE email = ?";
+		var countById = "SELECT count(id) FROM customer WHERE id = ?";
+
+		long[] countEmail = measure(i -> jdbcTemplate.queryForObject(countByEmail, Integer.class, email(i)));
+		long[] existsEmail = measure(i -> underTest.existsCustomerWithEmail(email(i)));
+		long[] countId = measure(i -> jdbcTemplate.queryForObject(countById, Integer.class, i));
+		long[] existsId = measure(i -> underTest.existsCustomerWithId(i));
+
+		System.out.printf("Existence checks over %,d rows (microseconds)%n", rows);
+		report("count(id) by email", countEmail);
+		report("EXISTS by email", existsEmail);
+		report("count(id) by id", countId);
+		report("EXISTS by id", existsId);
+
+		assertThat(underTest.existsCustomerWithId(1)).isTrue();
+		assertThat(underTest.existsCustomerWithEmail(email(1))).isTrue();
+	}
+
+	private static String email(int i) {
+		return "benchmark-" + i + "@example.com";
+	}
+
+	private static long[] measure(IntConsumer query) {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+			query.accept(random.nextInt(1, rows + 1));
+		}
+
+		long[] latencies = new long[MEASURED_ITERATIONS];
+		for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+			int id = random.nextInt(1, rows + 1);
+			long start = System.nanoTime();
+			query.accept(id);
+			latencies[i] = System.nanoTime() - start;
+		}
+		Arrays.sort(latencies);
+		return latencies;
+	}
+
+	private static void report(String name, long[] sortedLatencies) {
+		System.out.printf("%-32s p50 %8.1f  p99 %8.1f  p999 %8.1f%n",
+				name,
+				percentile(sortedLatencies, 0.50),
+				percentile(sortedLatencies, 0.99),
+				percentile(sortedLatencies, 0.999));
+	}
+
+	private static double percentile(long[] sortedLatencies, double percentile) {
+		int index = (int) Math.ceil(percentile * sortedLatencies.length) - 1;
+		return sortedLatencies[Math.max(index, 0)] / 1_000.0;
+	}
+}
@@ -3,12 +3,16 @@ package com.valloyd.customer;
 import com.valloyd.AbstractTestcontainers;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 class CustomerJdbcDasTest extends AbstractTestcontainers {
 
@@ -37,6 +41,100 @@ class CustomerJdbcDasTest extends AbstractTestcontainers {
 		assertThat(customers).isNotEmpty();
 	}
 
+	@Test
+	void selectCustomersReturnsPageOrderedAfterCursor() {
+		// Given
+		for (int i = 0; i < 3; i++) {
+			underTest.insertCustomer(new Customer(
+					FAKER.name().fullName(),
+					FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID(),
+					28
+			));
+		}
+		List<Customer> firstPage = underTest.selectCustomers(0, 2);
+		int cursor = firstPage.get(firstPage.size() - 1).getId();
+
+		// When
+		List<Customer> nextPage = underTest.selectCustomers(cursor, 2);
+
+		// Then
+		assertThat(firstPage).hasSize(2);
+		assertThat(nextPage).isNotEmpty().hasSizeLessThanOrEqualTo(2);
+		assertThat(nextPage).allSatisfy(c -> assertThat(c.getId()).isGreaterThan(cursor));
+		assertThat(nextPage).extracting(Customer::getId).isSorted();
+	}
+
+	@Test
+	void selectCustomersMatchingFiltersAndPagesByAge() {
+		// Given
+		String prefix = UUID.randomUUID().toString();
+		for (int age : List.of(40, 20, 30, 20)) {
+			underTest.insertCustomer(new Customer(
+					prefix + " " + FAKER.name().lastName(),
+					FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID(),
+					age
+			));
+		}
+		CustomerQuery firstQuery = new CustomerQuery(20, 30, prefix, null, CustomerQuery.Sort.AGE, null, null, null);
+		List<Customer> firstPage = underTest.selectCustomersMatching(firstQuery, 2);
+		Customer last = firstPage.get(firstPage.size() - 1);
+
+		// When
+		List<Customer> nextPage = underTest.selectCustomersMatching(
+				new CustomerQuery(20, 30, prefix, null, CustomerQuery.Sort.AGE, last.getId(), last.getAge(), null), 2);
+
+		// Then
+		assertThat(firstPage).extracting(Customer::getAge).containsExactly(20, 20);
+		assertThat(firstPage).extracting(Customer::getId).isSorted();
+		assertThat(nextPage).extracting(Customer::getAge).containsExactly(30);
+	}
+
+	@Test
+	void selectCustomersMatchingTreatsPrefixLiterally() {
+		// Given
+		String prefix = UUID.randomUUID().toString();
+		underTest.insertCustomer(new Customer(prefix + "_%", FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID(), 28));
+		underTest.insertCustomer(new Customer(prefix + "ab", FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID(), 28));
+
+		// When
+		List<Customer> actual = underTest.selectCustomersMatching(
+				new CustomerQuery(null, null, prefix + "_%", null, CustomerQuery.Sort.NAME, null, null, null), 10);
+
+		// Then
+		assertThat(actual).extracting(Customer::getName).containsExactly(prefix + "_%");
+	}
+
+	@Test
+	void selectCustomersSimilarToRanksCloserMatchesFirst() {
+		// Given
+		String token = UUID.randomUUID().toString().replace("-", "");
+		String fragment = token.substring(0, 12);
+		underTest.insertCustomer(new Customer(token, FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID(), 28));
+		underTest.insertCustomer(new Customer(fragment, FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID(), 28));
+
+		// When
+		List<Customer> actual = underTest.selectCustomersSimilarTo(fragment, 10);
+
+		// Then
+		assertThat(actual).extracting(Customer::getName).containsExactly(fragment, token);
+		assertThat(underTest.selectCustomersSimilarTo(fragment, 1)).extracting(Customer::getName).containsExactly(fragment);
+	}
+
+	@Test
+	void forEachCustomerVisitsEveryRow() {
+		// Given
+		String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+		underTest.insertCustomer(new Customer(FAKER.name().fullName(), email, 28));
+		List<Customer> visited = new ArrayList<>();
+
+		// When
+		underTest.forEachCustomer(visited::add);
+
+		// Then
+		assertThat(visited).hasSameSizeAs(underTest.selectAllCustomers());
+		assertThat(visited).extracting(Customer::getEmail).contains(email);
+	}
+
 	@Test
 	void selectCustomerById() {
 		// Given
@@ -67,6 +165,23 @@ class CustomerJdbcDasTest extends AbstractTestcontainers {
 		});
 	}
 
+	@Test
+	void selectCustomersByIdsSkipsUnknownIds() {
+		// Given
+		String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+		int id = underTest.insertCustomerIfEmailAvailable(new Customer(FAKER.name().fullName(), email, 28)).orElseThrow();
+
+		// When
+		List<Customer> actual = underTest.selectCustomersByIds(List.of(-1, id));
+
+		// Then
+		assertThat(actual).singleElement().satisfies(c -> {
+			assertThat(c.getId()).isEqualTo(id);
+			assertThat(c.getEmail()).isEqualTo(email);
+		});
+		assertThat(underTest.selectCustomersByIds(List.of())).isEmpty();
+	}
+
 	@Test
 	void willReturnEmptyWhenSelectCustomerById() {
 		// Given
@@ -79,6 +194,80 @@ class CustomerJdbcDasTest extends AbstractTestcontainers {
 		assertThat(actual).isEmpty();
 	}
 
+	@Test
+	void insertCustomerIfEmailAvailableReturnsGeneratedId() {
+		// Given
+		String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+		Customer customer = new Customer(FAKER.name().fullName(), email, 28);
+
+		// When
+		Optional<Integer> actual = underTest.insertCustomerIfEmailAvailable(customer);
+
+		// Then
+		assertThat(actual).isPresent();
+		assertThat(underTest.selectCustomerById(actual.get())).hasValueSatisfying(c -> {
+			assertThat(c.getName()).isEqualTo(customer.getName());
+			assertThat(c.getEmail()).isEqualTo(email);
+			assertThat(c.getAge()).isEqualTo(customer.getAge());
+		});
+	}
+
+	@Test
+	void insertCustomerIfEmailAvailableReturnsEmptyWhenEmailTaken() {
+		// Given
+		String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+		underTest.insertCustomer(new Customer(FAKER.name().fullName(), email, 28));
+		int customersBefore = underTest.selectAllCustomers().size();
+
+		// When
+		Optional<Integer> actual = underTest.insertCustomerIfEmailAvailable(
+				new Customer(FAKER.name().fullName(), email, 40)
+		);
+
+		// Then
+		assertThat(actual).isEmpty();
+		assertThat(underTest.selectAllCustomers()).hasSize(customersBefore);
+	}
+
+	@Test
+	void insertCustomersIfEmailsAvailableSkipsTakenEmails() {
+		// Given
+		String taken = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+		String fresh = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+		underTest.insertCustomer(new Customer(FAKER.name().fullName(), taken, 28));
+
+		// When
+		Set<String> actual = underTest.insertCustomersIfEmailsAvailable(List.of(
+				new Customer(FAKER.name().fullName(), taken, 40),
+				new Customer("Fresh", fresh, 33)
+		));
+
+		// Then
+		assertThat(actual).containsExactly(fresh);
+		assertThat(underTest.selectExistingEmails(List.of(fresh))).containsExactly(fresh);
+		assertThat(underTest.selectCustomers(0, Integer.MAX_VALUE))
+				.filteredOn(c -> c.getEmail().equals(fresh))
+				.singleElement()
+				.satisfies(c -> {
+					assertThat(c.getName()).isEqualTo("Fresh");
+					assertThat(c.getAge()).isEqualTo(33);
+				});
+	}
+
+	@Test
+	void selectExistingEmails() {
+		// Given
+		String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+		underTest.insertCustomer(new Customer(FAKER.name().fullName(), email, 28));
+		String unknownEmail = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+
+		// When
+		Set<String> actual = underTest.selectExistingEmails(List.of(email, unknownEmail));
+
+		// Then
+		assertThat(actual).containsExactly(email);
+	}
+
 	@Test
 	void existsCustomerWithEmail() {
 		// Given
@@ -352,4 +541,126 @@ class CustomerJdbcDasTest extends AbstractTestcontainers {
 			assertThat(c.getAge()).isEqualTo(customer.getAge());
 		});
 	}
-}
\ No newline at end of file
+
+	@Test
+	void updateCustomerIfChangedReturnsUpdatedRowWithNextVersion() {
+		// Given
+		String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+		Customer customer = new Customer(
+				FAKER.name().fullName(),
+				email,
+				28
+		);
+		underTest.insertCustomer(customer);
+
+		Customer inserted = underTest.selectAllCustomers()
+				.stream()
+				.filter(c -> c.getEmail().equals(email))
+				.findFirst()
+				.orElseThrow();
+
+		// When
+		Customer update = new Customer();
+		update.setId(inserted.getId());
+		update.setName("foo");
+		update.setAge(inserted.getAge());
+
+		Optional<Customer> actual = underTest.updateCustomerIfChanged(update, inserted.getVersion());
+
+		// Then
+		assertThat(actual).isPresent().hasValueSatisfying(c -> {
+			assertThat(c.getId()).isEqualTo(inserted.getId());
+			assertThat(c.getName()).isEqualTo("foo");
+			assertThat(c.getEmail()).isEqualTo(email);
+			assertThat(c.getAge()).isEqualTo(inserted.getAge());
+			assertThat(c.getVersion()).isEqualTo(inserted.getVersion() + 1);
+		});
+		assertThat(underTest.selectCustomerById(inserted.getId())).hasValue(actual.get());
+	}
+
+	@Test
+	void updateCustomerIfChangedReturnsEmptyWhenNothingChanges() {
+		// Given
+		String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+		Customer customer = new Customer(
+				FAKER.name().fullName(),
+				email,
+				28
+		);
+		underTest.insertCustomer(customer);
+
+		Customer inserted = underTest.selectAllCustomers()
+				.stream()
+				.filter(c -> c.getEmail().equals(email))
+				.findFirst()
+				.orElseThrow();
+
+		// When
+		Customer update = new Customer();
+		update.setId(inserted.getId());
+		update.setEmail(email);
+		update.setAge(inserted.getAge());
+
+		Optional<Customer> actual = underTest.updateCustomerIfChanged(update, null);
+
+		// Then
+		assertThat(actual).isEmpty();
+		assertThat(underTest.selectCustomerById(inserted.getId()))
+				.hasValueSatisfying(c -> assertThat(c.getVersion()).isEqualTo(inserted.getVersion()));
+	}
+
+	@Test
+	void updateCustomerIfChangedReturnsEmptyWhenVersionIsStale() {
+		// Given
+		String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+		Customer customer = new Customer(
+				FAKER.name().fullName(),
+				email,
+				28
+		);
+		underTest.insertCustomer(customer);
+
+		Customer inserted = underTest.selectAllCustomers()
+				.stream()
+				.filter(c -> c.getEmail().equals(email))
+				.findFirst()
+				.orElseThrow();
+
+		// When
+		Customer update = new Customer();
+		update.setId(inserted.getId());
+		update.setName("foo");
+
+		Optional<Customer> actual = underTest.updateCustomerIfChanged(update, inserted.getVersion() + 1);
+
+		// Then
+		assertThat(actual).isEmpty();
+		assertThat(underTest.selectCustomerById(inserted.getId())).hasValue(inserted);
+	}
+
+	@Test
+	void updateCustomerIfChangedThrowsWhenEmailTaken() {
+		// Given
+		String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+		String takenEmail = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+		underTest.insertCustomer(new Customer(FAKER.name().fullName(), email, 28));
+		underTest.insertCustomer(new Customer(FAKER.name().fullName(), takenEmail, 28));
+
+		int id = underTest.selectAllCustomers()
+				.stream()
+				.filter(c -> c.getEmail().equals(email))
+				.map(Customer::getId)
+				.findFirst()
+				.orElseThrow();
+
+		// When
+		Customer update = new Customer();
+		update.setId(id);
+		update.setEmail(takenEmail);
+
+		// Then
+		assertThatThrownBy(() -> underTest.updateCustomerIfChanged(update, null))
+				.isInstanceOf(DuplicateKeyException.class)
+				.hasMessageContaining(CustomerService.EMAIL_UNIQUE_CONSTRAINT);
+	}
+}
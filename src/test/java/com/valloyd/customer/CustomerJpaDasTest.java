@@ -5,10 +5,21 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.PageRequest;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.stream.IntStream;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 class CustomerJpaDasTest {
 
@@ -37,6 +48,40 @@ class CustomerJpaDasTest {
 		verify(customerRepository).findAll();
 	}
 
+	@Test
+	void selectCustomers() {
+		// Given
+		int afterId = 10;
+		int limit = 5;
+
+		// When
+		underTest.selectCustomers(afterId, limit);
+
+		// Then
+		verify(customerRepository).findByIdGreaterThanOrderByIdAsc(afterId, PageRequest.of(0, limit));
+	}
+
+	@Test
+	void forEachCustomerPagesByKeysetUntilShortPage() {
+		// Given
+		List<Customer> firstPage = IntStream.rangeClosed(1, CustomerJpaDas.EXPORT_PAGE_SIZE)
+				.mapToObj(id -> new Customer(id, "name", "email" + id, 28))
+				.toList();
+		List<Customer> lastPage = List.of(new Customer(CustomerJpaDas.EXPORT_PAGE_SIZE + 1, "name", "last", 28));
+		when(customerRepository.findByIdGreaterThanOrderByIdAsc(0, PageRequest.of(0, CustomerJpaDas.EXPORT_PAGE_SIZE)))
+				.thenReturn(firstPage);
+		when(customerRepository.findByIdGreaterThanOrderByIdAsc(CustomerJpaDas.EXPORT_PAGE_SIZE, PageRequest.of(0, CustomerJpaDas.EXPORT_PAGE_SIZE)))
+				.thenReturn(lastPage);
+		List<Customer> exported = new ArrayList<>();
+
+		// When
+		underTest.forEachCustomer(exported::add);
+
+		// Then
+		assertThat(exported).hasSize(CustomerJpaDas.EXPORT_PAGE_SIZE + 1);
+		verify(customerRepository, times(2)).findByIdGreaterThanOrderByIdAsc(any(), any());
+	}
+
 	@Test
 	void selectCustomerById() {
 		// Given
@@ -61,6 +106,80 @@ class CustomerJpaDasTest {
 		verify(customerRepository).save(customer);
 	}
 
+	@Test
+	void selectCustomersByIds() {
+		// Given
+		List<Integer> ids = List.of(1, 2);
+
+		// When
+		underTest.selectCustomersByIds(ids);
+
+		// Then
+		verify(customerRepository).findAllById(ids);
+	}
+
+	@Test
+	void selectCustomersMatching() {
+		// Given
+		CustomerQuery query = new CustomerQuery(18, 30, "Ji", null, CustomerQuery.Sort.AGE, null, null, null);
+
+		// When
+		underTest.selectCustomersMatching(query, 10);
+
+		// Then
+		verify(customerRepository).findMatching(query, 10);
+	}
+
+	@Test
+	void selectCustomersSimilarTo() {
+		// When
+		underTest.selectCustomersSimilarTo("anna", 10);
+
+		// Then
+		verify(customerRepository).findSimilarTo("anna", 10);
+	}
+
+	@Test
+	void insertCustomerIfEmailAvailable() {
+		// Given
+		Customer customer = new Customer("Gop", "gop@gmail.com", 28);
+
+		// When
+		underTest.insertCustomerIfEmailAvailable(customer);
+
+		// Then
+		verify(customerRepository).insertIfEmailAvailable(customer.getName(), customer.getEmail(), customer.getAge());
+	}
+
+	@Test
+	void insertCustomersIfEmailsAvailableReturnsInsertedEmails() {
+		// Given
+		Customer taken = new Customer("Gop", "gop@gmail.com", 28);
+		Customer fresh = new Customer("Jip", "jip@gmail.com", 30);
+		when(customerRepository.insertIfEmailAvailable(taken.getName(), taken.getEmail(), taken.getAge()))
+				.thenReturn(Optional.empty());
+		when(customerRepository.insertIfEmailAvailable(fresh.getName(), fresh.getEmail(), fresh.getAge()))
+				.thenReturn(Optional.of(2));
+
+		// When
+		Set<String> actual = underTest.insertCustomersIfEmailsAvailable(List.of(taken, fresh));
+
+		// Then
+		assertThat(actual).containsExactly(fresh.getEmail());
+	}
+
+	@Test
+	void selectExistingEmails() {
+		// Given
+		List<String> emails = List.of(UUID.randomUUID().toString(), UUID.randomUUID().toString());
+
+		// When
+		underTest.selectExistingEmails(emails);
+
+		// Then
+		verify(customerRepository).findEmailsIn(emails);
+	}
+
 	@Test
 	void existsCustomerWithEmail() {
 		// Given
@@ -108,4 +227,35 @@ class CustomerJpaDasTest {
 		// Then
 		verify(customerRepository).save(customer);
 	}
-}
\ No newline at end of file
+
+	@Test
+	void updateCustomerIfChanged() {
+		// Given
+		Customer customer = new Customer(1, "Dil", "dil@gmail.com", 28, 2);
+		Customer update = new Customer(1, "Dal", null, null);
+		when(customerRepository.findById(1)).thenReturn(Optional.of(customer));
+		when(customerRepository.saveAndFlush(customer)).thenReturn(customer);
+
+		// When
+		Optional<Customer> actual = underTest.updateCustomerIfChanged(update, 2);
+
+		// Then
+		verify(customerRepository).saveAndFlush(customer);
+		assertThat(actual).hasValueSatisfying(c -> assertThat(c.getName()).isEqualTo("Dal"));
+	}
+
+	@Test
+	void updateCustomerIfChangedSkipsSaveWhenVersionIsStale() {
+		// Given
+		Customer customer = new Customer(1, "Dil", "dil@gmail.com", 28, 3);
+		Customer update = new Customer(1, "Dal", null, null);
+		when(customerRepository.findById(1)).thenReturn(Optional.of(customer));
+
+		// When
+		Optional<Customer> actual = underTest.updateCustomerIfChanged(update, 2);
+
+		// Then
+		assertThat(actual).isEmpty();
+		verify(customerRepository, never()).saveAndFlush(any());
+	}
+}
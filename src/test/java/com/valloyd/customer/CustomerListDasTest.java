@@ -0,0 +1,185 @@
+package com.valloyd.customer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CustomerListDasTest {
+
+	private CustomerListDas underTest;
+
+	@BeforeEach
+	void setUp() {
+		underTest = new CustomerListDas();
+	}
+
+	@Test
+	void selectCustomersPagesInIdOrder() {
+		// Given
+		IntStream.range(0, 5).forEach(i ->
+				underTest.insertCustomerIfEmailAvailable(new Customer("Name" + i, "name" + i + "@gmail.com", 20 + i)));
+
+		// When
+		List<Customer> page = underTest.selectCustomers(2, 3);
+
+		// Then
+		assertThat(page).extracting(Customer::getId).containsExactly(3, 4, 5);
+	}
+
+	@Test
+	void selectCustomersMatchingSortsByNameAfterCursor() {
+		// Given
+		underTest.insertCustomerIfEmailAvailable(new Customer("Jip", "jip@gmail.com", 30));
+		underTest.insertCustomerIfEmailAvailable(new Customer("Jap", "jap@gmail.com", 30));
+		underTest.insertCustomerIfEmailAvailable(new Customer("Jop", "jop@gmail.com", 40));
+		CustomerQuery query = new CustomerQuery(null, 35, "J", null, CustomerQuery.Sort.NAME, 4, null, "Jap");
+
+		// When
+		List<Customer> actual = underTest.selectCustomersMatching(query, 10);
+
+		// Then
+		assertThat(actual).extracting(Customer::getName).containsExactly("Jip");
+	}
+
+	@Test
+	void selectCustomersSimilarToFollowsUpdatesAndDeletes() {
+		// Given
+		int id = underTest.insertCustomerIfEmailAvailable(new Customer("Annabel", "annabel@gmail.com", 28)).orElseThrow();
+		underTest.updateCustomer(new Customer(id, "Rosalind", "rosalind@gmail.com", 28));
+
+		// When
+		List<Customer> renamed = underTest.selectCustomersSimilarTo("rosali", 10);
+		List<Customer> previous = underTest.selectCustomersSimilarTo("annabel", 10);
+		underTest.deleteCustomerById(id);
+
+		// Then
+		assertThat(renamed).extracting(Customer::getId).containsExactly(id);
+		assertThat(previous).isEmpty();
+		assertThat(underTest.selectCustomersSimilarTo("rosali", 10)).isEmpty();
+	}
+
+	@Test
+	void insertCustomerIfEmailAvailableAssignsNextId() {
+		// When
+		Optional<Integer> id = underTest.insertCustomerIfEmailAvailable(new Customer("Jip", "jip@gmail.com", 28));
+		Optional<Integer> duplicate = underTest.insertCustomerIfEmailAvailable(new Customer("Jap", "jip@gmail.com", 30));
+
+		// Then
+		assertThat(id).hasValue(3);
+		assertThat(duplicate).isEmpty();
+		assertThat(underTest.existsCustomerWithEmail("jip@gmail.com")).isTrue();
+	}
+
+	@Test
+	void insertCustomersIfEmailsAvailableSkipsTakenAndRepeatedEmails() {
+		// When
+		Set<String> actual = underTest.insertCustomersIfEmailsAvailable(List.of(
+				new Customer("Alex", "alex@gmail.com", 28),
+				new Customer("Jip", "jip@gmail.com", 28),
+				new Customer("Jap", "jip@gmail.com", 30)
+		));
+
+		// Then
+		assertThat(actual).containsExactly("jip@gmail.com");
+		assertThat(underTest.selectCustomerById(3)).hasValueSatisfying(c -> assertThat(c.getName()).isEqualTo("Jip"));
+		assertThat(underTest.selectCustomerById(4)).isEmpty();
+	}
+
+	@Test
+	void selectCustomersByIdsReturnsCopiesOfKnownIds() {
+		// When
+		List<Customer> actual = underTest.selectCustomersByIds(List.of(2, 42, 1));
+
+		// Then
+		assertThat(actual).extracting(Customer::getId).containsExactly(2, 1);
+		actual.get(0).setName("Changed");
+		assertThat(underTest.selectCustomerById(2)).hasValueSatisfying(c -> assertThat(c.getName()).isNotEqualTo("Changed"));
+	}
+
+	@Test
+	void updateCustomerReplacesRecordAndReindexesEmail() {
+		// When
+		underTest.updateCustomer(new Customer(1, null, "alexandro@gmail.com", null));
+
+		// Then
+		assertThat(underTest.selectAllCustomers()).hasSize(2);
+		assertThat(underTest.selectCustomerById(1)).hasValueSatisfying(c -> {
+			assertThat(c.getEmail()).isEqualTo("alexandro@gmail.com");
+			assertThat(c.getVersion()).isEqualTo(1);
+		});
+		assertThat(underTest.existsCustomerWithEmail("alex@gmail.com")).isFalse();
+		assertThat(underTest.selectExistingEmails(Set.of("alex@gmail.com", "alexandro@gmail.com")))
+				.containsExactly("alexandro@gmail.com");
+	}
+
+	@Test
+	void updateCustomerIfChangedRejectsTakenEmail() {
+		// When
+		// Then
+		assertThatThrownBy(() -> underTest.updateCustomerIfChanged(new Customer(1, null, "jamila@gmail.com", null), null))
+				.isInstanceOf(DuplicateKeyException.class);
+	}
+
+	@Test
+	void returnedCustomersAreCopies() {
+		// Given
+		Customer customer = underTest.selectCustomerById(1).orElseThrow();
+
+		// When
+		customer.setName("Changed");
+
+		// Then
+		assertThat(underTest.selectCustomerById(1)).hasValueSatisfying(c -> assertThat(c.getName()).isEqualTo("Alex"));
+	}
+
+	@Test
+	void deleteCustomerByIdFreesEmail() {
+		// When
+		underTest.deleteCustomerById(1);
+
+		// Then
+		assertThat(underTest.existsCustomerWithId(1)).isFalse();
+		assertThat(underTest.existsCustomerWithEmail("alex@gmail.com")).isFalse();
+		assertThat(underTest.insertCustomerIfEmailAvailable(new Customer("Alex", "alex@gmail.com", 28))).isPresent();
+	}
+
+	@Test
+	void concurrentRegistrationsOfSameEmailInsertOnce() throws Exception {
+		// Given
+		int threads = 16;
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		List<Callable<Optional<Integer>>> registrations = new ArrayList<>();
+		for (int i = 0; i < 200; i++) {
+			registrations.add(() -> underTest.insertCustomerIfEmailAvailable(new Customer("Jip", "jip@gmail.com", 28)));
+			int n = i;
+			registrations.add(() -> underTest.insertCustomerIfEmailAvailable(new Customer("Jip", "jip" + n + "@gmail.com", 28)));
+		}
+
+		// When
+		List<Integer> ids = new ArrayList<>();
+		try {
+			for (Future<Optional<Integer>> result : executor.invokeAll(registrations)) {
+				result.get().ifPresent(ids::add);
+			}
+		} finally {
+			executor.shutdown();
+		}
+
+		// Then
+		assertThat(ids).hasSize(201).doesNotHaveDuplicates();
+		assertThat(underTest.selectAllCustomers()).hasSize(203);
+	}
+}
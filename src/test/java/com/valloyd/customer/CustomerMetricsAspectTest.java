@@ -0,0 +1,89 @@
+package com.valloyd.customer;
+
+import com.valloyd.exception.DuplicateResourceException;
+import com.valloyd.exception.RequestValidationException;
+import com.valloyd.exception.ResourceNotFoundException;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.dao.DuplicateKeyException;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CustomerMetricsAspectTest {
+
+	private SimpleMeterRegistry meterRegistry;
+	private CustomerDao customerDao;
+	private CustomerService customerService;
+
+	@BeforeEach
+	void setUp() {
+		meterRegistry = new SimpleMeterRegistry();
+		CustomerMetricsAspect aspect = new CustomerMetricsAspect(meterRegistry);
+		customerDao = proxy(new CustomerListDas(), aspect);
+		customerService = proxy(new CustomerService(customerDao), aspect);
+	}
+
+	@Test
+	void daoCallsAreTimedByDaoMethodAndOutcome() {
+		// Given
+		Customer alex = customerDao.selectCustomerById(1).orElseThrow();
+
+		// When
+		customerDao.selectCustomerById(2);
+		assertThatThrownBy(() -> customerDao.insertCustomer(new Customer("Alex", alex.getEmail(), 21)))
+				.isInstanceOf(DuplicateKeyException.class);
+
+		// Then
+		assertThat(daoTimer("selectCustomerById", "success").count()).isEqualTo(2);
+		assertThat(daoTimer("insertCustomer", "duplicate").count()).isEqualTo(1);
+	}
+
+	@Test
+	void serviceCallsAreTimedByOperationAndOutcome() {
+		// Given
+		String takenEmail = customerDao.selectCustomerById(1).orElseThrow().getEmail();
+
+		// When
+		customerService.getCustomer(1);
+		assertThatThrownBy(() -> customerService.getCustomer(-1))
+				.isInstanceOf(ResourceNotFoundException.class);
+		assertThatThrownBy(() -> customerService.addCustomer(new CustomerRegistrationRequest("Alex", takenEmail, 21)))
+				.isInstanceOf(DuplicateResourceException.class);
+		assertThatThrownBy(() -> customerService.addCustomers(List.of()))
+				.isInstanceOf(RequestValidationException.class);
+
+		// Then
+		assertThat(serviceTimer("getCustomer", "success").count()).isEqualTo(1);
+		assertThat(serviceTimer("getCustomer", "not_found").count()).isEqualTo(1);
+		assertThat(serviceTimer("addCustomer", "duplicate").count()).isEqualTo(1);
+		assertThat(serviceTimer("addCustomers", "validation_error").count()).isEqualTo(1);
+		// The service's DAO calls are timed too
+		assertThat(daoTimer("selectCustomerById", "success").count()).isEqualTo(3);
+	}
+
+	private Timer daoTimer(String method, String outcome) {
+		return meterRegistry.get(CustomerMetricsAspect.DAO_TIMER)
+				.tags("dao", "list", "method", method, "outcome", outcome)
+				.timer();
+	}
+
+	private Timer serviceTimer(String operation, String outcome) {
+		return meterRegistry.get(CustomerMetricsAspect.SERVICE_TIMER)
+				.tags("operation", operation, "outcome", outcome)
+				.timer();
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> T proxy(T target, CustomerMetricsAspect aspect) {
+		AspectJProxyFactory factory = new AspectJProxyFactory(target);
+		factory.setProxyTargetClass(true);
+		factory.addAspect(aspect);
+		return (T) factory.getProxy();
+	}
+}
@@ -0,0 +1,272 @@
+package com.valloyd.customer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.util.unit.DataSize;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CustomerOffHeapDasTest {
+
+	private CustomerOffHeapDas underTest;
+
+	@BeforeEach
+	void setUp() {
+		// Small segments and tables so tests cross segment boundaries and resize the indexes
+		underTest = new CustomerOffHeapDas(DataSize.ofBytes(256), 4);
+	}
+
+	@Test
+	void insertAndSelectCustomerByIdRoundTripsAllColumns() {
+		// Given
+		underTest.insertCustomer(new Customer(7, "Zoë Ångström", "zoe@gmail.com", 31, 4));
+
+		// When
+		Optional<Customer> actual = underTest.selectCustomerById(7);
+
+		// Then
+		assertThat(actual).hasValueSatisfying(c -> {
+			assertThat(c.getId()).isEqualTo(7);
+			assertThat(c.getName()).isEqualTo("Zoë Ångström");
+			assertThat(c.getEmail()).isEqualTo("zoe@gmail.com");
+			assertThat(c.getAge()).isEqualTo(31);
+			assertThat(c.getVersion()).isEqualTo(4);
+		});
+		assertThat(underTest.selectCustomerById(8)).isEmpty();
+	}
+
+	@Test
+	void insertCustomerIfEmailAvailableAssignsIdsAndRejectsTakenEmail() {
+		// Given
+		List<Integer> ids = IntStream.range(0, 100)
+				.mapToObj(i -> underTest.insertCustomerIfEmailAvailable(
+						new Customer("Name" + i, "name" + i + "@gmail.com", 20)).orElseThrow())
+				.toList();
+
+		// When
+		Optional<Integer> duplicate = underTest.insertCustomerIfEmailAvailable(new Customer("Other", "name42@gmail.com", 30));
+
+		// Then
+		assertThat(ids).containsExactlyElementsOf(IntStream.rangeClosed(1, 100).boxed().toList());
+		assertThat(duplicate).isEmpty();
+		assertThat(underTest.existsCustomerWithEmail("name42@gmail.com")).isTrue();
+		assertThat(underTest.existsCustomerWithEmail("name100@gmail.com")).isFalse();
+		assertThat(underTest.selectExistingEmails(Set.of("name1@gmail.com", "nobody@gmail.com")))
+				.containsExactly("name1@gmail.com");
+	}
+
+	@Test
+	void insertCustomersIfEmailsAvailableSkipsTakenEmails() {
+		// Given
+		underTest.insertCustomerIfEmailAvailable(new Customer("Alex", "alex@gmail.com", 28));
+
+		// When
+		Set<String> actual = underTest.insertCustomersIfEmailsAvailable(List.of(
+				new Customer("Other", "alex@gmail.com", 30),
+				new Customer("Jip", "jip@gmail.com", 28)
+		));
+
+		// Then
+		assertThat(actual).containsExactly("jip@gmail.com");
+		assertThat(underTest.selectCustomerById(2)).hasValueSatisfying(c -> assertThat(c.getName()).isEqualTo("Jip"));
+		assertThat(underTest.selectAllCustomers()).hasSize(2);
+	}
+
+	@Test
+	void selectCustomersByIdsSkipsUnknownIds() {
+		// Given
+		List.of(
+				new Customer(1, "A", "a@gmail.com", 20),
+				new Customer(2, "B", "b@gmail.com", 21)
+		).forEach(underTest::insertCustomer);
+
+		// When
+		List<Customer> actual = underTest.selectCustomersByIds(List.of(2, 7, 1));
+
+		// Then
+		assertThat(actual).extracting(Customer::getName).containsExactly("B", "A");
+	}
+
+	@Test
+	void selectCustomersMatchingFiltersSortsAndLimits() {
+		// Given
+		List.of(
+				new Customer(1, "A", "a@gmail.com", 30),
+				new Customer(2, "B", "b@other.com", 20),
+				new Customer(3, "C", "c@gmail.com", 20),
+				new Customer(4, "D", "d@gmail.com", 25)
+		).forEach(underTest::insertCustomer);
+		CustomerQuery query = new CustomerQuery(20, null, null, null, CustomerQuery.Sort.AGE, null, null, null);
+
+		// When
+		List<Customer> actual = underTest.selectCustomersMatching(query, 3);
+
+		// Then
+		assertThat(actual).extracting(Customer::getId).containsExactly(2, 3, 4);
+		assertThat(underTest.selectCustomersMatching(
+				new CustomerQuery(null, null, null, "b@", null, null, null, null), 3))
+				.extracting(Customer::getId).containsExactly(2);
+	}
+
+	@Test
+	void selectCustomersMatchingKeepsTheFirstMatchesAcrossPages() {
+		// Given
+		int rows = CustomerOffHeapDas.EXPORT_PAGE_SIZE * 2 + 1;
+		for (int id = 1; id <= rows; id++) {
+			underTest.insertCustomer(new Customer(id, "C" + id, id + "@gmail.com", rows + 18 - id));
+		}
+		CustomerQuery query = new CustomerQuery(null, null, null, null, CustomerQuery.Sort.AGE, null, null, null);
+
+		// When
+		List<Customer> actual = underTest.selectCustomersMatching(query, 3);
+
+		// Then
+		assertThat(actual).extracting(Customer::getId).containsExactly(rows, rows - 1, rows - 2);
+	}
+
+	@Test
+	void selectCustomersSimilarToRanksMatches() {
+		// Given
+		List.of(
+				new Customer(1, "Annabel", "a@gmail.com", 20),
+				new Customer(2, "Anna", "b@gmail.com", 21),
+				new Customer(3, "Bob", "c@gmail.com", 22)
+		).forEach(underTest::insertCustomer);
+
+		// When
+		List<Customer> actual = underTest.selectCustomersSimilarTo("anna", 10);
+
+		// Then
+		assertThat(actual).extracting(Customer::getId).containsExactly(2, 1);
+	}
+
+	@Test
+	void selectCustomersPagesInIdOrderRegardlessOfInsertOrder() {
+		// Given
+		List.of(
+				new Customer(5, "E", "e@gmail.com", 20),
+				new Customer(1, "A", "a@gmail.com", 20),
+				new Customer(3, "C", "c@gmail.com", 20),
+				new Customer(4, "D", "d@gmail.com", 20)
+		).forEach(underTest::insertCustomer);
+		underTest.deleteCustomerById(4);
+
+		// When
+		List<Customer> page = underTest.selectCustomers(1, 2);
+
+		// Then
+		assertThat(page).extracting(Customer::getId).containsExactly(3, 5);
+		assertThat(underTest.selectAllCustomers()).extracting(Customer::getId).containsExactly(1, 3, 5);
+	}
+
+	@Test
+	void updateCustomerIfChangedReindexesEmailAndBumpsVersion() {
+		// Given
+		int id = underTest.insertCustomerIfEmailAvailable(new Customer("Alex", "alex@gmail.com", 28)).orElseThrow();
+
+		// When
+		Optional<Customer> updated = underTest.updateCustomerIfChanged(new Customer(id, null, "alexandro@gmail.com", null), 0);
+		Optional<Customer> stale = underTest.updateCustomerIfChanged(new Customer(id, "Alexandro", null, null), 0);
+		Optional<Customer> unchanged = underTest.updateCustomerIfChanged(new Customer(id, "Alex", null, 28), null);
+
+		// Then
+		assertThat(updated).hasValueSatisfying(c -> {
+			assertThat(c.getEmail()).isEqualTo("alexandro@gmail.com");
+			assertThat(c.getVersion()).isEqualTo(1);
+		});
+		assertThat(stale).isEmpty();
+		assertThat(unchanged).isEmpty();
+		assertThat(underTest.existsCustomerWithEmail("alex@gmail.com")).isFalse();
+		assertThat(underTest.existsCustomerWithEmail("alexandro@gmail.com")).isTrue();
+	}
+
+	@Test
+	void updateCustomerIfChangedRejectsTakenEmail() {
+		// Given
+		underTest.insertCustomer(new Customer(1, "Alex", "alex@gmail.com", 28));
+		underTest.insertCustomer(new Customer(2, "Jamila", "jamila@gmail.com", 28));
+
+		// When
+		// Then
+		assertThatThrownBy(() -> underTest.updateCustomerIfChanged(new Customer(1, null, "jamila@gmail.com", null), null))
+				.isInstanceOf(DuplicateKeyException.class);
+	}
+
+	@Test
+	void repeatedUpdatesAndDeletesCompactSegmentsWithoutLosingRows() {
+		// Given
+		IntStream.rangeClosed(1, 20).forEach(i ->
+				underTest.insertCustomer(new Customer(i, "Name" + i, "name" + i + "@gmail.com", 20)));
+
+		// When
+		for (int round = 1; round <= 50; round++) {
+			for (int i = 1; i <= 20; i++) {
+				underTest.updateCustomer(new Customer(i, null, null, 20 + round));
+			}
+		}
+		IntStream.rangeClosed(1, 10).forEach(underTest::deleteCustomerById);
+
+		// Then
+		assertThat(underTest.selectAllCustomers())
+				.hasSize(10)
+				.allSatisfy(c -> {
+					assertThat(c.getAge()).isEqualTo(70);
+					assertThat(c.getVersion()).isEqualTo(50);
+					assertThat(c.getEmail()).isEqualTo("name" + c.getId() + "@gmail.com");
+				});
+		assertThat(underTest.existsCustomerWithEmail("name1@gmail.com")).isFalse();
+		assertThat(underTest.existsCustomerWithEmail("name11@gmail.com")).isTrue();
+	}
+
+	@Test
+	void deletedIdCanBeReused() {
+		// Given
+		underTest.insertCustomer(new Customer(1, "Alex", "alex@gmail.com", 28));
+		underTest.deleteCustomerById(1);
+
+		// When
+		underTest.insertCustomer(new Customer(1, "Alex", "alex@gmail.com", 29));
+
+		// Then
+		assertThat(underTest.selectAllCustomers()).extracting(Customer::getAge).containsExactly(29);
+	}
+
+	@Test
+	void concurrentRegistrationsOfSameEmailInsertOnce() throws Exception {
+		// Given
+		int threads = 16;
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		List<Callable<Optional<Integer>>> registrations = new ArrayList<>();
+		for (int i = 0; i < 200; i++) {
+			registrations.add(() -> underTest.insertCustomerIfEmailAvailable(new Customer("Jip", "jip@gmail.com", 28)));
+			int n = i;
+			registrations.add(() -> underTest.insertCustomerIfEmailAvailable(new Customer("Jip", "jip" + n + "@gmail.com", 28)));
+		}
+
+		// When
+		List<Integer> ids = new ArrayList<>();
+		try {
+			for (Future<Optional<Integer>> result : executor.invokeAll(registrations)) {
+				result.get().ifPresent(ids::add);
+			}
+		} finally {
+			executor.shutdown();
+		}
+
+		// Then
+		assertThat(ids).hasSize(201).doesNotHaveDuplicates();
+		assertThat(underTest.selectAllCustomers()).hasSize(201);
+	}
+}
@@ -0,0 +1,184 @@
+package com.valloyd.customer;
+
+import com.valloyd.AbstractTestcontainers;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CustomerR2dbcDasTest extends AbstractTestcontainers {
+
+	private CustomerR2dbcDas underTest;
+
+	@BeforeEach
+	void setUp() {
+		underTest = new CustomerR2dbcDas(getConnectionFactory());
+	}
+
+	@Test
+	void insertCustomerIfEmailAvailableThenSelectById() {
+		// Given
+		Customer customer = newCustomer();
+
+		// When
+		Integer id = underTest.insertCustomerIfEmailAvailable(customer).block();
+		Integer duplicate = underTest.insertCustomerIfEmailAvailable(customer).block();
+
+		// Then
+		assertThat(id).isNotNull();
+		assertThat(duplicate).isNull();
+		assertThat(underTest.selectCustomerById(id).block()).satisfies(c -> {
+			assertThat(c.getName()).isEqualTo(customer.getName());
+			assertThat(c.getEmail()).isEqualTo(customer.getEmail());
+			assertThat(c.getAge()).isEqualTo(customer.getAge());
+			assertThat(c.getVersion()).isZero();
+		});
+	}
+
+	@Test
+	void selectCustomersByIdsSkipsUnknownIds() {
+		// Given
+		Integer first = underTest.insertCustomerIfEmailAvailable(newCustomer()).block();
+		Integer second = underTest.insertCustomerIfEmailAvailable(newCustomer()).block();
+
+		// When
+		List<Customer> actual = underTest.selectCustomersByIds(List.of(second, -1, first)).collectList().block();
+
+		// Then
+		assertThat(actual).extracting(Customer::getId).containsExactlyInAnyOrder(first, second);
+	}
+
+	@Test
+	void selectCustomersMatchingPagesByName() {
+		// Given
+		String prefix = UUID.randomUUID().toString();
+		for (String name : List.of("c", "a", "b")) {
+			underTest.insertCustomerIfEmailAvailable(new Customer(
+					prefix + name,
+					FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID(),
+					28
+			)).block();
+		}
+		List<Customer> firstPage = underTest.selectCustomersMatching(
+				new CustomerQuery(null, null, prefix, null, CustomerQuery.Sort.NAME, null, null, null), 2)
+				.collectList().block();
+		Customer last = firstPage.get(firstPage.size() - 1);
+
+		// When
+		List<Customer> nextPage = underTest.selectCustomersMatching(
+				new CustomerQuery(null, null, prefix, null, CustomerQuery.Sort.NAME, last.getId(), null, last.getName()), 2)
+				.collectList().block();
+
+		// Then
+		assertThat(firstPage).extracting(Customer::getName).containsExactly(prefix + "a", prefix + "b");
+		assertThat(nextPage).extracting(Customer::getName).containsExactly(prefix + "c");
+	}
+
+	@Test
+	void selectCustomersSimilarToFindsNameFragments() {
+		// Given
+		String token = UUID.randomUUID().toString().replace("-", "");
+		Integer id = underTest.insertCustomerIfEmailAvailable(new Customer(
+				token,
+				FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID(),
+				28
+		)).block();
+
+		// When
+		List<Customer> actual = underTest.selectCustomersSimilarTo(token.substring(0, 12), 10).collectList().block();
+
+		// Then
+		assertThat(actual).extracting(Customer::getId).containsExactly(id);
+	}
+
+	@Test
+	void selectCustomersReturnsPageOrderedAfterCursor() {
+		// Given
+		Integer first = underTest.insertCustomerIfEmailAvailable(newCustomer()).block();
+		underTest.insertCustomerIfEmailAvailable(newCustomer()).block();
+		underTest.insertCustomerIfEmailAvailable(newCustomer()).block();
+
+		// When
+		List<Customer> page = underTest.selectCustomers(first, 2).collectList().block();
+
+		// Then
+		assertThat(page).hasSize(2);
+		assertThat(page.get(0).getId()).isGreaterThan(first);
+		assertThat(page.get(1).getId()).isGreaterThan(page.get(0).getId());
+	}
+
+	@Test
+	void selectAllCustomersStreamsWholeTable() {
+		// Given
+		Integer id = underTest.insertCustomerIfEmailAvailable(newCustomer()).block();
+
+		// When
+		List<Customer> customers = underTest.selectAllCustomers().collectList().block();
+
+		// Then
+		assertThat(customers).extracting(Customer::getId).contains(id).isSorted();
+	}
+
+	@Test
+	void deleteCustomerByIdReportsRowsDeleted() {
+		// Given
+		Integer id = underTest.insertCustomerIfEmailAvailable(newCustomer()).block();
+
+		// When
+		Long deleted = underTest.deleteCustomerById(id).block();
+		Long deletedAgain = underTest.deleteCustomerById(id).block();
+
+		// Then
+		assertThat(deleted).isEqualTo(1);
+		assertThat(deletedAgain).isZero();
+		assertThat(underTest.existsCustomerWithId(id).block()).isFalse();
+	}
+
+	@Test
+	void updateCustomerIfChangedUpdatesOnlyGivenFields() {
+		// Given
+		Customer customer = newCustomer();
+		Integer id = underTest.insertCustomerIfEmailAvailable(customer).block();
+
+		// When
+		Customer updated = underTest.updateCustomerIfChanged(new Customer(id, "New Name", null, null), 0).block();
+		Customer stale = underTest.updateCustomerIfChanged(new Customer(id, null, null, 99), 0).block();
+		Customer unchanged = underTest.updateCustomerIfChanged(new Customer(id, "New Name", null, null), null).block();
+
+		// Then
+		assertThat(updated).isNotNull();
+		assertThat(updated.getName()).isEqualTo("New Name");
+		assertThat(updated.getEmail()).isEqualTo(customer.getEmail());
+		assertThat(updated.getAge()).isEqualTo(customer.getAge());
+		assertThat(updated.getVersion()).isEqualTo(1);
+		assertThat(stale).isNull();
+		assertThat(unchanged).isNull();
+	}
+
+	@Test
+	void updateCustomerIfChangedFailsOnTakenEmail() {
+		// Given
+		Customer other = newCustomer();
+		underTest.insertCustomerIfEmailAvailable(other).block();
+		Integer id = underTest.insertCustomerIfEmailAvailable(newCustomer()).block();
+
+		// When
+		// Then
+		assertThatThrownBy(() -> underTest.updateCustomerIfChanged(new Customer(id, null, other.getEmail(), null), null).block())
+				.isInstanceOf(DuplicateKeyException.class)
+				.satisfies(e -> assertThat(CustomerService.isEmailTaken((DuplicateKeyException) e)).isTrue());
+	}
+
+	private static Customer newCustomer() {
+		return new Customer(
+				FAKER.name().fullName(),
+				FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID(),
+				20
+		);
+	}
+}
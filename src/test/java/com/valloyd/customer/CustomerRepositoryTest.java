@@ -7,6 +7,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 
+import java.util.List;
 import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -40,6 +41,43 @@ class CustomerRepositoryTest extends AbstractTestcontainers {
 		assertThat(actual).isTrue();
 	}
 
+	@Test
+	void findMatchingPagesByAgeWithinFilters() {
+		// Given
+		String prefix = UUID.randomUUID().toString();
+		for (int age : List.of(25, 35, 25, 45)) {
+			underTest.save(new Customer(
+					prefix + " " + FAKER.name().lastName(),
+					FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID(),
+					age
+			));
+		}
+		List<Customer> firstPage = underTest.findMatching(
+				new CustomerQuery(null, 40, prefix, null, CustomerQuery.Sort.AGE, null, null, null), 2);
+		Customer last = firstPage.get(firstPage.size() - 1);
+
+		// When
+		List<Customer> nextPage = underTest.findMatching(
+				new CustomerQuery(null, 40, prefix, null, CustomerQuery.Sort.AGE, last.getId(), last.getAge(), null), 2);
+
+		// Then
+		assertThat(firstPage).extracting(Customer::getAge).containsExactly(25, 25);
+		assertThat(nextPage).extracting(Customer::getAge).containsExactly(35);
+	}
+
+	@Test
+	void findSimilarToMatchesEmailFragments() {
+		// Given
+		String token = UUID.randomUUID().toString().replace("-", "");
+		underTest.save(new Customer(FAKER.name().fullName(), token + "@example.com", 28));
+
+		// When
+		List<Customer> actual = underTest.findSimilarTo(token.substring(4, 16), 10);
+
+		// Then
+		assertThat(actual).extracting(Customer::getEmail).containsExactly(token + "@example.com");
+	}
+
 	@Test
 	void existsCustomerByEmailFalseWhenEmailNotPresent() {
 		// Given
@@ -88,4 +126,49 @@ class CustomerRepositoryTest extends AbstractTestcontainers {
 		// Then
 		assertThat(actual).isFalse();
 	}
-}
\ No newline at end of file
+
+	@Test
+	void findEmailsIn() {
+		// Given
+		String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+		Customer customer = new Customer(
+				FAKER.name().fullName(),
+				email,
+				28
+		);
+		underTest.save(customer);
+		String unknownEmail = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+
+		// When
+		var actual = underTest.findEmailsIn(List.of(email, unknownEmail));
+
+		// Then
+		assertThat(actual).containsExactly(email);
+	}
+
+	@Test
+	void insertIfEmailAvailable() {
+		// Given
+		String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+
+		// When
+		var actual = underTest.insertIfEmailAvailable(FAKER.name().fullName(), email, 28);
+
+		// Then
+		assertThat(actual).isPresent();
+		assertThat(underTest.existsCustomerById(actual.get())).isTrue();
+	}
+
+	@Test
+	void insertIfEmailAvailableEmptyWhenEmailTaken() {
+		// Given
+		String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+		underTest.insertIfEmailAvailable(FAKER.name().fullName(), email, 28);
+
+		// When
+		var actual = underTest.insertIfEmailAvailable(FAKER.name().fullName(), email, 40);
+
+		// Then
+		assertThat(actual).isEmpty();
+	}
+}
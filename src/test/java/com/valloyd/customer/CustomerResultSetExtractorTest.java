@@ -0,0 +1,50 @@
+package com.valloyd.customer;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CustomerResultSetExtractorTest {
+
+	@Test
+	void extractDataResolvesColumnsOnceAndMapsEveryRow() throws SQLException {
+		// Given
+		CustomerResultSetExtractor underTest = new CustomerResultSetExtractor();
+
+		ResultSet resultSet = mock(ResultSet.class);
+		when(resultSet.findColumn("id")).thenReturn(1);
+		when(resultSet.findColumn("name")).thenReturn(2);
+		when(resultSet.findColumn("email")).thenReturn(3);
+		when(resultSet.findColumn("age")).thenReturn(4);
+		when(resultSet.findColumn("version")).thenReturn(5);
+		when(resultSet.next()).thenReturn(true, true, false);
+		when(resultSet.getInt(1)).thenReturn(1, 2);
+		when(resultSet.getString(2)).thenReturn("Tap", "Alex");
+		when(resultSet.getString(3)).thenReturn("tap@gmail.com", "alex@gmail.com");
+		when(resultSet.getInt(4)).thenReturn(28, 19);
+		when(resultSet.getInt(5)).thenReturn(3, 0);
+
+		// When
+		List<Customer> actual = underTest.extractData(resultSet);
+
+		// Then
+		assertThat(actual).containsExactly(
+				new Customer(1, "Tap", "tap@gmail.com", 28),
+				new Customer(2, "Alex", "alex@gmail.com", 19)
+		);
+		assertThat(actual).extracting(Customer::getVersion).containsExactly(3, 0);
+		verify(resultSet, times(5)).findColumn(anyString());
+		verify(resultSet, never()).getInt(anyString());
+		verify(resultSet, never()).getString(anyString());
+	}
+}
@@ -21,6 +21,7 @@ class CustomerRowMapperTest {
 		when(resultSet.getString("name")).thenReturn("Tap");
 		when(resultSet.getString("email")).thenReturn("tap@gmail.com");
 		when(resultSet.getInt("age")).thenReturn(28);
+		when(resultSet.getInt("version")).thenReturn(3);
 
 		// When
 		Customer actual = customerRowMapper.mapRow(resultSet, 1);
@@ -29,5 +30,6 @@ class CustomerRowMapperTest {
 		Customer expected = new Customer(1, "Tap", "tap@gmail.com", 28);
 
 		assertThat(actual).isEqualTo(expected);
+		assertThat(actual.getVersion()).isEqualTo(3);
 	}
 }
\ No newline at end of file
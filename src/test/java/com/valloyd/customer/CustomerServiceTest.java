@@ -3,14 +3,21 @@ package com.valloyd.customer;
 import com.valloyd.exception.DuplicateResourceException;
 import com.valloyd.exception.RequestValidationException;
 import com.valloyd.exception.ResourceNotFoundException;
+import com.valloyd.exception.StaleResourceException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
 
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
@@ -29,12 +36,109 @@ class CustomerServiceTest {
 	}
 
 	@Test
-	void getAllCustomers() {
+	void getCustomersUsesDefaultCursorAndPageSize() {
 		// When
-		underTest.getAllCustomers();
+		underTest.getCustomers(null, null);
 
 		// Then
-		verify(customerDao).selectAllCustomers();
+		verify(customerDao).selectCustomers(0, CustomerService.DEFAULT_PAGE_SIZE);
+	}
+
+	@Test
+	void getCustomersAfterCursor() {
+		// When
+		underTest.getCustomers(42, 10);
+
+		// Then
+		verify(customerDao).selectCustomers(42, 10);
+	}
+
+	@Test
+	void willThrowWhenGetCustomersLimitOutOfRange() {
+		// When
+		// Then
+		assertThatThrownBy(() -> underTest.getCustomers(null, CustomerService.MAX_PAGE_SIZE + 1))
+				.isInstanceOf(RequestValidationException.class)
+				.hasMessage("Limit must be between 1 and %s.".formatted(CustomerService.MAX_PAGE_SIZE));
+
+		verify(customerDao, never()).selectCustomers(any(), anyInt());
+	}
+
+	@Test
+	void searchCustomersUsesDefaultPageSize() {
+		// Given
+		CustomerQuery query = new CustomerQuery(18, 30, "Ji", null, null, null, null, null);
+
+		// When
+		underTest.searchCustomers(query, null);
+
+		// Then
+		assertThat(query.sort()).isEqualTo(CustomerQuery.Sort.ID);
+		verify(customerDao).selectCustomersMatching(query, CustomerService.DEFAULT_PAGE_SIZE);
+	}
+
+	@Test
+	void willThrowWhenSearchCustomersAgeRangeIsEmpty() {
+		// Given
+		CustomerQuery query = new CustomerQuery(30, 18, null, null, null, null, null, null);
+
+		// When
+		// Then
+		assertThatThrownBy(() -> underTest.searchCustomers(query, 10))
+				.isInstanceOf(RequestValidationException.class)
+				.hasMessage("Minimum age must not be greater than maximum age.");
+		verifyNoInteractions(customerDao);
+	}
+
+	@Test
+	void willThrowWhenSearchCursorDoesNotMatchSort() {
+		// Given
+		CustomerQuery missingAge = new CustomerQuery(null, null, null, null, CustomerQuery.Sort.AGE, 42, null, null);
+		CustomerQuery missingId = new CustomerQuery(null, null, null, null, CustomerQuery.Sort.NAME, null, null, "Jip");
+		CustomerQuery extraName = new CustomerQuery(null, null, null, null, CustomerQuery.Sort.ID, 42, null, "Jip");
+
+		// When
+		// Then
+		assertThatThrownBy(() -> underTest.searchCustomers(missingAge, 10))
+				.isInstanceOf(RequestValidationException.class);
+		assertThatThrownBy(() -> underTest.searchCustomers(missingId, 10))
+				.isInstanceOf(RequestValidationException.class);
+		assertThatThrownBy(() -> underTest.searchCustomers(extraName, 10))
+				.isInstanceOf(RequestValidationException.class);
+		verifyNoInteractions(customerDao);
+	}
+
+	@Test
+	void searchCustomersByTextStripsTextAndUsesDefaultLimit() {
+		// When
+		underTest.searchCustomersByText("  anna ", null);
+
+		// Then
+		verify(customerDao).selectCustomersSimilarTo("anna", CustomerService.DEFAULT_SEARCH_LIMIT);
+	}
+
+	@Test
+	void willThrowWhenSearchTextTooShort() {
+		// When
+		// Then
+		assertThatThrownBy(() -> underTest.searchCustomersByText(" an ", 10))
+				.isInstanceOf(RequestValidationException.class)
+				.hasMessage("Search text must have at least %s characters.".formatted(CustomerService.MIN_SEARCH_LENGTH));
+		assertThatThrownBy(() -> underTest.searchCustomersByText("anna", 0))
+				.isInstanceOf(RequestValidationException.class);
+		verifyNoInteractions(customerDao);
+	}
+
+	@Test
+	void exportCustomers() {
+		// Given
+		Consumer<Customer> action = customer -> { };
+
+		// When
+		underTest.exportCustomers(action);
+
+		// Then
+		verify(customerDao).forEachCustomer(action);
 	}
 
 	@Test
@@ -64,11 +168,40 @@ class CustomerServiceTest {
 				.hasMessage("Customer with id %s not found.".formatted(id));
 	}
 
+	@Test
+	void getCustomersByIdsKeepsRequestOrderAndReportsMissingIds() {
+		// Given
+		Customer jip = new Customer(1, "Jip", "jip@gmail.com", 28);
+		Customer jap = new Customer(3, "Jap", "jap@gmail.com", 30);
+		when(customerDao.selectCustomersByIds(Set.of(3, 2, 1))).thenReturn(List.of(jip, jap));
+
+		// When
+		CustomerLookupResult actual = underTest.getCustomersByIds(List.of(3, 2, 1, 3));
+
+		// Then
+		assertThat(actual.customers()).containsExactly(jap, jip);
+		assertThat(actual.missingIds()).containsExactly(2);
+	}
+
+	@Test
+	void willThrowWhenGettingTooManyCustomersByIds() {
+		// Given
+		List<Integer> ids = IntStream.rangeClosed(0, CustomerService.MAX_PAGE_SIZE).boxed().toList();
+
+		// When
+		// Then
+		assertThatThrownBy(() -> underTest.getCustomersByIds(ids))
+				.isInstanceOf(RequestValidationException.class);
+		assertThatThrownBy(() -> underTest.getCustomersByIds(List.of()))
+				.isInstanceOf(RequestValidationException.class);
+		verifyNoInteractions(customerDao);
+	}
+
 	@Test
 	void addCustomer() {
 		// Given
 		String email = "gop@gmail.com";
-		when(customerDao.existsCustomerWithEmail(email)).thenReturn(false);
+		when(customerDao.insertCustomerIfEmailAvailable(any())).thenReturn(Optional.of(1));
 
 		CustomerRegistrationRequest request = new CustomerRegistrationRequest("Gop", email, 28);
 
@@ -77,7 +210,7 @@ class CustomerServiceTest {
 
 		// Then
 		ArgumentCaptor<Customer> customerArgumentCaptor = ArgumentCaptor.forClass(Customer.class);
-		verify(customerDao).insertCustomer(customerArgumentCaptor.capture());
+		verify(customerDao).insertCustomerIfEmailAvailable(customerArgumentCaptor.capture());
 
 		Customer capturedCustomer = customerArgumentCaptor.getValue();
 
@@ -85,13 +218,33 @@ class CustomerServiceTest {
 		assertThat(capturedCustomer.getName()).isEqualTo(request.name());
 		assertThat(capturedCustomer.getEmail()).isEqualTo(request.email());
 		assertThat(capturedCustomer.getAge()).isEqualTo(request.age());
+		verify(customerDao, never()).existsCustomerWithEmail(any());
+	}
+
+	@Test
+	void addCustomerGoesThroughWriteBehindQueueWhenEnabled() {
+		// Given
+		CustomerWriteBehindQueue writeBehindQueue = mock(CustomerWriteBehindQueue.class);
+		when(writeBehindQueue.insert(any())).thenReturn(true, false);
+		underTest = new CustomerService(customerDao, Optional.of(writeBehindQueue));
+		CustomerRegistrationRequest request = new CustomerRegistrationRequest("Gop", "gop@gmail.com", 28);
+
+		// When
+		underTest.addCustomer(request);
+
+		// Then
+		assertThatThrownBy(() -> underTest.addCustomer(request))
+				.isInstanceOf(DuplicateResourceException.class)
+				.hasMessage("Email taken");
+		verify(writeBehindQueue, times(2)).insert(argThat(c -> c.getEmail().equals(request.email())));
+		verifyNoInteractions(customerDao);
 	}
 
 	@Test
 	void willThrowWhenEmailExistsWhileAddingCustomer() {
 		// Given
 		String email = "gop@gmail.com";
-		when(customerDao.existsCustomerWithEmail(email)).thenReturn(true);
+		when(customerDao.insertCustomerIfEmailAvailable(any())).thenReturn(Optional.empty());
 
 		CustomerRegistrationRequest request = new CustomerRegistrationRequest("Gop", email, 28);
 
@@ -104,6 +257,100 @@ class CustomerServiceTest {
 		verify(customerDao, never()).insertCustomer(any());
 	}
 
+	@Test
+	void addCustomersReportsResultPerItem() {
+		// Given
+		var fresh = new CustomerRegistrationRequest("Gop", "gop@gmail.com", 28);
+		var taken = new CustomerRegistrationRequest("Jip", "jip@gmail.com", 30);
+		var repeated = new CustomerRegistrationRequest("Gap", "gop@gmail.com", 31);
+		when(customerDao.selectExistingEmails(List.of(fresh.email(), taken.email(), repeated.email())))
+				.thenReturn(Set.of(taken.email()));
+		when(customerDao.insertCustomersIfEmailsAvailable(anyList())).thenReturn(Set.of(fresh.email()));
+
+		// When
+		List<CustomerRegistrationResult> actual = underTest.addCustomers(List.of(fresh, taken, repeated));
+
+		// Then
+		assertThat(actual).containsExactly(
+				new CustomerRegistrationResult(fresh.email(), CustomerRegistrationResult.Status.REGISTERED),
+				new CustomerRegistrationResult(taken.email(), CustomerRegistrationResult.Status.EMAIL_TAKEN),
+				new CustomerRegistrationResult(repeated.email(), CustomerRegistrationResult.Status.EMAIL_TAKEN)
+		);
+
+		@SuppressWarnings("unchecked")
+		ArgumentCaptor<List<Customer>> customersArgumentCaptor = ArgumentCaptor.forClass(List.class);
+		verify(customerDao).insertCustomersIfEmailsAvailable(customersArgumentCaptor.capture());
+
+		assertThat(customersArgumentCaptor.getValue())
+				.singleElement()
+				.satisfies(c -> {
+					assertThat(c.getId()).isNull();
+					assertThat(c.getName()).isEqualTo(fresh.name());
+					assertThat(c.getEmail()).isEqualTo(fresh.email());
+					assertThat(c.getAge()).isEqualTo(fresh.age());
+				});
+	}
+
+	@Test
+	void addCustomersReportsEmailTakenSinceCheckAsTaken() {
+		// Given
+		var fresh = new CustomerRegistrationRequest("Gop", "gop@gmail.com", 28);
+		var raced = new CustomerRegistrationRequest("Jip", "jip@gmail.com", 30);
+		when(customerDao.selectExistingEmails(List.of(fresh.email(), raced.email()))).thenReturn(Set.of());
+		when(customerDao.insertCustomersIfEmailsAvailable(anyList())).thenReturn(Set.of(fresh.email()));
+
+		// When
+		List<CustomerRegistrationResult> actual = underTest.addCustomers(List.of(fresh, raced));
+
+		// Then
+		assertThat(actual).containsExactly(
+				new CustomerRegistrationResult(fresh.email(), CustomerRegistrationResult.Status.REGISTERED),
+				new CustomerRegistrationResult(raced.email(), CustomerRegistrationResult.Status.EMAIL_TAKEN)
+		);
+	}
+
+	@Test
+	void addCustomersGoesThroughEmailFilterWhenEnabled() {
+		// Given
+		CustomerEmailFilteringDas emailFilter = mock(CustomerEmailFilteringDas.class);
+		underTest = new CustomerService(customerDao, Optional.empty(), Optional.of(emailFilter));
+		var fresh = new CustomerRegistrationRequest("Gop", "gop@gmail.com", 28);
+		when(emailFilter.selectExistingEmails(List.of(fresh.email()))).thenReturn(Set.of());
+		when(emailFilter.insertCustomersIfEmailsAvailable(anyList())).thenReturn(Set.of(fresh.email()));
+
+		// When
+		List<CustomerRegistrationResult> actual = underTest.addCustomers(List.of(fresh));
+
+		// Then
+		assertThat(actual).containsExactly(
+				new CustomerRegistrationResult(fresh.email(), CustomerRegistrationResult.Status.REGISTERED));
+		verifyNoInteractions(customerDao);
+	}
+
+	@Test
+	void willNotInsertWhenEveryEmailInBatchIsTaken() {
+		// Given
+		var taken = new CustomerRegistrationRequest("Jip", "jip@gmail.com", 30);
+		when(customerDao.selectExistingEmails(List.of(taken.email()))).thenReturn(Set.of(taken.email()));
+
+		// When
+		underTest.addCustomers(List.of(taken));
+
+		// Then
+		verify(customerDao, never()).insertCustomersIfEmailsAvailable(any());
+	}
+
+	@Test
+	void willThrowWhenBatchIsEmpty() {
+		// When
+		// Then
+		assertThatThrownBy(() -> underTest.addCustomers(List.of()))
+				.isInstanceOf(RequestValidationException.class)
+				.hasMessage("Batch size must be between 1 and %s.".formatted(CustomerService.MAX_BATCH_SIZE));
+
+		verify(customerDao, never()).insertCustomersIfEmailsAvailable(any());
+	}
+
 	@Test
 	void deleteCustomerById() {
 		// Given
@@ -136,119 +383,131 @@ class CustomerServiceTest {
 	void canUpdateAllCustomerProperties() {
 		// Given
 		var id = 1;
-		Customer customer = new Customer(id, "Dil", "dil@gmail.com", 28);
-		when(customerDao.selectCustomerById(id)).thenReturn(Optional.of(customer));
-
 		String newEmail = "dal@gmail.com";
 		CustomerUpdateRequest updateRequest = new CustomerUpdateRequest("Dal", newEmail, 29);
 
-		when(customerDao.existsCustomerWithEmail(newEmail)).thenReturn(false);
+		when(customerDao.updateCustomerIfChanged(any(), isNull()))
+				.thenReturn(Optional.of(new Customer(id, "Dal", newEmail, 29, 1)));
 
 		// When
 		underTest.updateCustomer(id, updateRequest);
 
 		// Then
 		ArgumentCaptor<Customer> customerArgumentCaptor = ArgumentCaptor.forClass(Customer.class);
-		verify(customerDao).updateCustomer(customerArgumentCaptor.capture());
+		verify(customerDao).updateCustomerIfChanged(customerArgumentCaptor.capture(), isNull());
 
 		Customer capturedCustomer = customerArgumentCaptor.getValue();
 
+		assertThat(capturedCustomer.getId()).isEqualTo(id);
 		assertThat(capturedCustomer.getName()).isEqualTo(updateRequest.name());
 		assertThat(capturedCustomer.getEmail()).isEqualTo(updateRequest.email());
 		assertThat(capturedCustomer.getAge()).isEqualTo(updateRequest.age());
+		verify(customerDao, never()).selectCustomerById(any());
+		verify(customerDao, never()).existsCustomerWithEmail(any());
 	}
 
 	@Test
 	void canUpdateOnlyCustomerName() {
 		// Given
 		var id = 1;
-		Customer customer = new Customer(id, "Dil", "dil@gmail.com", 28);
-		when(customerDao.selectCustomerById(id)).thenReturn(Optional.of(customer));
-
 		CustomerUpdateRequest updateRequest = new CustomerUpdateRequest("Dal", null, null);
 
+		when(customerDao.updateCustomerIfChanged(any(), isNull()))
+				.thenReturn(Optional.of(new Customer(id, "Dal", "dil@gmail.com", 28, 1)));
+
 		// When
 		underTest.updateCustomer(id, updateRequest);
 
 		// Then
 		ArgumentCaptor<Customer> customerArgumentCaptor = ArgumentCaptor.forClass(Customer.class);
-		verify(customerDao).updateCustomer(customerArgumentCaptor.capture());
+		verify(customerDao).updateCustomerIfChanged(customerArgumentCaptor.capture(), isNull());
 
 		Customer capturedCustomer = customerArgumentCaptor.getValue();
 
 		assertThat(capturedCustomer.getName()).isEqualTo(updateRequest.name());
-		assertThat(capturedCustomer.getEmail()).isEqualTo(customer.getEmail());
-		assertThat(capturedCustomer.getAge()).isEqualTo(customer.getAge());
+		assertThat(capturedCustomer.getEmail()).isNull();
+		assertThat(capturedCustomer.getAge()).isNull();
 	}
 
 	@Test
 	void canUpdateOnlyCustomerEmail() {
 		// Given
 		var id = 1;
-		Customer customer = new Customer(id, "Dil", "dil@gmail.com", 28);
-		when(customerDao.selectCustomerById(id)).thenReturn(Optional.of(customer));
-
 		String newEmail = "dal@gmail.com";
 		CustomerUpdateRequest updateRequest = new CustomerUpdateRequest(null, newEmail, null);
 
-		when(customerDao.existsCustomerWithEmail(newEmail)).thenReturn(false);
+		when(customerDao.updateCustomerIfChanged(any(), isNull()))
+				.thenReturn(Optional.of(new Customer(id, "Dil", newEmail, 28, 1)));
 
 		// When
 		underTest.updateCustomer(id, updateRequest);
 
 		// Then
 		ArgumentCaptor<Customer> customerArgumentCaptor = ArgumentCaptor.forClass(Customer.class);
-		verify(customerDao).updateCustomer(customerArgumentCaptor.capture());
+		verify(customerDao).updateCustomerIfChanged(customerArgumentCaptor.capture(), isNull());
 
 		Customer capturedCustomer = customerArgumentCaptor.getValue();
 
-		assertThat(capturedCustomer.getName()).isEqualTo(customer.getName());
+		assertThat(capturedCustomer.getName()).isNull();
 		assertThat(capturedCustomer.getEmail()).isEqualTo(updateRequest.email());
-		assertThat(capturedCustomer.getAge()).isEqualTo(customer.getAge());
+		assertThat(capturedCustomer.getAge()).isNull();
 	}
 
 	@Test
 	void canUpdateOnlyCustomerAge() {
 		// Given
 		var id = 1;
-		Customer customer = new Customer(id, "Dil", "dil@gmail.com", 28);
-		when(customerDao.selectCustomerById(id)).thenReturn(Optional.of(customer));
-
 		CustomerUpdateRequest updateRequest = new CustomerUpdateRequest(null, null, 50);
 
+		when(customerDao.updateCustomerIfChanged(any(), isNull()))
+				.thenReturn(Optional.of(new Customer(id, "Dil", "dil@gmail.com", 50, 1)));
+
 		// When
 		underTest.updateCustomer(id, updateRequest);
 
 		// Then
 		ArgumentCaptor<Customer> customerArgumentCaptor = ArgumentCaptor.forClass(Customer.class);
-		verify(customerDao).updateCustomer(customerArgumentCaptor.capture());
+		verify(customerDao).updateCustomerIfChanged(customerArgumentCaptor.capture(), isNull());
 
 		Customer capturedCustomer = customerArgumentCaptor.getValue();
 
-		assertThat(capturedCustomer.getName()).isEqualTo(customer.getName());
-		assertThat(capturedCustomer.getEmail()).isEqualTo(customer.getEmail());
+		assertThat(capturedCustomer.getName()).isNull();
+		assertThat(capturedCustomer.getEmail()).isNull();
 		assertThat(capturedCustomer.getAge()).isEqualTo(updateRequest.age());
 	}
 
 	@Test
-	void willThrowWhenTryingToUpdateCustomerEmailWhenTaken() {
+	void canUpdateCustomerAtExpectedVersion() {
 		// Given
 		var id = 1;
-		Customer customer = new Customer(id, "Dil", "dil@gmail.com", 28);
-		when(customerDao.selectCustomerById(id)).thenReturn(Optional.of(customer));
+		CustomerUpdateRequest updateRequest = new CustomerUpdateRequest("Dal", null, null, 3);
+
+		when(customerDao.updateCustomerIfChanged(any(), eq(3)))
+				.thenReturn(Optional.of(new Customer(id, "Dal", "dil@gmail.com", 28, 4)));
+
+		// When
+		underTest.updateCustomer(id, updateRequest);
+
+		// Then
+		verify(customerDao).updateCustomerIfChanged(any(), eq(3));
+	}
 
+	@Test
+	void willThrowWhenTryingToUpdateCustomerEmailWhenTaken() {
+		// Given
+		var id = 1;
 		String newEmail = "dal@gmail.com";
 		CustomerUpdateRequest updateRequest = new CustomerUpdateRequest(null, newEmail, null);
 
-		when(customerDao.existsCustomerWithEmail(newEmail)).thenReturn(true);
+		when(customerDao.updateCustomerIfChanged(any(), isNull())).thenThrow(new DuplicateKeyException(
+				"ERROR: duplicate key value violates unique constraint \"customer_email_unique\""
+		));
 
 		// When
+		// Then
 		assertThatThrownBy(() -> underTest.updateCustomer(id, updateRequest))
 				.isInstanceOf(DuplicateResourceException.class)
 				.hasMessage("Email taken");
-
-		// Then
-		verify(customerDao, never()).updateCustomer(any());
 	}
 
 	@Test
@@ -256,16 +515,63 @@ class CustomerServiceTest {
 		// Given
 		var id = 1;
 		Customer customer = new Customer(id, "Dil", "dil@gmail.com", 28);
+		when(customerDao.updateCustomerIfChanged(any(), isNull())).thenReturn(Optional.empty());
 		when(customerDao.selectCustomerById(id)).thenReturn(Optional.of(customer));
 
 		CustomerUpdateRequest updateRequest = new CustomerUpdateRequest(customer.getName(), customer.getEmail(), customer.getAge());
 
 		// When
+		// Then
 		assertThatThrownBy(() -> underTest.updateCustomer(id, updateRequest))
 				.isInstanceOf(RequestValidationException.class)
 				.hasMessage("No data changes found.");
+	}
+
+	@Test
+	void willThrowWhenTryingToUpdateCustomerThatDoesNotExist() {
+		// Given
+		var id = 1;
+		when(customerDao.updateCustomerIfChanged(any(), isNull())).thenReturn(Optional.empty());
+		when(customerDao.selectCustomerById(id)).thenReturn(Optional.empty());
+
+		CustomerUpdateRequest updateRequest = new CustomerUpdateRequest("Dal", null, null);
 
+		// When
 		// Then
-		verify(customerDao, never()).updateCustomer(any());
+		assertThatThrownBy(() -> underTest.updateCustomer(id, updateRequest))
+				.isInstanceOf(ResourceNotFoundException.class)
+				.hasMessage("Customer with id %s not found.".formatted(id));
+	}
+
+	@Test
+	void willThrowWhenTryingToUpdateStaleVersion() {
+		// Given
+		var id = 1;
+		Customer customer = new Customer(id, "Dil", "dil@gmail.com", 28, 5);
+		when(customerDao.updateCustomerIfChanged(any(), eq(4))).thenReturn(Optional.empty());
+		when(customerDao.selectCustomerById(id)).thenReturn(Optional.of(customer));
+
+		CustomerUpdateRequest updateRequest = new CustomerUpdateRequest("Dal", null, null, 4);
+
+		// When
+		// Then
+		assertThatThrownBy(() -> underTest.updateCustomer(id, updateRequest))
+				.isInstanceOf(StaleResourceException.class)
+				.hasMessage("Customer with id %s was modified by another request.".formatted(id));
+	}
+
+	@Test
+	void willThrowWhenConcurrentUpdateWinsOptimisticLock() {
+		// Given
+		var id = 1;
+		when(customerDao.updateCustomerIfChanged(any(), isNull()))
+				.thenThrow(new OptimisticLockingFailureException("Row was updated by another transaction"));
+
+		CustomerUpdateRequest updateRequest = new CustomerUpdateRequest("Dal", null, null);
+
+		// When
+		// Then
+		assertThatThrownBy(() -> underTest.updateCustomer(id, updateRequest))
+				.isInstanceOf(StaleResourceException.class);
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,85 @@
+package com.valloyd.customer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CustomerTrigramIndexTest {
+
+	@Test
+	void trigramsArePaddedLowerCasedWords() {
+		// When
+		var actual = CustomerTrigramIndex.trigrams("Jo-AN");
+
+		// Then
+		assertThat(actual).containsExactlyInAnyOrder("  j", " jo", "jo ", "  a", " an", "an ");
+	}
+
+	@Test
+	void searchRanksByNameOrEmailSimilarity() {
+		// Given
+		CustomerTrigramIndex underTest = new CustomerTrigramIndex();
+		Map<Integer, Customer> customers = Map.of(
+				1, new Customer(1, "Annabel Lee", "lee@gmail.com", 28),
+				2, new Customer(2, "Jip", "anna@gmail.com", 30),
+				3, new Customer(3, "Bob", "bob@gmail.com", 40)
+		);
+		customers.values().forEach(underTest::add);
+
+		// When
+		List<Customer> actual = underTest.search("anna", 10, customers::get);
+
+		// Then
+		assertThat(actual).extracting(Customer::getId).containsExactly(2, 1);
+		assertThat(underTest.search("anna", 1, customers::get)).extracting(Customer::getId).containsExactly(2);
+	}
+
+	@Test
+	void removedCustomersAreNoLongerFound() {
+		// Given
+		CustomerTrigramIndex underTest = new CustomerTrigramIndex();
+		Customer customer = new Customer(1, "Annabel", "annabel@gmail.com", 28);
+		underTest.add(customer);
+
+		// When
+		underTest.remove(customer);
+
+		// Then
+		assertThat(underTest.search("annabel", 10, id -> customer)).isEmpty();
+	}
+
+	@Test
+	void mostSimilarIgnoresCandidatesBelowThreshold() {
+		// Given
+		Stream<Customer> candidates = Stream.of(
+				new Customer(1, "Alex", "alex@gmail.com", 28),
+				new Customer(2, "Alexander", "xander@gmail.com", 28)
+		);
+
+		// When
+		List<Customer> actual = CustomerTrigramIndex.mostSimilar(CustomerTrigramIndex.trigrams("xand"), candidates, 10);
+
+		// Then
+		assertThat(actual).extracting(Customer::getId).containsExactly(2);
+	}
+
+	@Test
+	void mostSimilarKeepsOnlyTheBestMatchesWhateverTheirOrder() {
+		// Given
+		Stream<Customer> candidates = Stream.of(
+				new Customer(3, "Anna", "c@gmail.com", 28),
+				new Customer(1, "Annabel", "a@gmail.com", 28),
+				new Customer(2, "Anna", "b@gmail.com", 28)
+		);
+
+		// When
+		List<Customer> actual = CustomerTrigramIndex.mostSimilar(CustomerTrigramIndex.trigrams("anna"), candidates, 2);
+
+		// Then
+		assertThat(actual).extracting(Customer::getId).containsExactly(2, 3);
+	}
+}
@@ -0,0 +1,227 @@
+package com.valloyd.customer;
+
+import com.valloyd.exception.ServiceUnavailableException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class CustomerWriteBehindQueueTest {
+
+	private CustomerWriteBehindQueue underTest;
+
+	@AfterEach
+	void tearDown() {
+		underTest.stop();
+	}
+
+	@Test
+	void writesAFullBatchWithoutWaitingForTheLinger() {
+		// Given
+		RecordingDas customerDao = new RecordingDas();
+		underTest = start(customerDao, 10, Duration.ofMinutes(1), 100);
+
+		// When
+		List<CompletableFuture<Boolean>> inserted = IntStream.range(0, 10)
+				.mapToObj(i -> underTest.submit(new Customer("Name" + i, "name" + i + "@gmail.com", 20)))
+				.toList();
+
+		// Then
+		assertThat(CompletableFuture.allOf(inserted.toArray(CompletableFuture[]::new)))
+				.succeedsWithin(5, TimeUnit.SECONDS);
+		assertThat(inserted).allSatisfy(f -> assertThat(f).isCompletedWithValue(true));
+		assertThat(customerDao.batchSizes).containsExactly(10);
+	}
+
+	@Test
+	void writesAPartialBatchOnceTheLingerPasses() {
+		// Given
+		RecordingDas customerDao = new RecordingDas();
+		underTest = start(customerDao, 100, Duration.ofMillis(20), 1000);
+
+		// When
+		boolean inserted = underTest.insert(new Customer("Jip", "jip@gmail.com", 28));
+
+		// Then
+		assertThat(inserted).isTrue();
+		assertThat(customerDao.batchSizes).containsExactly(1);
+	}
+
+	@Test
+	void reportsTakenEmailsPerRegistration() {
+		// Given
+		underTest = start(new CustomerListDas(), 3, Duration.ofMinutes(1), 100);
+
+		// When
+		CompletableFuture<Boolean> taken = underTest.submit(new Customer("Alex", "alex@gmail.com", 21));
+		CompletableFuture<Boolean> fresh = underTest.submit(new Customer("Jip", "jip@gmail.com", 28));
+		CompletableFuture<Boolean> repeated = underTest.submit(new Customer("Jap", "jip@gmail.com", 30));
+
+		// Then
+		assertThat(taken).succeedsWithin(5, TimeUnit.SECONDS).isEqualTo(false);
+		assertThat(fresh).succeedsWithin(5, TimeUnit.SECONDS).isEqualTo(true);
+		assertThat(repeated).succeedsWithin(5, TimeUnit.SECONDS).isEqualTo(false);
+	}
+
+	@Test
+	void failsRegistrationWhenItsRetryFailsToo() {
+		// Given
+		CustomerDao customerDao = mock(CustomerDao.class);
+		when(customerDao.insertCustomersIfEmailsAvailable(anyList())).thenThrow(new IllegalStateException("Down"));
+		when(customerDao.insertCustomerIfEmailAvailable(any())).thenThrow(new IllegalStateException("Down"));
+		underTest = start(customerDao, 1, Duration.ZERO, 10);
+
+		// When
+		// Then
+		assertThatThrownBy(() -> underTest.insert(new Customer("Jip", "jip@gmail.com", 28)))
+				.isInstanceOf(IllegalStateException.class)
+				.hasMessage("Down");
+	}
+
+	@Test
+	void failsOnlyThePoisonedRegistrationOfAFailedBatch() {
+		// Given
+		PoisonRejectingDas customerDao = new PoisonRejectingDas();
+		underTest = start(customerDao, 3, Duration.ofMinutes(1), 100);
+
+		// When
+		CompletableFuture<Boolean> before = underTest.submit(new Customer("Jip", "jip@gmail.com", 28));
+		CompletableFuture<Boolean> poisoned = underTest.submit(new Customer(null, "nobody@gmail.com", 28));
+		CompletableFuture<Boolean> after = underTest.submit(new Customer("Jap", "jap@gmail.com", 30));
+
+		// Then
+		assertThat(before).succeedsWithin(5, TimeUnit.SECONDS).isEqualTo(true);
+		assertThat(after).succeedsWithin(5, TimeUnit.SECONDS).isEqualTo(true);
+		assertThat(poisoned).failsWithin(5, TimeUnit.SECONDS)
+				.withThrowableOfType(ExecutionException.class)
+				.withCauseInstanceOf(DataIntegrityViolationException.class);
+		assertThat(customerDao.existsCustomerWithEmail("nobody@gmail.com")).isFalse();
+	}
+
+	@Test
+	void rejectsRegistrationsWhenFull() throws Exception {
+		// Given
+		RecordingDas customerDao = new RecordingDas();
+		customerDao.blocked = new CountDownLatch(1);
+		underTest = start(customerDao, 1, Duration.ZERO, 2);
+		// The first is taken by the flusher, which then blocks in the DAO
+		underTest.submit(new Customer("A", "a@gmail.com", 20));
+		customerDao.flushing.await(5, TimeUnit.SECONDS);
+		underTest.submit(new Customer("B", "b@gmail.com", 20));
+		underTest.submit(new Customer("C", "c@gmail.com", 20));
+
+		// When
+		// Then
+		assertThatThrownBy(() -> underTest.submit(new Customer("D", "d@gmail.com", 20)))
+				.isInstanceOf(ServiceUnavailableException.class);
+		customerDao.blocked.countDown();
+	}
+
+	@Test
+	void stopWritesQueuedRegistrationsThenRejectsNewOnes() {
+		// Given
+		RecordingDas customerDao = new RecordingDas();
+		underTest = start(customerDao, 100, Duration.ofMinutes(1), 1000);
+		CompletableFuture<Boolean> queued = underTest.submit(new Customer("Jip", "jip@gmail.com", 28));
+
+		// When
+		underTest.stop();
+
+		// Then
+		assertThat(queued).isCompletedWithValue(true);
+		assertThat(underTest.queued()).isZero();
+		assertThatThrownBy(() -> underTest.submit(new Customer("Jap", "jap@gmail.com", 28)))
+				.isInstanceOf(ServiceUnavailableException.class);
+	}
+
+	@Test
+	void insertGivesUpOnceTheTimeoutPasses() {
+		// Given
+		RecordingDas customerDao = new RecordingDas();
+		customerDao.blocked = new CountDownLatch(1);
+		underTest = start(customerDao, 1, Duration.ZERO, 10, Duration.ofMillis(50));
+
+		// When
+		// Then
+		assertThatThrownBy(() -> underTest.insert(new Customer("Jip", "jip@gmail.com", 28)))
+				.isInstanceOf(ServiceUnavailableException.class);
+		customerDao.blocked.countDown();
+	}
+
+	private static CustomerWriteBehindQueue start(CustomerDao customerDao, int batchSize, Duration linger, int capacity) {
+		return start(customerDao, batchSize, linger, capacity, Duration.ofSeconds(5));
+	}
+
+	private static CustomerWriteBehindQueue start(
+			CustomerDao customerDao, int batchSize, Duration linger, int capacity, Duration timeout) {
+		CustomerWriteBehindQueue queue = new CustomerWriteBehindQueue(
+				customerDao, batchSize, linger, capacity, timeout, new SimpleMeterRegistry());
+		queue.start();
+		return queue;
+	}
+
+	/**
+	 * Rejects customers without a name like the NOT NULL column would, failing the whole
+	 * batch they are part of.
+	 */
+	private static class PoisonRejectingDas extends CustomerListDas {
+
+		@Override
+		public Set<String> insertCustomersIfEmailsAvailable(List<Customer> customers) {
+			if (customers.stream().anyMatch(customer -> customer.getName() == null)) {
+				throw new DataIntegrityViolationException("null value in column \"name\"");
+			}
+			return super.insertCustomersIfEmailsAvailable(customers);
+		}
+
+		@Override
+		public Optional<Integer> insertCustomerIfEmailAvailable(Customer customer) {
+			if (customer.getName() == null) {
+				throw new DataIntegrityViolationException("null value in column \"name\"");
+			}
+			return super.insertCustomerIfEmailAvailable(customer);
+		}
+	}
+
+	/**
+	 * Records the size of every batch, and can hold the flusher inside the write.
+	 */
+	private static class RecordingDas extends CustomerListDas {
+
+		final List<Integer> batchSizes = new ArrayList<>();
+		final CountDownLatch flushing = new CountDownLatch(1);
+		volatile CountDownLatch blocked;
+
+		@Override
+		public Set<String> insertCustomersIfEmailsAvailable(List<Customer> customers) {
+			batchSizes.add(customers.size());
+			flushing.countDown();
+			if (blocked != null) {
+				try {
+					blocked.await(5, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			return super.insertCustomersIfEmailsAvailable(customers);
+		}
+	}
+}
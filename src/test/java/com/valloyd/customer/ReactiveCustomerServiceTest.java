@@ -0,0 +1,222 @@
+package com.valloyd.customer;
+
+import com.valloyd.exception.DuplicateResourceException;
+import com.valloyd.exception.RequestValidationException;
+import com.valloyd.exception.ResourceNotFoundException;
+import com.valloyd.exception.StaleResourceException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ReactiveCustomerServiceTest {
+
+	@Mock
+	private ReactiveCustomerDao customerDao;
+	private ReactiveCustomerService underTest;
+
+	@BeforeEach
+	void setUp() {
+		underTest = new ReactiveCustomerService(customerDao);
+	}
+
+	@Test
+	void getCustomersUsesDefaultCursorAndPageSize() {
+		// Given
+		when(customerDao.selectCustomers(0, CustomerService.DEFAULT_PAGE_SIZE)).thenReturn(Flux.empty());
+
+		// When
+		List<Customer> actual = underTest.getCustomers(null, null).collectList().block();
+
+		// Then
+		assertThat(actual).isEmpty();
+	}
+
+	@Test
+	void willErrorWhenGetCustomersLimitOutOfRange() {
+		// When
+		// Then
+		assertThatThrownBy(() -> underTest.getCustomers(null, CustomerService.MAX_PAGE_SIZE + 1).blockLast())
+				.isInstanceOf(RequestValidationException.class)
+				.hasMessage("Limit must be between 1 and %s.".formatted(CustomerService.MAX_PAGE_SIZE));
+		verify(customerDao, never()).selectCustomers(any(), anyInt());
+	}
+
+	@Test
+	void willErrorWhenGetCustomerIsEmpty() {
+		// Given
+		int id = 100;
+		when(customerDao.selectCustomerById(id)).thenReturn(Mono.empty());
+
+		// When
+		// Then
+		assertThatThrownBy(() -> underTest.getCustomer(id).block())
+				.isInstanceOf(ResourceNotFoundException.class)
+				.hasMessage("Customer with id %s not found.".formatted(id));
+	}
+
+	@Test
+	void getCustomersByIdsKeepsRequestOrderAndReportsMissingIds() {
+		// Given
+		Customer jip = new Customer(1, "Jip", "jip@gmail.com", 28);
+		Customer jap = new Customer(3, "Jap", "jap@gmail.com", 30);
+		when(customerDao.selectCustomersByIds(Set.of(3, 2, 1))).thenReturn(Flux.just(jip, jap));
+
+		// When
+		CustomerLookupResult actual = underTest.getCustomersByIds(List.of(3, 2, 1)).block();
+
+		// Then
+		assertThat(actual.customers()).containsExactly(jap, jip);
+		assertThat(actual.missingIds()).containsExactly(2);
+	}
+
+	@Test
+	void willErrorWhenGettingNoCustomersByIds() {
+		// When
+		// Then
+		assertThatThrownBy(() -> underTest.getCustomersByIds(List.of()).block())
+				.isInstanceOf(RequestValidationException.class);
+	}
+
+	@Test
+	void willErrorWhenSearchTextTooShort() {
+		// When
+		// Then
+		assertThatThrownBy(() -> underTest.searchCustomersByText("an", null).blockLast())
+				.isInstanceOf(RequestValidationException.class);
+		verify(customerDao, never()).selectCustomersSimilarTo(any(), anyInt());
+	}
+
+	@Test
+	void willErrorWhenSearchingWithIncompleteCursor() {
+		// Given
+		CustomerQuery query = new CustomerQuery(null, null, null, null, CustomerQuery.Sort.AGE, 42, null, null);
+
+		// When
+		// Then
+		assertThatThrownBy(() -> underTest.searchCustomers(query, 10).blockLast())
+				.isInstanceOf(RequestValidationException.class);
+		verify(customerDao, never()).selectCustomersMatching(any(), anyInt());
+	}
+
+	@Test
+	void willErrorWhenEmailExistsWhileAddingCustomer() {
+		// Given
+		when(customerDao.insertCustomerIfEmailAvailable(any())).thenReturn(Mono.empty());
+
+		// When
+		// Then
+		assertThatThrownBy(() -> underTest.addCustomer(new CustomerRegistrationRequest("Gop", "gop@gmail.com", 28)).block())
+				.isInstanceOf(DuplicateResourceException.class)
+				.hasMessage("Email taken");
+	}
+
+	@Test
+	void addCustomersReportsResultPerItem() {
+		// Given
+		var fresh = new CustomerRegistrationRequest("Gop", "gop@gmail.com", 28);
+		var taken = new CustomerRegistrationRequest("Jip", "jip@gmail.com", 30);
+		when(customerDao.insertCustomerIfEmailAvailable(argThat(c -> c != null && c.getEmail().equals(fresh.email()))))
+				.thenReturn(Mono.just(1));
+		when(customerDao.insertCustomerIfEmailAvailable(argThat(c -> c != null && c.getEmail().equals(taken.email()))))
+				.thenReturn(Mono.empty());
+
+		// When
+		List<CustomerRegistrationResult> actual = underTest.addCustomers(List.of(fresh, taken)).block();
+
+		// Then
+		assertThat(actual).containsExactly(
+				new CustomerRegistrationResult(fresh.email(), CustomerRegistrationResult.Status.REGISTERED),
+				new CustomerRegistrationResult(taken.email(), CustomerRegistrationResult.Status.EMAIL_TAKEN)
+		);
+	}
+
+	@Test
+	void willErrorWhenDeleteCustomerByIdNotExist() {
+		// Given
+		int id = 10;
+		when(customerDao.deleteCustomerById(id)).thenReturn(Mono.just(0L));
+
+		// When
+		// Then
+		assertThatThrownBy(() -> underTest.deleteCustomerById(id).block())
+				.isInstanceOf(ResourceNotFoundException.class)
+				.hasMessage("Customer with ID [%s] not found.".formatted(id));
+	}
+
+	@Test
+	void canUpdateCustomerAtExpectedVersion() {
+		// Given
+		var id = 1;
+		when(customerDao.updateCustomerIfChanged(any(), eq(3)))
+				.thenReturn(Mono.just(new Customer(id, "Dal", "dil@gmail.com", 28, 4)));
+
+		// When
+		underTest.updateCustomer(id, new CustomerUpdateRequest("Dal", null, null, 3)).block();
+
+		// Then
+		verify(customerDao, never()).selectCustomerById(any());
+	}
+
+	@Test
+	void willErrorWhenTryingToUpdateCustomerEmailWhenTaken() {
+		// Given
+		when(customerDao.updateCustomerIfChanged(any(), isNull())).thenReturn(Mono.error(new DuplicateKeyException(
+				"ERROR: duplicate key value violates unique constraint \"customer_email_unique\""
+		)));
+
+		// When
+		// Then
+		assertThatThrownBy(() -> underTest.updateCustomer(1, new CustomerUpdateRequest(null, "dal@gmail.com", null)).block())
+				.isInstanceOf(DuplicateResourceException.class)
+				.hasMessage("Email taken");
+	}
+
+	@Test
+	void willErrorWhenTryingToUpdateWhenThereAreNoChanges() {
+		// Given
+		var id = 1;
+		Customer customer = new Customer(id, "Dil", "dil@gmail.com", 28);
+		when(customerDao.updateCustomerIfChanged(any(), isNull())).thenReturn(Mono.empty());
+		when(customerDao.selectCustomerById(id)).thenReturn(Mono.just(customer));
+
+		// When
+		// Then
+		assertThatThrownBy(() -> underTest.updateCustomer(id, new CustomerUpdateRequest("Dil", null, null)).block())
+				.isInstanceOf(RequestValidationException.class)
+				.hasMessage("No data changes found.");
+	}
+
+	@Test
+	void willErrorWhenTryingToUpdateStaleVersion() {
+		// Given
+		var id = 1;
+		when(customerDao.updateCustomerIfChanged(any(), eq(4))).thenReturn(Mono.empty());
+		when(customerDao.selectCustomerById(id)).thenReturn(Mono.just(new Customer(id, "Dil", "dil@gmail.com", 28, 5)));
+
+		// When
+		// Then
+		assertThatThrownBy(() -> underTest.updateCustomer(id, new CustomerUpdateRequest("Dal", null, null, 4)).block())
+				.isInstanceOf(StaleResourceException.class)
+				.hasMessage("Customer with id %s was modified by another request.".formatted(id));
+	}
+}
@@ -0,0 +1,41 @@
+package com.valloyd.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReadReplicaConfigTest {
+
+	@Test
+	void replicaPoolsTakeThePrimarysHikariSettings() {
+		// Given
+		MockEnvironment environment = new MockEnvironment()
+				.withProperty("spring.datasource.hikari.connection-timeout", "3000")
+				.withProperty("spring.datasource.hikari.leak-detection-threshold", "20000")
+				.withProperty("spring.datasource.hikari.data-source-properties.prepareThreshold", "1");
+		DataSourceProperties properties = new DataSourceProperties();
+		properties.setUsername("amigoscode");
+		properties.setPassword("password");
+
+		// When
+		ReplicaRoutingDataSource actual = new ReadReplicaConfig().replicaRoutingDataSource(
+				new HikariDataSource(), properties, List.of("jdbc:postgresql://localhost:5333/customer"),
+				"", "", null, environment);
+
+		// Then
+		assertThat(actual.getReplicas()).singleElement().isInstanceOfSatisfying(HikariDataSource.class, replica -> {
+			assertThat(replica.getPoolName()).isEqualTo("replica-0");
+			assertThat(replica.getJdbcUrl()).isEqualTo("jdbc:postgresql://localhost:5333/customer");
+			assertThat(replica.getUsername()).isEqualTo("amigoscode");
+			assertThat(replica.isReadOnly()).isTrue();
+			assertThat(replica.getConnectionTimeout()).isEqualTo(3000);
+			assertThat(replica.getLeakDetectionThreshold()).isEqualTo(20000);
+			assertThat(replica.getDataSourceProperties()).containsEntry("prepareThreshold", "1");
+		});
+	}
+}
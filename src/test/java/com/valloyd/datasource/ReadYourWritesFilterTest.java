@@ -0,0 +1,109 @@
+package com.valloyd.datasource;
+
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ReadYourWritesFilterTest {
+
+	private static final long NOW = 1_700_000_000_000L;
+
+	private final Connection primaryConnection = mock(Connection.class);
+	private final Connection replicaConnection = mock(Connection.class);
+	private final AtomicReference<Connection> used = new AtomicReference<>();
+	private ReplicaRoutingDataSource dataSource;
+	private ReadYourWritesFilter underTest;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		DataSource primary = mock(DataSource.class);
+		when(primary.getConnection()).thenReturn(primaryConnection);
+		DataSource replica = mock(DataSource.class);
+		when(replica.getConnection()).thenReturn(replicaConnection);
+		dataSource = new ReplicaRoutingDataSource(primary, List.of(replica));
+		dataSource.afterPropertiesSet();
+		underTest = new ReadYourWritesFilter(Duration.ofSeconds(5), Clock.fixed(Instant.ofEpochMilli(NOW), ZoneOffset.UTC));
+		TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+	}
+
+	@AfterEach
+	void tearDown() {
+		TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+	}
+
+	@Test
+	void writesAreStampedWithTheirTime() throws Exception {
+		// Given
+		MockHttpServletResponse response = new MockHttpServletResponse();
+
+		// When
+		underTest.doFilter(new MockHttpServletRequest("POST", "/api/v1/customers"), response, chain());
+
+		// Then
+		assertThat(response.getHeader(ReadYourWritesFilter.WRITTEN_AT_HEADER)).isEqualTo(Long.toString(NOW));
+	}
+
+	@Test
+	void readsWithinTheWindowGoToThePrimary() throws Exception {
+		// When
+		underTest.doFilter(read(Long.toString(NOW - 1_000)), new MockHttpServletResponse(), chain());
+
+		// Then
+		assertThat(used).hasValue(primaryConnection);
+	}
+
+	@Test
+	void readsAfterTheWindowGoToTheReplicas() throws Exception {
+		// When
+		underTest.doFilter(read(Long.toString(NOW - 6_000)), new MockHttpServletResponse(), chain());
+
+		// Then
+		assertThat(used).hasValue(replicaConnection);
+	}
+
+	@Test
+	void readsWithOutOfRangeOrMalformedTimesGoToTheReplicas() throws Exception {
+		// When
+		underTest.doFilter(read(Long.toString(Long.MIN_VALUE)), new MockHttpServletResponse(), chain());
+		Connection outOfRange = used.get();
+		underTest.doFilter(read("yesterday"), new MockHttpServletResponse(), chain());
+
+		// Then
+		assertThat(outOfRange).isSameAs(replicaConnection);
+		assertThat(used).hasValue(replicaConnection);
+	}
+
+	private static MockHttpServletRequest read(String writtenAt) {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/customers/1");
+		request.addHeader(ReadYourWritesFilter.WRITTEN_AT_HEADER, writtenAt);
+		return request;
+	}
+
+	private FilterChain chain() {
+		return (request, response) -> {
+			try {
+				used.set(dataSource.getConnection());
+			} catch (SQLException e) {
+				throw new IllegalStateException(e);
+			}
+		};
+	}
+}
@@ -0,0 +1,99 @@
+package com.valloyd.datasource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ReplicaRoutingDataSourceTest {
+
+	private final Connection primaryConnection = mock(Connection.class);
+	private final Connection firstReplicaConnection = mock(Connection.class);
+	private final Connection secondReplicaConnection = mock(Connection.class);
+	private ReplicaRoutingDataSource underTest;
+
+	@BeforeEach
+	void setUp() throws SQLException {
+		underTest = new ReplicaRoutingDataSource(
+				dataSource(primaryConnection),
+				List.of(dataSource(firstReplicaConnection), dataSource(secondReplicaConnection)));
+		underTest.afterPropertiesSet();
+	}
+
+	@AfterEach
+	void tearDown() {
+		TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+	}
+
+	@Test
+	void writesGoToThePrimary() throws SQLException {
+		// When
+		Connection actual = underTest.getConnection();
+
+		// Then
+		assertThat(actual).isSameAs(primaryConnection);
+	}
+
+	@Test
+	void readOnlyTransactionsAlternateBetweenReplicas() throws SQLException {
+		// Given
+		TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+		// When
+		List<Connection> actual = List.of(
+				underTest.getConnection(), underTest.getConnection(), underTest.getConnection());
+
+		// Then
+		assertThat(actual).containsExactly(
+				firstReplicaConnection, secondReplicaConnection, firstReplicaConnection);
+	}
+
+	@Test
+	void primaryOnlyOverridesReadOnlyUntilClosed() throws SQLException {
+		// Given
+		TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+		// When
+		Connection pinned;
+		try (var scope = ReplicaRoutingDataSource.primaryOnly()) {
+			try (var nested = ReplicaRoutingDataSource.primaryOnly()) {
+				// Closing a nested scope keeps the outer one in force
+			}
+			pinned = underTest.getConnection();
+		}
+		Connection released = underTest.getConnection();
+
+		// Then
+		assertThat(pinned).isSameAs(primaryConnection);
+		assertThat(released).isSameAs(firstReplicaConnection);
+	}
+
+	@Test
+	void readOnlyTransactionsUseThePrimaryWithoutReplicas() throws SQLException {
+		// Given
+		ReplicaRoutingDataSource primaryOnly = new ReplicaRoutingDataSource(dataSource(primaryConnection), List.of());
+		primaryOnly.afterPropertiesSet();
+		TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+		// When
+		Connection actual = primaryOnly.getConnection();
+
+		// Then
+		assertThat(actual).isSameAs(primaryConnection);
+	}
+
+	private static DataSource dataSource(Connection connection) throws SQLException {
+		DataSource dataSource = mock(DataSource.class);
+		when(dataSource.getConnection()).thenReturn(connection);
+		return dataSource;
+	}
+}
@@ -2,19 +2,24 @@ package com.valloyd.journey;
 
 import com.github.javafaker.Faker;
 import com.valloyd.customer.Customer;
+import com.valloyd.customer.CustomerLookupResult;
 import com.valloyd.customer.CustomerRegistrationRequest;
+import com.valloyd.customer.CustomerRegistrationResult;
 import com.valloyd.customer.CustomerUpdateRequest;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.reactive.server.WebTestClient;
 import reactor.core.publisher.Mono;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
 import java.util.UUID;
+import java.util.stream.IntStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
@@ -25,6 +30,8 @@ public class CustomerIntegrationTest {
 	private WebTestClient webTestClient;
 	private static final Random RANDOM = new Random();
 	private static final String CUSTOMER_URI = "/api/v1/customers";
+	private static final int PAGE_SIZE = 1000;
+	private static final int DEFAULT_PAGE_SIZE = 100;
 
 	@Test
 	void canRegisterCustomer() {
@@ -49,17 +56,18 @@ public class CustomerIntegrationTest {
 				.expectStatus()
 				.isOk();
 
-		// Get all customers.
-		List<Customer> allCustomers = webTestClient.get()
+		// Registering the same email again is rejected.
+		webTestClient.post()
 				.uri(CUSTOMER_URI)
 				.accept(MediaType.APPLICATION_JSON)
+				.contentType(MediaType.APPLICATION_JSON)
+				.body(Mono.just(request), CustomerRegistrationRequest.class)
 				.exchange()
 				.expectStatus()
-				.isOk()
-				.expectBodyList(new ParameterizedTypeReference<Customer>() {
-				})
-				.returnResult()
-				.getResponseBody();
+				.isEqualTo(HttpStatus.CONFLICT);
+
+		// Get all customers.
+		List<Customer> allCustomers = getAllCustomers();
 
 		// Make sure customer is present.
 		Customer expectedCustomer = new Customer(
@@ -113,16 +121,7 @@ public class CustomerIntegrationTest {
 				.isOk();
 
 		// Get all customers.
-		List<Customer> allCustomers = webTestClient.get()
-				.uri(CUSTOMER_URI)
-				.accept(MediaType.APPLICATION_JSON)
-				.exchange()
-				.expectStatus()
-				.isOk()
-				.expectBodyList(new ParameterizedTypeReference<Customer>() {
-				})
-				.returnResult()
-				.getResponseBody();
+		List<Customer> allCustomers = getAllCustomers();
 
 		var id = allCustomers.stream()
 				.filter(customer -> customer.getEmail().equals(email))
@@ -171,16 +170,7 @@ public class CustomerIntegrationTest {
 				.isOk();
 
 		// Get all customers.
-		List<Customer> allCustomers = webTestClient.get()
-				.uri(CUSTOMER_URI)
-				.accept(MediaType.APPLICATION_JSON)
-				.exchange()
-				.expectStatus()
-				.isOk()
-				.expectBodyList(new ParameterizedTypeReference<Customer>() {
-				})
-				.returnResult()
-				.getResponseBody();
+		List<Customer> allCustomers = getAllCustomers();
 
 		var id = allCustomers.stream()
 				.filter(customer -> customer.getEmail().equals(email))
@@ -218,5 +208,217 @@ public class CustomerIntegrationTest {
 		);
 
 		assertThat(updatedCustomer).isEqualTo(expected);
+
+		// Updating against the version read before the first update is rejected.
+		CustomerUpdateRequest staleRequest = new CustomerUpdateRequest(
+				"otherName", null, null, updatedCustomer.getVersion() - 1
+		);
+
+		webTestClient.put()
+				.uri(CUSTOMER_URI + "/{id}", id)
+				.accept(MediaType.APPLICATION_JSON)
+				.contentType(MediaType.APPLICATION_JSON)
+				.body(Mono.just(staleRequest), CustomerUpdateRequest.class)
+				.exchange()
+				.expectStatus()
+				.isEqualTo(HttpStatus.CONFLICT);
+	}
+
+	@Test
+	void canExportCustomers() {
+		// Create registration request.
+		var faker = new Faker();
+		var fakerName = faker.name();
+
+		var name = fakerName.fullName();
+		var email = fakerName.lastName() + "-" + UUID.randomUUID() + "@gmail.com";
+		var age = RANDOM.nextInt(18, 120);
+
+		CustomerRegistrationRequest request =
+				new CustomerRegistrationRequest(name, email, age);
+		// Send post request.
+
+		webTestClient.post()
+				.uri(CUSTOMER_URI)
+				.accept(MediaType.APPLICATION_JSON)
+				.contentType(MediaType.APPLICATION_JSON)
+				.body(Mono.just(request), CustomerRegistrationRequest.class)
+				.exchange()
+				.expectStatus()
+				.isOk();
+
+		// Export all customers as newline delimited JSON.
+		List<Customer> exportedCustomers = webTestClient.get()
+				.uri(CUSTOMER_URI + "/export")
+				.accept(MediaType.APPLICATION_NDJSON)
+				.exchange()
+				.expectStatus()
+				.isOk()
+				.expectHeader()
+				.contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+				.returnResult(Customer.class)
+				.getResponseBody()
+				.collectList()
+				.block();
+
+		// Make sure customer is present.
+		assertThat(exportedCustomers).extracting(Customer::getEmail).contains(email);
+	}
+
+	@Test
+	void canRegisterCustomersInBatch() {
+		// Create registration requests, repeating the first email.
+		var faker = new Faker();
+		var fakerName = faker.name();
+
+		var email = fakerName.lastName() + "-" + UUID.randomUUID() + "@gmail.com";
+		var otherEmail = fakerName.lastName() + "-" + UUID.randomUUID() + "@gmail.com";
+
+		List<CustomerRegistrationRequest> requests = List.of(
+				new CustomerRegistrationRequest(fakerName.fullName(), email, RANDOM.nextInt(18, 120)),
+				new CustomerRegistrationRequest(fakerName.fullName(), otherEmail, RANDOM.nextInt(18, 120)),
+				new CustomerRegistrationRequest(fakerName.fullName(), email, RANDOM.nextInt(18, 120))
+		);
+
+		// Send batch post request.
+		List<CustomerRegistrationResult> results = webTestClient.post()
+				.uri(CUSTOMER_URI + "/batch")
+				.accept(MediaType.APPLICATION_JSON)
+				.contentType(MediaType.APPLICATION_JSON)
+				.bodyValue(requests)
+				.exchange()
+				.expectStatus()
+				.isOk()
+				.expectBodyList(CustomerRegistrationResult.class)
+				.returnResult()
+				.getResponseBody();
+
+		assertThat(results).containsExactly(
+				new CustomerRegistrationResult(email, CustomerRegistrationResult.Status.REGISTERED),
+				new CustomerRegistrationResult(otherEmail, CustomerRegistrationResult.Status.REGISTERED),
+				new CustomerRegistrationResult(email, CustomerRegistrationResult.Status.EMAIL_TAKEN)
+		);
+
+		// Get all customers.
+		List<Customer> allCustomers = getAllCustomers();
+
+		// Make sure both customers are present.
+		assertThat(allCustomers).extracting(Customer::getEmail).contains(email, otherEmail);
+	}
+
+	@Test
+	void listsOnePageByDefault() {
+		// Register more customers than fit on a default page.
+		var faker = new Faker();
+		List<CustomerRegistrationRequest> requests = IntStream.rangeClosed(0, DEFAULT_PAGE_SIZE)
+				.mapToObj(i -> new CustomerRegistrationRequest(
+						faker.name().fullName(),
+						faker.name().lastName() + "-" + UUID.randomUUID() + "@gmail.com",
+						RANDOM.nextInt(18, 120)))
+				.toList();
+
+		webTestClient.post()
+				.uri(CUSTOMER_URI + "/batch")
+				.accept(MediaType.APPLICATION_JSON)
+				.contentType(MediaType.APPLICATION_JSON)
+				.bodyValue(requests)
+				.exchange()
+				.expectStatus()
+				.isOk();
+
+		// Get customers without paging parameters.
+		List<Customer> customers = webTestClient.get()
+				.uri(CUSTOMER_URI)
+				.accept(MediaType.APPLICATION_JSON)
+				.exchange()
+				.expectStatus()
+				.isOk()
+				.expectBodyList(new ParameterizedTypeReference<Customer>() {
+				})
+				.returnResult()
+				.getResponseBody();
+
+		// Make sure only the first page comes back.
+		assertThat(customers).hasSize(DEFAULT_PAGE_SIZE);
+	}
+
+	@Test
+	void canGetCustomersByIds() {
+		// Register two customers.
+		var faker = new Faker();
+		var fakerName = faker.name();
+
+		var email = fakerName.lastName() + "-" + UUID.randomUUID() + "@gmail.com";
+		var otherEmail = fakerName.lastName() + "-" + UUID.randomUUID() + "@gmail.com";
+
+		webTestClient.post()
+				.uri(CUSTOMER_URI + "/batch")
+				.accept(MediaType.APPLICATION_JSON)
+				.contentType(MediaType.APPLICATION_JSON)
+				.bodyValue(List.of(
+						new CustomerRegistrationRequest(fakerName.fullName(), email, RANDOM.nextInt(18, 120)),
+						new CustomerRegistrationRequest(fakerName.fullName(), otherEmail, RANDOM.nextInt(18, 120))
+				))
+				.exchange()
+				.expectStatus()
+				.isOk();
+
+		// Get all customers to find their ids.
+		List<Customer> allCustomers = getAllCustomers();
+
+		int id = idOf(allCustomers, email);
+		int otherId = idOf(allCustomers, otherEmail);
+
+		// Get both, and an unknown id, in one request.
+		CustomerLookupResult result = webTestClient.get()
+				.uri(CUSTOMER_URI + "?ids={ids}", otherId + ",-1," + id)
+				.accept(MediaType.APPLICATION_JSON)
+				.exchange()
+				.expectStatus()
+				.isOk()
+				.expectBody(CustomerLookupResult.class)
+				.returnResult()
+				.getResponseBody();
+
+		// Make sure they come back in request order, with the unknown id reported.
+		assertThat(result.customers()).extracting(Customer::getEmail).containsExactly(otherEmail, email);
+		assertThat(result.missingIds()).containsExactly(-1);
+	}
+
+	private static int idOf(List<Customer> customers, String email) {
+		return customers.stream()
+				.filter(c -> c.getEmail().equals(email))
+				.map(Customer::getId)
+				.findFirst()
+				.orElseThrow();
+	}
+
+	/**
+	 * Pages through the whole listing, which only ever returns one page per request.
+	 */
+	private List<Customer> getAllCustomers() {
+		List<Customer> customers = new ArrayList<>();
+		int after = 0;
+		while (true) {
+			int afterId = after;
+			List<Customer> page = webTestClient.get()
+					.uri(uriBuilder -> uriBuilder.path(CUSTOMER_URI)
+							.queryParam("after", afterId)
+							.queryParam("limit", PAGE_SIZE)
+							.build())
+					.accept(MediaType.APPLICATION_JSON)
+					.exchange()
+					.expectStatus()
+					.isOk()
+					.expectBodyList(new ParameterizedTypeReference<Customer>() {
+					})
+					.returnResult()
+					.getResponseBody();
+			customers.addAll(page);
+			if (page.size() < PAGE_SIZE) {
+				return customers;
+			}
+			after = page.get(page.size() - 1).getId();
+		}
 	}
 }
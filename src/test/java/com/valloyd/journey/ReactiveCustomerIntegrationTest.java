@@ -0,0 +1,16 @@
+package com.valloyd.journey;
+
+import org.springframework.boot.test.context.SpringBootTest;
+
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+
+/**
+ * Runs every customer journey against the reactive stack, which must behave exactly
+ * like the servlet one.
+ */
+@SpringBootTest(
+		webEnvironment = RANDOM_PORT,
+		properties = "spring.main.web-application-type=reactive"
+)
+public class ReactiveCustomerIntegrationTest extends CustomerIntegrationTest {
+}
@@ -0,0 +1,343 @@
+package com.valloyd.load;
+
+import com.valloyd.Main;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.assertj.core.api.SoftAssertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Drives a fixed-rate mix of reads and writes against every {@code /api/v1/customers}
+ * endpoint and fails when the latency, error rate or throughput SLOs are missed. Run it
+ * with {@code mvn -P load-test test}; it needs the database from {@code application.yml}.
+ * <p>
+ * Requests are sent on a schedule of {@code load.rate} per second whether or not earlier
+ * ones have completed, and latency is measured from the scheduled send time. A server that
+ * stalls therefore shows up in the percentiles instead of silently slowing the client down.
+ * At most {@code load.max-in-flight} requests are outstanding at a time.
+ * <p>
+ * Every customer the run creates uses a run-specific email and is removed afterwards.
+ */
+@EnabledIfSystemProperty(named = "load.rate", matches = "\\d+")
+class CustomerApiLoadTest {
+
+	private static final int RATE = Integer.getInteger("load.rate", 200);
+	private static final int MAX_IN_FLIGHT = Integer.getInteger("load.max-in-flight", 256);
+	private static final int SEED_CUSTOMERS = Integer.getInteger("load.seed-customers", 1000);
+	private static final Duration WARM_UP = Duration.ofSeconds(Integer.getInteger("load.warm-up-seconds", 10));
+	private static final Duration DURATION = Duration.ofSeconds(Integer.getInteger("load.duration-seconds", 30));
+	private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(60);
+
+	private static final double SLO_P99_MILLIS = doubleProperty("load.slo.p99-ms", 250);
+	private static final double SLO_P999_MILLIS = doubleProperty("load.slo.p999-ms", 1000);
+	private static final double SLO_MAX_ERROR_RATE = doubleProperty("load.slo.max-error-rate", 0.001);
+	private static final double SLO_MIN_THROUGHPUT_RATIO = doubleProperty("load.slo.min-throughput-ratio", 0.95);
+
+	private static final int BATCH_SIZE = 10;
+
+	/**
+	 * The traffic mix; weights are percentages of all requests.
+	 */
+	enum Operation {
+		GET_CUSTOMER(50),
+		UPDATE_CUSTOMER(15),
+		GET_PAGE(12),
+		REGISTER_CUSTOMER(10),
+		DELETE_CUSTOMER(5),
+		REGISTER_BATCH(5),
+		GET_ALL(2),
+		EXPORT(1);
+
+		private final int weight;
+
+		Operation(int weight) {
+			this.weight = weight;
+		}
+	}
+
+	@Test
+	void mixedTrafficMeetsSlos() throws InterruptedException {
+		Report report;
+		try (ConfigurableApplicationContext context = new SpringApplicationBuilder(Main.class)
+				.properties("server.port=0", "spring.jpa.show-sql=false")
+				.run()) {
+			int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+			JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+			Traffic traffic = Traffic.seed(jdbcTemplate, URI.create("http://localhost:%s/api/v1/customers".formatted(port)));
+			HttpClient client = HttpClient.newBuilder()
+					.version(HttpClient.Version.HTTP_1_1)
+					.connectTimeout(REQUEST_TIMEOUT)
+					.build();
+			try {
+				drive(client, traffic, WARM_UP);
+				report = drive(client, traffic, DURATION);
+			} finally {
+				traffic.cleanUp(jdbcTemplate);
+			}
+		}
+
+		report.print();
+
+		SoftAssertions slos = new SoftAssertions();
+		slos.assertThat(report.total().percentileMillis(99.0))
+				.as("p99 latency (ms)").isLessThanOrEqualTo(SLO_P99_MILLIS);
+		slos.assertThat(report.total().percentileMillis(99.9))
+				.as("p99.9 latency (ms)").isLessThanOrEqualTo(SLO_P999_MILLIS);
+		slos.assertThat(report.total().errorRate())
+				.as("error rate").isLessThanOrEqualTo(SLO_MAX_ERROR_RATE);
+		slos.assertThat(report.total().throughput())
+				.as("requests/s").isGreaterThanOrEqualTo(RATE * SLO_MIN_THROUGHPUT_RATIO);
+		slos.assertAll();
+	}
+
+	/**
+	 * Sends {@link #RATE} requests per second for {@code duration}, then waits for the
+	 * outstanding ones.
+	 */
+	private static Report drive(HttpClient client, Traffic traffic, Duration duration) throws InterruptedException {
+		Map<Operation, Stats> stats = new EnumMap<>(Operation.class);
+		for (Operation operation : Operation.values()) {
+			stats.put(operation, new Stats(duration));
+		}
+		Semaphore inFlight = new Semaphore(MAX_IN_FLIGHT);
+		long interval = Duration.ofSeconds(1).toNanos() / RATE;
+		long requests = duration.toNanos() / interval;
+		long start = System.nanoTime();
+
+		for (long i = 0; i < requests; i++) {
+			long scheduled = start + i * interval;
+			for (long wait = scheduled - System.nanoTime(); wait > 0; wait = scheduled - System.nanoTime()) {
+				LockSupport.parkNanos(wait);
+			}
+			inFlight.acquire();
+
+			Operation operation = traffic.nextOperation();
+			Stats operationStats = stats.get(operation);
+			client.sendAsync(traffic.request(operation), HttpResponse.BodyHandlers.discarding())
+					.whenComplete((response, failure) -> {
+						if (failure != null || response.statusCode() >= 400) {
+							operationStats.errors.incrementAndGet();
+						} else {
+							operationStats.latencies.recordValue(System.nanoTime() - scheduled);
+						}
+						inFlight.release();
+					});
+		}
+		inFlight.acquire(MAX_IN_FLIGHT);
+		return new Report(stats, duration);
+	}
+
+	/**
+	 * Picks operations by weight and builds their requests against seeded customers.
+	 */
+	private static final class Traffic {
+
+		private static final Operation[] SCHEDULE = schedule();
+
+		private final URI baseUri;
+		private final String emailPrefix;
+		private final List<Integer> ids;
+		private final Queue<Integer> deletableIds;
+		private final AtomicLong counter = new AtomicLong();
+
+		private Traffic(URI baseUri, String emailPrefix, List<Integer> ids, Queue<Integer> deletableIds) {
+			this.baseUri = baseUri;
+			this.emailPrefix = emailPrefix;
+			this.ids = ids;
+			this.deletableIds = deletableIds;
+		}
+
+		/**
+		 * Inserts the customers the run reads and updates, plus one per expected delete.
+		 */
+		static Traffic seed(JdbcTemplate jdbcTemplate, URI baseUri) {
+			String emailPrefix = "load-" + UUID.randomUUID() + "-";
+			long seconds = WARM_UP.toSeconds() + DURATION.toSeconds();
+			int deletes = (int) (RATE * seconds * Operation.DELETE_CUSTOMER.weight / 100);
+			List<Integer> seeded = jdbcTemplate.queryForList("""
+					INSERT INTO customer(name, email, age)
+					SELECT 'Load ' || n, ? || n || '@example.com', 18 + n % 80
+					FROM generate_series(1, ?) AS n
+					RETURNING id
+					""", Integer.class, emailPrefix, SEED_CUSTOMERS + deletes);
+			return new Traffic(
+					baseUri,
+					emailPrefix,
+					List.copyOf(seeded.subList(0, SEED_CUSTOMERS)),
+					new ConcurrentLinkedQueue<>(seeded.subList(SEED_CUSTOMERS, seeded.size()))
+			);
+		}
+
+		void cleanUp(JdbcTemplate jdbcTemplate) {
+			jdbcTemplate.update("DELETE FROM customer WHERE email LIKE ?", emailPrefix + "%");
+		}
+
+		Operation nextOperation() {
+			Operation operation = SCHEDULE[ThreadLocalRandom.current().nextInt(SCHEDULE.length)];
+			// Only delete customers seeded for it, so reads and updates never miss.
+			return operation == Operation.DELETE_CUSTOMER && deletableIds.isEmpty()
+					? Operation.GET_CUSTOMER
+					: operation;
+		}
+
+		HttpRequest request(Operation operation) {
+			long n = counter.incrementAndGet();
+			return switch (operation) {
+				case GET_CUSTOMER -> get("/" + randomId());
+				case GET_PAGE -> get("?after=" + randomId() + "&limit=100");
+				case GET_ALL -> get("");
+				case EXPORT -> get("/export");
+				case REGISTER_CUSTOMER -> send("POST", "", registration("single-" + n));
+				case REGISTER_BATCH -> send("POST", "/batch", IntStream.range(0, BATCH_SIZE)
+						.mapToObj(i -> registration("batch-" + n + "-" + i))
+						.collect(Collectors.joining(",", "[", "]")));
+				case UPDATE_CUSTOMER -> send("PUT", "/" + randomId(), """
+						{"name": "Load update %s"}
+						""".formatted(n));
+				case DELETE_CUSTOMER -> {
+					Integer id = deletableIds.poll();
+					yield id == null ? get("/" + randomId()) : send("DELETE", "/" + id, null);
+				}
+			};
+		}
+
+		private int randomId() {
+			return ids.get(ThreadLocalRandom.current().nextInt(ids.size()));
+		}
+
+		private String registration(String key) {
+			return """
+					{"name": "Load %s", "email": "%s%s@example.com", "age": 30}
+					""".formatted(key, emailPrefix, key);
+		}
+
+		private HttpRequest get(String path) {
+			return HttpRequest.newBuilder(URI.create(baseUri + path))
+					.timeout(REQUEST_TIMEOUT)
+					.build();
+		}
+
+		private HttpRequest send(String method, String path, String json) {
+			return HttpRequest.newBuilder(URI.create(baseUri + path))
+					.timeout(REQUEST_TIMEOUT)
+					.header("Content-Type", "application/json")
+					.method(method, json == null
+							? HttpRequest.BodyPublishers.noBody()
+							: HttpRequest.BodyPublishers.ofString(json))
+					.build();
+		}
+
+		/**
+		 * One entry per weight point, so a uniform pick follows the mix.
+		 */
+		private static Operation[] schedule() {
+			Operation[] schedule = new Operation[100];
+			int i = 0;
+			for (Operation operation : Operation.values()) {
+				for (int w = 0; w < operation.weight; w++) {
+					schedule[i++] = operation;
+				}
+			}
+			return schedule;
+		}
+	}
+
+	private static final class Stats {
+
+		private final Histogram latencies;
+		private final AtomicLong errors = new AtomicLong();
+		private final Duration duration;
+
+		Stats(Duration duration) {
+			this(new ConcurrentHistogram(3), duration);
+		}
+
+		private Stats(Histogram latencies, Duration duration) {
+			this.latencies = latencies;
+			this.duration = duration;
+		}
+
+		long requests() {
+			return latencies.getTotalCount() + errors.get();
+		}
+
+		double throughput() {
+			return latencies.getTotalCount() / (double) duration.toSeconds();
+		}
+
+		double errorRate() {
+			return requests() == 0 ? 0 : errors.get() / (double) requests();
+		}
+
+		double percentileMillis(double percentile) {
+			return latencies.getTotalCount() == 0
+					? Double.NaN
+					: latencies.getValueAtPercentile(percentile) / 1_000_000.0;
+		}
+
+		double maxMillis() {
+			return latencies.getTotalCount() == 0 ? Double.NaN : latencies.getMaxValue() / 1_000_000.0;
+		}
+
+		Stats add(Stats other) {
+			Histogram sum = latencies.copy();
+			sum.add(other.latencies);
+			Stats stats = new Stats(sum, duration);
+			stats.errors.set(errors.get() + other.errors.get());
+			return stats;
+		}
+	}
+
+	private record Report(Map<Operation, Stats> operations, Duration duration) {
+
+		Stats total() {
+			return operations.values().stream()
+					.reduce(new Stats(duration), Stats::add);
+		}
+
+		void print() {
+			System.out.printf("%n%,d requests/s scheduled, %ss measured after %ss warm-up, at most %,d in flight%n",
+					RATE, DURATION.toSeconds(), WARM_UP.toSeconds(), MAX_IN_FLIGHT);
+			System.out.printf("%-18s %9s %11s %9s %9s %9s %9s %7s%n",
+					"operation", "requests", "requests/s", "p50 ms", "p99 ms", "p99.9 ms", "max ms", "errors");
+			operations.forEach((operation, stats) -> print(operation.name(), stats));
+			print("TOTAL", total());
+			System.out.printf("SLOs: p99 <= %.0f ms, p99.9 <= %.0f ms, error rate <= %.2f%%, requests/s >= %.0f%n",
+					SLO_P99_MILLIS, SLO_P999_MILLIS, SLO_MAX_ERROR_RATE * 100, RATE * SLO_MIN_THROUGHPUT_RATIO);
+		}
+
+		private static void print(String name, Stats stats) {
+			System.out.printf("%-18s %,9d %,11.1f %9.1f %9.1f %9.1f %9.1f %7d%n",
+					name, stats.requests(), stats.throughput(), stats.percentileMillis(50),
+					stats.percentileMillis(99), stats.percentileMillis(99.9), stats.maxMillis(), stats.errors.get());
+		}
+	}
+
+	private static double doubleProperty(String name, double defaultValue) {
+		String value = System.getProperty(name);
+		return value == null || value.isBlank() ? defaultValue : Double.parseDouble(value);
+	}
+}
@@ -0,0 +1,144 @@
+package com.valloyd.load;
+
+import com.valloyd.Main;
+import com.valloyd.customer.Customer;
+import com.valloyd.customer.CustomerService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compares request throughput on Tomcat's platform thread pool with the virtual thread
+ * mode, at {@code load.connections} concurrent keep-alive connections each fetching
+ * customers by id in a closed loop. Run it with {@code mvn -P load-test test}; it needs
+ * the database from {@code application.yml}. The virtual thread run is skipped below
+ * Java 21.
+ * <p>
+ * Client and server share this JVM, so absolute numbers are only comparable between
+ * runs on the same machine.
+ */
+@EnabledIfSystemProperty(named = "load.connections", matches = "\\d+")
+class CustomerLoadTest {
+
+	private static final int CONNECTIONS = Integer.getInteger("load.connections", 5000);
+	private static final Duration WARM_UP = Duration.ofSeconds(Integer.getInteger("load.warm-up-seconds", 10));
+	private static final Duration DURATION = Duration.ofSeconds(Integer.getInteger("load.duration-seconds", 30));
+	private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(60);
+
+	@Test
+	void compareThroughputOfPlatformAndVirtualThreads() throws Exception {
+		Map<String, Result> results = new LinkedHashMap<>();
+		results.put("platform threads", run("default"));
+		if (Runtime.version().feature() >= 21) {
+			results.put("virtual threads", run("virtual-threads"));
+		} else {
+			System.out.printf("Skipping virtual threads on Java %s.%n", Runtime.version().feature());
+		}
+
+		System.out.printf("%n%,d connections, %ss measured after %ss warm-up%n", CONNECTIONS, DURATION.toSeconds(), WARM_UP.toSeconds());
+		System.out.printf("%-18s %12s %10s %10s %10s %8s%n", "mode", "requests/s", "p50 ms", "p99 ms", "max ms", "errors");
+		results.forEach((mode, result) -> System.out.printf(
+				"%-18s %,12.0f %10.1f %10.1f %10.1f %8d%n",
+				mode, result.throughput(), result.percentile(50), result.percentile(99), result.percentile(100), result.errors()
+		));
+
+		results.values().forEach(result ->
+				assertThat(result.errors()).isLessThanOrEqualTo(result.requests() / 100));
+	}
+
+	private static Result run(String profile) throws InterruptedException {
+		try (ConfigurableApplicationContext context = new SpringApplicationBuilder(Main.class)
+				.profiles(profile)
+				.properties("server.port=0", "spring.jpa.show-sql=false")
+				.run()) {
+			int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+			List<URI> uris = context.getBean(CustomerService.class).getCustomers(null, 100).stream()
+					.map(Customer::getId)
+					.map(id -> URI.create("http://localhost:%s/api/v1/customers/%s".formatted(port, id)))
+					.toList();
+
+			HttpClient client = HttpClient.newBuilder()
+					.version(HttpClient.Version.HTTP_1_1)
+					.connectTimeout(REQUEST_TIMEOUT)
+					.build();
+			drive(client, uris, WARM_UP);
+			return drive(client, uris, DURATION);
+		}
+	}
+
+	/**
+	 * Keeps {@link #CONNECTIONS} requests in flight until {@code duration} has passed,
+	 * sending the next request on a connection as soon as the previous one completes.
+	 */
+	private static Result drive(HttpClient client, List<URI> uris, Duration duration) throws InterruptedException {
+		long deadline = System.nanoTime() + duration.toNanos();
+		List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+		AtomicLong errors = new AtomicLong();
+		CountDownLatch finished = new CountDownLatch(CONNECTIONS);
+
+		for (int connection = 0; connection < CONNECTIONS; connection++) {
+			send(client, uris, connection, deadline, latencies, errors, finished);
+		}
+		finished.await();
+		return new Result(latencies, errors.get(), duration);
+	}
+
+	private static void send(HttpClient client, List<URI> uris, int counter, long deadline,
+							 List<Long> latencies, AtomicLong errors, CountDownLatch finished) {
+		long start = System.nanoTime();
+		if (start >= deadline) {
+			finished.countDown();
+			return;
+		}
+
+		HttpRequest request = HttpRequest.newBuilder(uris.get(counter % uris.size()))
+				.timeout(REQUEST_TIMEOUT)
+				.build();
+		client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+				.whenCompleteAsync((response, failure) -> {
+					if (failure != null || response.statusCode() != 200) {
+						errors.incrementAndGet();
+					} else {
+						latencies.add(System.nanoTime() - start);
+					}
+					send(client, uris, counter + 1, deadline, latencies, errors, finished);
+				});
+	}
+
+	private record Result(List<Long> latencies, long errors, Duration duration) {
+
+		long requests() {
+			return latencies.size() + errors;
+		}
+
+		double throughput() {
+			return latencies.size() / (double) duration.toSeconds();
+		}
+
+		double percentile(int percentile) {
+			if (latencies.isEmpty()) {
+				return Double.NaN;
+			}
+			List<Long> sorted = latencies.stream().sorted().toList();
+			int index = (int) Math.ceil(percentile / 100.0 * sorted.size()) - 1;
+			return sorted.get(Math.max(0, index)) / 1_000_000.0;
+		}
+	}
+}
@@ -0,0 +1,67 @@
+package com.valloyd.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.core.spi.FilterReply;
+import org.junit.jupiter.api.Test;
+
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SamplingFilterTest {
+
+	@Test
+	void passesOneInRateEventsAtOrBelowLevel() {
+		// Given
+		SamplingFilter underTest = filter("INFO", 10);
+
+		// When
+		long passed = IntStream.range(0, 100)
+				.mapToObj(i -> underTest.decide(event(i % 2 == 0 ? Level.INFO : Level.DEBUG)))
+				.filter(FilterReply.NEUTRAL::equals)
+				.count();
+
+		// Then
+		assertThat(passed).isEqualTo(10);
+	}
+
+	@Test
+	void alwaysPassesEventsAboveLevel() {
+		// Given
+		SamplingFilter underTest = filter("INFO", 10);
+
+		// When
+		// Then
+		IntStream.range(0, 20).forEach(i -> {
+			assertThat(underTest.decide(event(Level.WARN))).isEqualTo(FilterReply.NEUTRAL);
+			assertThat(underTest.decide(event(Level.ERROR))).isEqualTo(FilterReply.NEUTRAL);
+		});
+	}
+
+	@Test
+	void passesEverythingAtRateOne() {
+		// Given
+		SamplingFilter underTest = filter("DEBUG", 1);
+
+		// When
+		// Then
+		IntStream.range(0, 20).forEach(i ->
+				assertThat(underTest.decide(event(Level.DEBUG))).isEqualTo(FilterReply.NEUTRAL));
+	}
+
+	private static SamplingFilter filter(String level, long rate) {
+		SamplingFilter filter = new SamplingFilter();
+		filter.setLevel(level);
+		filter.setRate(rate);
+		filter.start();
+		return filter;
+	}
+
+	private static LoggingEvent event(Level level) {
+		LoggingEvent event = new LoggingEvent();
+		event.setLevel(level);
+		event.setMessage("message");
+		return event;
+	}
+}